@@ -0,0 +1,538 @@
+package com.example.DeviSmart.charge;
+
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Test de charge de bout en bout contre une instance DeviSmart démarrée
+ *
+ * 1. Initialisation : crée N clients, M devis et K factures par l'API
+ *    (lignes et statuts distribués comme en production, cf. GenerateurDonnees)
+ * 2. Rejeu : envoie un mélange pondéré de requêtes à débit cible constant
+ *    pendant la durée demandée, après une période d'échauffement non mesurée
+ * 3. Rapport : latences p50/p99/p99.9 et erreurs par opération
+ *
+ * Modèle ouvert : chaque requête part à l'instant prévu par le débit cible,
+ * que les précédentes soient terminées ou non, et sa latence est mesurée
+ * depuis cet instant. Un serveur qui ralentit voit donc sa file s'allonger
+ * au lieu de ralentir l'injecteur (pas d'omission coordonnée).
+ *
+ * Paramètres (propriétés système, cf. profil Maven "charge") :
+ * charge.url, charge.clients, charge.devis, charge.factures, charge.rps,
+ * charge.duree-secondes, charge.echauffement-secondes, charge.concurrence-max,
+ * charge.melange (ex: "creer=10,valider=5,pdf=15,stats=10,liste-factures=35"),
+ * charge.libelle et charge.resultats (cf. enregistrerResultats)
+ */
+public final class ChargeDeviSmart {
+
+    /**
+     * Opérations rejouées, avec leur poids par défaut dans le mélange
+     */
+    enum Operation {
+        CREER("creer", 10, "POST /api/factures/creer"),
+        DEVIS("devis", 5, "POST /api/devis"),
+        VALIDER("valider", 5, "POST /api/devis/{id}/valider"),
+        PDF("pdf", 15, "GET /api/factures/{id}/pdf"),
+        PDF_DEVIS("pdf-devis", 5, "GET /api/devis/{id}/pdf"),
+        STATS("stats", 10, "GET /api/factures/stats[/mensuelles|/clients]"),
+        LISTE_FACTURES("liste-factures", 35, "GET /api/factures/page"),
+        LISTE_DEVIS("liste-devis", 10, "GET /api/devis/page"),
+        LISTE_CLIENTS("liste-clients", 5, "GET /api/clients/page");
+
+        final String cle;
+        final int poidsDefaut;
+        final String libelle;
+
+        Operation(String cle, int poidsDefaut, String libelle) {
+            this.cle = cle;
+            this.poidsDefaut = poidsDefaut;
+            this.libelle = libelle;
+        }
+    }
+
+    private static final String[] STATUTS_FACTURE = {"NON_PAYEE", "PAYEE", "EN_RETARD", "ANNULEE"};
+    private static final int PARALLELISME_INITIALISATION = 16;
+    private static final Duration DELAI_REQUETE = Duration.ofSeconds(60);
+    /** Résultat d'une opération sans donnée à traiter (ex: plus aucun devis brouillon) */
+    private static final String IGNOREE = "IGNOREE";
+
+    private final String url = System.getProperty("charge.url", "http://localhost:8080");
+    private final int nombreClients = Integer.getInteger("charge.clients", 50);
+    private final int nombreDevis = Integer.getInteger("charge.devis", 200);
+    private final int nombreFactures = Integer.getInteger("charge.factures", 1000);
+    private final int rps = Integer.getInteger("charge.rps", 50);
+    private final int dureeSecondes = Integer.getInteger("charge.duree-secondes", 60);
+    private final int echauffementSecondes = Integer.getInteger("charge.echauffement-secondes", 10);
+    private final int concurrenceMax = Integer.getInteger("charge.concurrence-max", 256);
+    private final Map<Operation, Integer> melange = lireMelange(System.getProperty("charge.melange", ""));
+    // Nom de la configuration testée (ex: "plateforme", "virtuels") et fichier cumulant les exécutions
+    private final String libelle = System.getProperty("charge.libelle", "");
+    private final String resultats = System.getProperty("charge.resultats", "");
+
+    private final JsonMapper json = new JsonMapper();
+    private final HttpClient http = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    private final Identifiants clients = new Identifiants();
+    private final Identifiants factures = new Identifiants();
+    private final Identifiants devis = new Identifiants();
+    private final ConcurrentLinkedDeque<Long> devisBrouillons = new ConcurrentLinkedDeque<>();
+
+    private final Map<Operation, Histogramme> latences = new EnumMap<>(Operation.class);
+    private final Histogramme latencesTotales = new Histogramme();
+    private final Map<Operation, Map<String, LongAdder>> erreurs = new EnumMap<>(Operation.class);
+    private final LongAdder abandons = new LongAdder();
+    private final LongAdder ignorees = new LongAdder();
+
+    private ChargeDeviSmart() {
+        for (Operation operation : Operation.values()) {
+            latences.put(operation, new Histogramme());
+            erreurs.put(operation, new ConcurrentHashMap<>());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        new ChargeDeviSmart().executer();
+    }
+
+    private void executer() throws Exception {
+        System.out.printf("Cible %s : %d clients, %d devis, %d factures puis %d req/s pendant %d s (+%d s d'échauffement)%n",
+                url, nombreClients, nombreDevis, nombreFactures, rps, dureeSecondes, echauffementSecondes);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            initialiser(executor);
+            rejouer(executor);
+        }
+        imprimerRapport();
+        enregistrerResultats();
+    }
+
+    // ==================== INITIALISATION ====================
+
+    private void initialiser(ExecutorService executor) throws InterruptedException {
+        long debut = System.nanoTime();
+        enParallele(executor, nombreClients, i ->
+                clients.ajouter(idDe(envoyer("POST", "/api/clients", GenerateurDonnees.client(i + 1)))));
+        if (clients.taille() == 0) {
+            throw new IllegalStateException("Aucun client créé : l'application est-elle démarrée sur " + url + " ?");
+        }
+        enParallele(executor, nombreDevis, i -> {
+            long id = idDe(envoyer("POST", "/api/devis", GenerateurDonnees.devis(clients.auHasard())));
+            devis.ajouter(id);
+            devisBrouillons.add(id);
+        });
+        enParallele(executor, nombreFactures, i -> {
+            long id = idDe(envoyer("POST", "/api/factures/creer", GenerateurDonnees.facture(clients.auHasard())));
+            factures.ajouter(id);
+            String action = GenerateurDonnees.actionFinale();
+            if (action != null) {
+                envoyer("POST", "/api/factures/" + id + "/" + action, null);
+            }
+        });
+        System.out.printf("Initialisation : %d clients, %d devis, %d factures en %d s%n",
+                clients.taille(), devis.taille(), factures.taille(),
+                TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - debut));
+    }
+
+    private void enParallele(ExecutorService executor, int nombre, Tache tache) throws InterruptedException {
+        Semaphore permis = new Semaphore(PARALLELISME_INITIALISATION);
+        AtomicInteger echecs = new AtomicInteger();
+        for (int i = 0; i < nombre; i++) {
+            int indice = i;
+            permis.acquire();
+            executor.execute(() -> {
+                try {
+                    tache.executer(indice);
+                } catch (Exception e) {
+                    if (echecs.getAndIncrement() == 0) {
+                        System.err.println("Échec d'initialisation : " + e.getMessage());
+                    }
+                } finally {
+                    permis.release();
+                }
+            });
+        }
+        permis.acquire(PARALLELISME_INITIALISATION);
+        if (echecs.get() > 0) {
+            System.err.printf("%d créations en échec sur %d%n", echecs.get(), nombre);
+        }
+    }
+
+    // ==================== REJEU ====================
+
+    private void rejouer(ExecutorService executor) {
+        Operation[] tirage = tableDeTirage();
+        Semaphore enVol = new Semaphore(concurrenceMax);
+        long intervalle = TimeUnit.SECONDS.toNanos(1) / Math.max(1, rps);
+        long debut = System.nanoTime();
+        long debutMesure = debut + TimeUnit.SECONDS.toNanos(echauffementSecondes);
+        long fin = debutMesure + TimeUnit.SECONDS.toNanos(dureeSecondes);
+
+        for (long k = 0; ; k++) {
+            long prevu = debut + k * intervalle;
+            if (prevu >= fin) {
+                break;
+            }
+            long attente = prevu - System.nanoTime();
+            if (attente > 0) {
+                LockSupport.parkNanos(attente);
+            }
+            boolean mesuree = prevu >= debutMesure;
+            if (!enVol.tryAcquire()) {
+                // Injecteur saturé : la requête est comptée, pas envoyée
+                if (mesuree) {
+                    abandons.increment();
+                }
+                continue;
+            }
+            Operation operation = tirage[ThreadLocalRandom.current().nextInt(tirage.length)];
+            executor.execute(() -> {
+                try {
+                    jouer(operation, prevu, mesuree);
+                } finally {
+                    enVol.release();
+                }
+            });
+        }
+        // Attendre les requêtes encore en vol
+        enVol.acquireUninterruptibly(concurrenceMax);
+    }
+
+    private void jouer(Operation operation, long prevu, boolean mesuree) {
+        String resultat;
+        try {
+            resultat = appeler(operation);
+        } catch (IOException | RuntimeException e) {
+            resultat = e.getClass().getSimpleName();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        if (!mesuree) {
+            return;
+        }
+        if (IGNOREE.equals(resultat)) {
+            ignorees.increment();
+            return;
+        }
+        long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - prevu);
+        latences.get(operation).enregistrer(micros);
+        latencesTotales.enregistrer(micros);
+        if (resultat != null) {
+            erreurs.get(operation).computeIfAbsent(resultat, e -> new LongAdder()).increment();
+        }
+    }
+
+    /**
+     * Joue une opération ; renvoie null si elle a réussi, sinon la cause de l'erreur
+     */
+    private String appeler(Operation operation) throws IOException, InterruptedException {
+        ThreadLocalRandom aleatoire = ThreadLocalRandom.current();
+        return switch (operation) {
+            case CREER -> {
+                HttpResponse<String> reponse = envoyer("POST", "/api/factures/creer",
+                        GenerateurDonnees.facture(clients.auHasard()));
+                if (succes(reponse)) {
+                    factures.ajouter(idDe(reponse));
+                }
+                yield statut(reponse);
+            }
+            case DEVIS -> {
+                HttpResponse<String> reponse = envoyer("POST", "/api/devis",
+                        GenerateurDonnees.devis(clients.auHasard()));
+                if (succes(reponse)) {
+                    long id = idDe(reponse);
+                    devis.ajouter(id);
+                    devisBrouillons.add(id);
+                }
+                yield statut(reponse);
+            }
+            case VALIDER -> {
+                Long id = devisBrouillons.pollFirst();
+                if (id == null) {
+                    yield IGNOREE;
+                }
+                HttpResponse<String> reponse = envoyer("POST", "/api/devis/" + id + "/valider", null);
+                if (succes(reponse)) {
+                    factures.ajouter(idDe(reponse));
+                }
+                yield statut(reponse);
+            }
+            case PDF -> factures.vide() ? IGNOREE : telecharger("/api/factures/" + factures.auHasard() + "/pdf");
+            case PDF_DEVIS -> devis.vide() ? IGNOREE : telecharger("/api/devis/" + devis.auHasard() + "/pdf");
+            case STATS -> {
+                String[] chemins = {"/api/factures/stats", "/api/factures/stats/mensuelles", "/api/factures/stats/clients"};
+                yield statut(envoyer("GET", chemins[aleatoire.nextInt(chemins.length)], null));
+            }
+            case LISTE_FACTURES -> {
+                String filtre = switch (aleatoire.nextInt(4)) {
+                    case 0 -> "&statut=" + STATUTS_FACTURE[aleatoire.nextInt(STATUTS_FACTURE.length)];
+                    case 1 -> "&clientId=" + clients.auHasard();
+                    default -> "";
+                };
+                // Un tiers des appels demande une page plus loin dans la liste
+                String curseur = !factures.vide() && aleatoire.nextInt(3) == 0 ? "&curseur=" + factures.auHasard() : "";
+                yield statut(envoyer("GET", "/api/factures/page?taille=50" + filtre + curseur, null));
+            }
+            case LISTE_DEVIS -> {
+                String filtre = aleatoire.nextBoolean() ? "&clientId=" + clients.auHasard() : "";
+                yield statut(envoyer("GET", "/api/devis/page?taille=50" + filtre, null));
+            }
+            case LISTE_CLIENTS -> statut(envoyer("GET", "/api/clients/page?taille=50", null));
+        };
+    }
+
+    // ==================== HTTP ====================
+
+    private HttpResponse<String> envoyer(String methode, String chemin, Object corps)
+            throws IOException, InterruptedException {
+        HttpRequest.Builder requete = HttpRequest.newBuilder(URI.create(url + chemin)).timeout(DELAI_REQUETE);
+        if (corps == null) {
+            requete.method(methode, HttpRequest.BodyPublishers.noBody());
+        } else {
+            requete.header("Content-Type", "application/json")
+                    .method(methode, HttpRequest.BodyPublishers.ofString(json.writeValueAsString(corps)));
+        }
+        return http.send(requete.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    /**
+     * Téléchargement lu jusqu'au bout mais non conservé
+     */
+    private String telecharger(String chemin) throws IOException, InterruptedException {
+        HttpRequest requete = HttpRequest.newBuilder(URI.create(url + chemin)).timeout(DELAI_REQUETE).GET().build();
+        return statut(http.send(requete, HttpResponse.BodyHandlers.discarding()));
+    }
+
+    private long idDe(HttpResponse<String> reponse) {
+        if (!succes(reponse)) {
+            throw new IllegalStateException("HTTP " + reponse.statusCode() + " sur " + reponse.uri().getPath());
+        }
+        JsonNode id = json.readTree(reponse.body()).get("id");
+        if (id == null) {
+            throw new IllegalStateException("Réponse sans id sur " + reponse.uri().getPath());
+        }
+        return id.asLong();
+    }
+
+    private static boolean succes(HttpResponse<?> reponse) {
+        return reponse.statusCode() / 100 == 2;
+    }
+
+    private static String statut(HttpResponse<?> reponse) {
+        return succes(reponse) ? null : "HTTP " + reponse.statusCode();
+    }
+
+    // ==================== CONFIGURATION ====================
+
+    private static Map<Operation, Integer> lireMelange(String valeur) {
+        Map<Operation, Integer> melange = new EnumMap<>(Operation.class);
+        if (valeur.isBlank()) {
+            for (Operation operation : Operation.values()) {
+                melange.put(operation, operation.poidsDefaut);
+            }
+            return melange;
+        }
+        for (String element : valeur.split(",")) {
+            String[] cleValeur = element.trim().split("=");
+            Operation operation = null;
+            for (Operation candidate : Operation.values()) {
+                if (candidate.cle.equals(cleValeur[0].trim())) {
+                    operation = candidate;
+                }
+            }
+            if (operation == null || cleValeur.length != 2) {
+                throw new IllegalArgumentException("Élément de mélange invalide : " + element);
+            }
+            melange.put(operation, Integer.parseInt(cleValeur[1].trim()));
+        }
+        return melange;
+    }
+
+    /**
+     * Une entrée par unité de poids : un tirage uniforme donne le mélange voulu
+     */
+    private Operation[] tableDeTirage() {
+        List<Operation> table = new ArrayList<>();
+        melange.forEach((operation, poids) -> {
+            for (int i = 0; i < poids; i++) {
+                table.add(operation);
+            }
+        });
+        if (table.isEmpty()) {
+            throw new IllegalArgumentException("Mélange vide");
+        }
+        return table.toArray(Operation[]::new);
+    }
+
+    // ==================== RAPPORT ====================
+
+    private void imprimerRapport() {
+        System.out.println();
+        System.out.printf(Locale.ROOT, "%-48s %8s %8s %8s %9s %9s %9s %9s %9s%n",
+                "Opération (latences en ms)", "requêtes", "erreurs", "req/s", "moyenne", "p50", "p99", "p99.9", "max");
+        long totalRequetes = 0;
+        long totalErreurs = 0;
+        for (Operation operation : Operation.values()) {
+            Histogramme histogramme = latences.get(operation);
+            if (histogramme.nombre() == 0) {
+                continue;
+            }
+            long nombreErreurs = erreurs.get(operation).values().stream().mapToLong(LongAdder::sum).sum();
+            totalRequetes += histogramme.nombre();
+            totalErreurs += nombreErreurs;
+            System.out.printf(Locale.ROOT, "%-48s %8d %8d %8.1f %9.1f %9.1f %9.1f %9.1f %9.1f%n",
+                    operation.libelle, histogramme.nombre(), nombreErreurs,
+                    (double) histogramme.nombre() / dureeSecondes,
+                    histogramme.moyenne() / 1000.0,
+                    histogramme.percentile(0.50) / 1000.0,
+                    histogramme.percentile(0.99) / 1000.0,
+                    histogramme.percentile(0.999) / 1000.0,
+                    histogramme.max() / 1000.0);
+        }
+        System.out.printf(Locale.ROOT, "%nTotal : %d requêtes (%.1f req/s pour %d visées), %d erreurs, %d abandonnées (plus de %d en vol), %d ignorées (aucune donnée à traiter)%n",
+                totalRequetes, (double) totalRequetes / dureeSecondes, rps, totalErreurs,
+                abandons.sum(), concurrenceMax, ignorees.sum());
+
+        for (Operation operation : Operation.values()) {
+            Map<String, LongAdder> detail = erreurs.get(operation);
+            if (!detail.isEmpty()) {
+                Map<String, Long> tries = new TreeMap<>();
+                detail.forEach((cause, nombre) -> tries.put(cause, nombre.sum()));
+                System.out.println("Erreurs " + operation.libelle + " : " + tries);
+            }
+        }
+    }
+
+    // ==================== COMPARAISON ====================
+
+    /**
+     * Ajoute le débit et les latences de l'exécution au fichier charge.resultats
+     * (CSV, une ligne par opération et une ligne "total"), puis compare les
+     * dernières mesures de chaque libellé qu'il contient. Deux exécutions de
+     * même paramétrage contre deux configurations du serveur (ex: threads
+     * virtuels ou non) donnent ainsi leur comparaison directe.
+     */
+    private void enregistrerResultats() throws IOException {
+        if (resultats.isBlank()) {
+            return;
+        }
+        String nom = libelle.isBlank() ? "sans-libelle" : libelle;
+        List<String> lignes = new ArrayList<>();
+        for (Operation operation : Operation.values()) {
+            Histogramme histogramme = latences.get(operation);
+            if (histogramme.nombre() > 0) {
+                lignes.add(ligneResultat(nom, operation.cle, histogramme));
+            }
+        }
+        lignes.add(ligneResultat(nom, "total", latencesTotales));
+        Path fichier = Path.of(resultats);
+        if (fichier.getParent() != null) {
+            Files.createDirectories(fichier.getParent());
+        }
+        Files.write(fichier, lignes, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+
+        // Libellé -> opération -> {req/s, p99 en ms} ; la dernière exécution d'un libellé l'emporte
+        Map<String, Map<String, double[]>> mesures = new LinkedHashMap<>();
+        for (String ligne : Files.readAllLines(fichier, StandardCharsets.UTF_8)) {
+            String[] champs = ligne.split(";");
+            if (champs.length == 4) {
+                mesures.computeIfAbsent(champs[0], l -> new LinkedHashMap<>())
+                        .put(champs[1], new double[]{Double.parseDouble(champs[2]), Double.parseDouble(champs[3])});
+            }
+        }
+        if (mesures.size() < 2) {
+            System.out.printf("%nRésultats « %s » ajoutés à %s (relancer avec un autre charge.libelle pour comparer)%n",
+                    nom, fichier);
+            return;
+        }
+
+        System.out.println();
+        StringBuilder entete = new StringBuilder(String.format(Locale.ROOT, "%-16s", "req/s | p99 ms"));
+        mesures.keySet().forEach(l -> entete.append(String.format(Locale.ROOT, " %21s", l)));
+        System.out.println(entete);
+        List<String> operations = new ArrayList<>();
+        for (Operation operation : Operation.values()) {
+            operations.add(operation.cle);
+        }
+        operations.add("total");
+        for (String operation : operations) {
+            StringBuilder ligne = new StringBuilder(String.format(Locale.ROOT, "%-16s", operation));
+            boolean presente = false;
+            for (Map<String, double[]> parOperation : mesures.values()) {
+                double[] mesure = parOperation.get(operation);
+                presente |= mesure != null;
+                ligne.append(mesure == null ? String.format(Locale.ROOT, " %21s", "-")
+                        : String.format(Locale.ROOT, " %10.1f %10.1f", mesure[0], mesure[1]));
+            }
+            if (presente) {
+                System.out.println(ligne);
+            }
+        }
+    }
+
+    private String ligneResultat(String nom, String operation, Histogramme histogramme) {
+        return String.format(Locale.ROOT, "%s;%s;%.1f;%.1f", nom, operation,
+                (double) histogramme.nombre() / dureeSecondes, histogramme.percentile(0.99) / 1000.0);
+    }
+
+    // ==================== OUTILS ====================
+
+    @FunctionalInterface
+    private interface Tache {
+        void executer(int indice) throws Exception;
+    }
+
+    /**
+     * Identifiants créés, tirés au hasard par les opérations qui les consultent
+     */
+    private static final class Identifiants {
+
+        private final List<Long> ids = new ArrayList<>();
+
+        synchronized void ajouter(long id) {
+            ids.add(id);
+        }
+
+        synchronized long auHasard() {
+            return ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+        }
+
+        synchronized int taille() {
+            return ids.size();
+        }
+
+        boolean vide() {
+            return taille() == 0;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.DeviSmart.charge;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Corps des requêtes de création (clients, devis, factures)
+ *
+ * Distributions proches d'un usage réel : la plupart des documents ont
+ * quelques lignes, une minorité plusieurs dizaines et de rares documents
+ * plusieurs centaines (loi log-normale, médiane ~4 lignes) ; quantités
+ * faibles, prix unitaires étalés de quelques dinars à quelques milliers.
+ */
+final class GenerateurDonnees {
+
+    private static final int LIGNES_MAX = 400;
+
+    private static final String[] SOCIETES = {
+            "Atlas", "Carthage", "Medina", "Sahel", "Jasmin", "Oasis", "Zitouna", "Hannibal", "Kairouan", "Djerba"
+    };
+    private static final String[] ACTIVITES = {
+            "Services", "Informatique", "Bâtiment", "Distribution", "Conseil", "Logistique", "Industries", "Textile"
+    };
+    private static final String[] DESIGNATIONS = {
+            "Développement spécifique", "Maintenance applicative", "Licence logicielle annuelle",
+            "Formation utilisateurs", "Audit de sécurité", "Hébergement mensuel", "Installation sur site",
+            "Support technique", "Matériel informatique", "Câblage réseau", "Étude et conception",
+            "Déplacement", "Fournitures de bureau", "Assistance à maîtrise d'ouvrage"
+    };
+
+    private GenerateurDonnees() {}
+
+    static Map<String, Object> client(int numero) {
+        ThreadLocalRandom aleatoire = ThreadLocalRandom.current();
+        String nom = SOCIETES[aleatoire.nextInt(SOCIETES.length)] + " "
+                + ACTIVITES[aleatoire.nextInt(ACTIVITES.length)] + " " + numero;
+        Map<String, Object> client = new LinkedHashMap<>();
+        client.put("nom", nom);
+        client.put("email", "contact" + numero + "@client-charge.tn");
+        client.put("telephone", "+216 7" + aleatoire.nextInt(1_000_000, 10_000_000));
+        client.put("adresse", aleatoire.nextInt(1, 200) + " Avenue de la République, Tunis");
+        client.put("matriculeFiscal", String.format("%07dA/M/000", numero));
+        return client;
+    }
+
+    /**
+     * Devis au format de l'entité (quantités entières, prix en double)
+     */
+    static Map<String, Object> devis(long clientId) {
+        ThreadLocalRandom aleatoire = ThreadLocalRandom.current();
+        List<Map<String, Object>> lignes = new ArrayList<>();
+        for (int i = nombreLignes(); i > 0; i--) {
+            Map<String, Object> ligne = new LinkedHashMap<>();
+            ligne.put("designation", designation());
+            ligne.put("quantite", quantite());
+            ligne.put("prixUnitaire", prixUnitaire().doubleValue());
+            lignes.add(ligne);
+        }
+        Map<String, Object> devis = new LinkedHashMap<>();
+        devis.put("dateValidite", LocalDate.now().plusDays(aleatoire.nextInt(15, 61)).toString());
+        devis.put("client", Map.of("id", clientId));
+        devis.put("lignes", lignes);
+        return devis;
+    }
+
+    /**
+     * Requête de /api/factures/creer
+     */
+    static Map<String, Object> facture(long clientId) {
+        List<Map<String, Object>> lignes = new ArrayList<>();
+        for (int i = nombreLignes(); i > 0; i--) {
+            Map<String, Object> ligne = new LinkedHashMap<>();
+            ligne.put("designation", designation());
+            ligne.put("quantite", BigDecimal.valueOf(quantite()));
+            ligne.put("prixUnitaireHT", prixUnitaire());
+            lignes.add(ligne);
+        }
+        Map<String, Object> requete = new LinkedHashMap<>();
+        requete.put("clientId", clientId);
+        requete.put("lignes", lignes);
+        return requete;
+    }
+
+    /**
+     * Action donnant son statut final à une facture initialisée
+     * (chemin sous /api/factures/{id}/) : environ 60 % payées,
+     * 10 % en retard, 5 % annulées, le reste non payé
+     */
+    static String actionFinale() {
+        int tirage = ThreadLocalRandom.current().nextInt(100);
+        if (tirage < 60) {
+            return "payer";
+        }
+        if (tirage < 70) {
+            return "retard";
+        }
+        if (tirage < 75) {
+            return "annuler";
+        }
+        return null;
+    }
+
+    static int nombreLignes() {
+        double tirage = Math.exp(1.4 + 0.9 * ThreadLocalRandom.current().nextGaussian());
+        return (int) Math.min(LIGNES_MAX, Math.max(1, Math.round(tirage)));
+    }
+
+    private static String designation() {
+        return DESIGNATIONS[ThreadLocalRandom.current().nextInt(DESIGNATIONS.length)];
+    }
+
+    private static int quantite() {
+        ThreadLocalRandom aleatoire = ThreadLocalRandom.current();
+        return aleatoire.nextInt(10) < 7 ? aleatoire.nextInt(1, 4) : aleatoire.nextInt(4, 51);
+    }
+
+    private static BigDecimal prixUnitaire() {
+        double prix = Math.exp(4.5 + 1.2 * ThreadLocalRandom.current().nextGaussian());
+        return BigDecimal.valueOf(Math.min(50_000, Math.max(0.5, prix))).setScale(3, RoundingMode.HALF_UP);
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.DeviSmart.charge;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogramme de latences en microsecondes, partagé entre threads
+ *
+ * Classes logarithmiques de 64 sous-classes par puissance de deux : l'erreur
+ * relative sur un percentile reste sous 1,6 %, quelle que soit la valeur
+ * (de 1 µs à une heure) et pour une mémoire fixe (~14 Ko).
+ */
+final class Histogramme {
+
+    private static final int SOUS_CLASSES = 64;
+    private static final int BITS_SOUS_CLASSES = 6;
+    private static final long MAX_MICROS = 3_600_000_000L;
+    private static final int DECALAGE_MAX = 63 - Long.numberOfLeadingZeros(MAX_MICROS) - BITS_SOUS_CLASSES;
+
+    private final AtomicLongArray classes = new AtomicLongArray(SOUS_CLASSES * (DECALAGE_MAX + 2));
+    private final AtomicLong nombre = new AtomicLong();
+    private final AtomicLong somme = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    void enregistrer(long micros) {
+        long valeur = Math.min(Math.max(micros, 0), MAX_MICROS);
+        classes.incrementAndGet(indice(valeur));
+        nombre.incrementAndGet();
+        somme.addAndGet(valeur);
+        max.accumulateAndGet(valeur, Math::max);
+    }
+
+    long nombre() {
+        return nombre.get();
+    }
+
+    long max() {
+        return max.get();
+    }
+
+    double moyenne() {
+        long n = nombre.get();
+        return n == 0 ? 0 : (double) somme.get() / n;
+    }
+
+    /**
+     * Valeur sous laquelle se trouve la fraction p des mesures (borne haute de la classe)
+     */
+    long percentile(double p) {
+        long total = nombre.get();
+        if (total == 0) {
+            return 0;
+        }
+        long rang = Math.max(1, (long) Math.ceil(p * total));
+        long cumul = 0;
+        for (int i = 0; i < classes.length(); i++) {
+            cumul += classes.get(i);
+            if (cumul >= rang) {
+                return Math.min(borneHaute(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    private static int indice(long valeur) {
+        int decalage = Math.max(0, 63 - Long.numberOfLeadingZeros(valeur) - BITS_SOUS_CLASSES);
+        return SOUS_CLASSES * decalage + (int) (valeur >>> decalage);
+    }
+
+    private static long borneHaute(int indice) {
+        int decalage = indice < 2 * SOUS_CLASSES ? 0 : indice / SOUS_CLASSES - 1;
+        long mantisse = indice - (long) SOUS_CLASSES * decalage;
+        return ((mantisse + 1) << decalage) - 1;
+    }
+}
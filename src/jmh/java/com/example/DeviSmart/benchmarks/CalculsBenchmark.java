@@ -0,0 +1,77 @@
+package com.example.DeviSmart.benchmarks;
+
+import com.example.DeviSmart.entities.Devis;
+import com.example.DeviSmart.entities.Entreprise;
+import com.example.DeviSmart.entities.Facture;
+import com.example.DeviSmart.entities.LigneFacture;
+import com.example.DeviSmart.services.NumerotationService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Calculs métier des documents : totaux des factures et devis, numérotation
+ *
+ * Débit en opérations/ms ; l'allocation par opération est donnée par le
+ * profileur gc (gc.alloc.rate.norm, activé par défaut dans le profil Maven).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CalculsBenchmark {
+
+    @Param({"1", "50", "1000"})
+    private int lignes;
+
+    private Facture facture;
+    private Devis devis;
+    private Entreprise entreprise;
+
+    @Setup
+    public void preparer() {
+        facture = DonneesBenchmark.facture(lignes);
+        devis = DonneesBenchmark.devis(lignes);
+        entreprise = DonneesBenchmark.entreprise();
+    }
+
+    @Benchmark
+    public Facture factureRecalculerTotaux() {
+        facture.recalculerTotaux();
+        return facture;
+    }
+
+    @Benchmark
+    public void ligneFactureCalculerTotal(Blackhole trou) {
+        for (LigneFacture ligne : facture.getLignes()) {
+            ligne.calculerTotal();
+            trou.consume(ligne.getTotalLigneHT());
+        }
+    }
+
+    @Benchmark
+    public Devis devisRecalculerTotaux() {
+        devis.recalculerTotaux();
+        return devis;
+    }
+
+    /**
+     * Ancien compteur sur l'entité Entreprise (indépendant du nombre de lignes)
+     */
+    @Benchmark
+    @SuppressWarnings("deprecation")
+    public String entrepriseGenererNumeroFacture() {
+        return entreprise.genererNumeroFacture();
+    }
+
+    /**
+     * Formatage du numéro par NumerotationService, hors réservation en base
+     */
+    @Benchmark
+    public String numerotationFormater() {
+        return NumerotationService.formater(NumerotationService.PREFIXE_FACTURE, 2026, lignes);
+    }
+}
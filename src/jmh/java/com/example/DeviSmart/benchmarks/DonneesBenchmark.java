@@ -0,0 +1,66 @@
+package com.example.DeviSmart.benchmarks;
+
+import com.example.DeviSmart.entities.Client;
+import com.example.DeviSmart.entities.Devis;
+import com.example.DeviSmart.entities.Entreprise;
+import com.example.DeviSmart.entities.Facture;
+import com.example.DeviSmart.entities.Ligne;
+import com.example.DeviSmart.entities.LigneFacture;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Jeux de données des benchmarks : documents réalistes de N lignes
+ */
+final class DonneesBenchmark {
+
+    private DonneesBenchmark() {}
+
+    static Entreprise entreprise() {
+        Entreprise entreprise = new Entreprise();
+        entreprise.setNom("DeviSmart");
+        entreprise.setAdresse("123 Rue de l'Innovation");
+        entreprise.setCodePostal("75001");
+        entreprise.setVille("Paris");
+        entreprise.setTelephone("+33 1 23 45 67 89");
+        entreprise.setEmail("contact@devismart.com");
+        entreprise.setMatriculeFiscal("FR12345678901");
+        entreprise.setTauxTVA(19.0);
+        return entreprise;
+    }
+
+    static Client client() {
+        return new Client("Société Exemple", "compta@exemple.tn", "+216 71 000 000",
+                "12 Avenue Habib Bourguiba, Tunis", "1234567A/M/000");
+    }
+
+    static Facture facture(int nombreLignes) {
+        Facture facture = new Facture();
+        facture.setNumeroFacture("FAC-2026-0042");
+        facture.setDateEmission(LocalDate.of(2026, 1, 15));
+        facture.setDateEcheance(LocalDate.of(2026, 2, 14));
+        facture.setStatut("NON_PAYEE");
+        facture.setReferenceDevis("DEV-2026-0017");
+        facture.setConditionsPaiement("Paiement à 30 jours par virement bancaire.");
+        facture.copierDonneesEntreprise(entreprise());
+        facture.copierDonneesClient(client());
+        for (int i = 1; i <= nombreLignes; i++) {
+            facture.ajouterLigne(new LigneFacture("Prestation de service n°" + i,
+                    BigDecimal.valueOf(i % 7 + 1), new BigDecimal("125.750")));
+        }
+        facture.recalculerTotaux();
+        return facture;
+    }
+
+    static Devis devis(int nombreLignes) {
+        Devis devis = new Devis("DEV-2026-0017", LocalDate.of(2026, 1, 10), LocalDate.of(2026, 2, 10),
+                "BROUILLON", client());
+        for (int i = 1; i <= nombreLignes; i++) {
+            Ligne ligne = new Ligne("Article n°" + i, i % 7 + 1, 125.75);
+            ligne.setDevis(devis);
+            devis.getLignes().add(ligne);
+        }
+        return devis;
+    }
+}
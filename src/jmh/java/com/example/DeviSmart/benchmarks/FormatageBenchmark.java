@@ -0,0 +1,34 @@
+package com.example.DeviSmart.benchmarks;
+
+import com.example.DeviSmart.services.FormateurMontant;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.text.DecimalFormat;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Formatage des montants : FormateurMontant comparé à un DecimalFormat
+ * (confiné au thread, comme il faudrait le faire pour le partager sans risque)
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FormatageBenchmark {
+
+    private final BigDecimal montant = new BigDecimal("1234567.891");
+    private final DecimalFormat decimalFormat = new DecimalFormat("#,##0.000");
+
+    @Benchmark
+    public String formateurMontant() {
+        return FormateurMontant.MONTANT.formater(montant);
+    }
+
+    @Benchmark
+    public String decimalFormat() {
+        return decimalFormat.format(montant);
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.DeviSmart.benchmarks;
+
+import com.example.DeviSmart.entities.Devis;
+import com.example.DeviSmart.entities.Entreprise;
+import com.example.DeviSmart.entities.Facture;
+import com.example.DeviSmart.services.EntrepriseService;
+import com.example.DeviSmart.services.FacturePdfService;
+import com.example.DeviSmart.services.PdfGenerationService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rendu PDF des factures et devis selon le nombre de lignes
+ *
+ * Les variantes "Flux" écrivent dans un flux qui ignore les octets : elles
+ * mesurent le rendu seul, sans le tableau d'octets du document complet.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PdfBenchmark {
+
+    @Param({"1", "50", "1000"})
+    private int lignes;
+
+    private FacturePdfService facturePdfService;
+    private PdfGenerationService pdfGenerationService;
+    private Facture facture;
+    private Devis devis;
+
+    @Setup
+    public void preparer() {
+        facture = DonneesBenchmark.facture(lignes);
+        devis = DonneesBenchmark.devis(lignes);
+
+        Entreprise entreprise = DonneesBenchmark.entreprise();
+        EntrepriseService entrepriseService = new EntrepriseService() {
+            @Override
+            public Entreprise getEntreprise() {
+                return entreprise;
+            }
+        };
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        facturePdfService = new FacturePdfService();
+        ReflectionTestUtils.setField(facturePdfService, "meterRegistry", meterRegistry);
+        pdfGenerationService = new PdfGenerationService();
+        ReflectionTestUtils.setField(pdfGenerationService, "entrepriseService", entrepriseService);
+        ReflectionTestUtils.setField(pdfGenerationService, "facturePdfService", facturePdfService);
+        ReflectionTestUtils.setField(pdfGenerationService, "meterRegistry", meterRegistry);
+    }
+
+    @Benchmark
+    public byte[] facturePdf() {
+        return facturePdfService.generer(facture);
+    }
+
+    @Benchmark
+    public void facturePdfFlux() {
+        facturePdfService.generer(facture, OutputStream.nullOutputStream());
+    }
+
+    @Benchmark
+    public byte[] devisPdf() {
+        return pdfGenerationService.genererPdfDevis(devis);
+    }
+
+    @Benchmark
+    public void devisPdfFlux() {
+        pdfGenerationService.genererPdfDevis(devis, OutputStream.nullOutputStream());
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.DeviSmart.config;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Compte les requêtes SQL préparées par Hibernate sur le thread courant,
+ * en séparant les lectures (select) des écritures
+ *
+ * Déclaré par hibernate.session_factory.statement_inspector : Hibernate
+ * l'instancie lui-même, d'où l'état porté par un ThreadLocal statique.
+ * Le compteur est remis à zéro au début de chaque requête HTTP
+ * (cf. MetriquesRequetesFilter).
+ */
+public class CompteurRequetesSql implements StatementInspector {
+
+    // Attributs de la requête HTTP renseignés en fin de traitement (lus par les tests)
+    public static final String ATTRIBUT_LECTURES = "devismart.requetesSql.lectures";
+    public static final String ATTRIBUT_ECRITURES = "devismart.requetesSql.ecritures";
+
+    private static final int LECTURES = 0;
+    private static final int ECRITURES = 1;
+
+    private static final ThreadLocal<long[]> COMPTEUR = ThreadLocal.withInitial(() -> new long[2]);
+
+    @Override
+    public String inspect(String sql) {
+        COMPTEUR.get()[estLecture(sql) ? LECTURES : ECRITURES]++;
+        return sql;
+    }
+
+    public static void demarrer() {
+        long[] compteur = COMPTEUR.get();
+        compteur[LECTURES] = 0;
+        compteur[ECRITURES] = 0;
+    }
+
+    public static long lectures() {
+        return COMPTEUR.get()[LECTURES];
+    }
+
+    public static long ecritures() {
+        return COMPTEUR.get()[ECRITURES];
+    }
+
+    public static void terminer() {
+        COMPTEUR.remove();
+    }
+
+    private static boolean estLecture(String sql) {
+        int debut = 0;
+        while (debut < sql.length() && Character.isWhitespace(sql.charAt(debut))) {
+            debut++;
+        }
+        return sql.regionMatches(true, debut, "select", 0, 6) || sql.regionMatches(true, debut, "with", 0, 4);
+    }
+}
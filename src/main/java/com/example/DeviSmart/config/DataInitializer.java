@@ -1,6 +1,7 @@
 package com.example.DeviSmart.config;
 
 import com.example.DeviSmart.services.EntrepriseService;
+import com.example.DeviSmart.services.ResumeFacturesService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.stereotype.Component;
@@ -14,10 +15,15 @@ public class DataInitializer implements CommandLineRunner {
     @Autowired
     private EntrepriseService entrepriseService;
 
+    @Autowired
+    private ResumeFacturesService resumeFacturesService;
+
     @Override
     public void run(String... args) {
         // Initialiser l'entreprise par défaut si elle n'existe pas
         entrepriseService.initialiserDonneesParDefaut();
+        // Construire les agrégats statistiques s'ils n'existent pas encore
+        resumeFacturesService.initialiser();
         System.out.println("✅ DeviSmart initialisé avec succès !");
     }
 }
@@ -0,0 +1,22 @@
+package com.example.DeviSmart.config;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Active @Timed sur les beans (services métier annotés au niveau de la classe)
+ *
+ * Chaque méthode publique donne un timer devismart.service avec les tags
+ * class, method et exception : le compteur d'appels et celui des échecs
+ * (exception != "none") sont ceux du timer.
+ */
+@Configuration
+public class MetriquesConfig {
+
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry registry) {
+        return new TimedAspect(registry);
+    }
+}
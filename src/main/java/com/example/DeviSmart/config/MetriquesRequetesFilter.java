@@ -0,0 +1,85 @@
+package com.example.DeviSmart.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+
+/**
+ * Nombre de requêtes SQL par requête HTTP (devismart.http.requetes.sql),
+ * par méthode, modèle d'URI et type (lecture / écriture), pour repérer
+ * les endpoints en N+1
+ *
+ * Au-delà du budget de lectures (devismart.sql.budget-lectures), la requête
+ * est signalée dans les logs et comptée dans devismart.http.requetes.sql.depassements.
+ * Les écritures ne sont pas soumises au budget : leur nombre suit
+ * légitimement la taille des documents enregistrés.
+ *
+ * Seules les requêtes exécutées sur le thread de la requête sont comptées :
+ * l'écriture asynchrone d'un StreamingResponseBody n'est pas incluse.
+ */
+@Component
+public class MetriquesRequetesFilter extends OncePerRequestFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(MetriquesRequetesFilter.class);
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // 0 : pas de budget
+    @Value("${devismart.sql.budget-lectures:10}")
+    private long budgetLectures;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().startsWith("/api/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        CompteurRequetesSql.demarrer();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            long lectures = CompteurRequetesSql.lectures();
+            long ecritures = CompteurRequetesSql.ecritures();
+            CompteurRequetesSql.terminer();
+            request.setAttribute(CompteurRequetesSql.ATTRIBUT_LECTURES, lectures);
+            request.setAttribute(CompteurRequetesSql.ATTRIBUT_ECRITURES, ecritures);
+
+            Object modele = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            String uri = modele != null ? modele.toString() : "UNKNOWN";
+            enregistrer(request.getMethod(), uri, "lecture", lectures);
+            enregistrer(request.getMethod(), uri, "ecriture", ecritures);
+
+            if (budgetLectures > 0 && lectures > budgetLectures) {
+                log.warn("Budget SQL dépassé : {} {} a exécuté {} lectures (budget {})",
+                        request.getMethod(), request.getRequestURI(), lectures, budgetLectures);
+                meterRegistry.counter("devismart.http.requetes.sql.depassements",
+                        "method", request.getMethod(), "uri", uri).increment();
+            }
+        }
+    }
+
+    private void enregistrer(String methode, String uri, String type, long nombre) {
+        DistributionSummary.builder("devismart.http.requetes.sql")
+                .description("Requêtes SQL exécutées par requête HTTP")
+                .tag("method", methode)
+                .tag("uri", uri)
+                .tag("type", type)
+                .register(meterRegistry)
+                .record(nombre);
+    }
+}
@@ -1,5 +1,7 @@
 package com.example.DeviSmart.controllers;
 
+import com.example.DeviSmart.dto.ClientResume;
+import com.example.DeviSmart.dto.PageCurseur;
 import com.example.DeviSmart.entities.Client;
 import com.example.DeviSmart.services.ClientService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -17,27 +19,37 @@ public class ClientController {
     private ClientService clientService;
 
     @GetMapping
-    public List<Client> getAllClients() {
+    public List<ClientResume> getAllClients() {
         return clientService.findAll();
     }
 
+    /**
+     * Liste paginée par curseur
+     */
+    @GetMapping("/page")
+    public PageCurseur<ClientResume> getPageClients(
+            @RequestParam(required = false) Long curseur,
+            @RequestParam(required = false) Integer taille) {
+        return clientService.findPage(curseur, taille);
+    }
+
     @GetMapping("/{id}")
-    public ResponseEntity<Client> getClientById(@PathVariable Long id) {
+    public ResponseEntity<ClientResume> getClientById(@PathVariable Long id) {
         return clientService.findById(id)
                 .map(ResponseEntity::ok)
                 .orElse(ResponseEntity.notFound().build());
     }
 
     @PostMapping
-    public Client createClient(@RequestBody Client client) {
-        return clientService.save(client);
+    public ClientResume createClient(@RequestBody Client client) {
+        return ClientResume.de(clientService.save(client));
     }
 
     @PutMapping("/{id}")
-    public ResponseEntity<Client> updateClient(@PathVariable Long id, @RequestBody Client clientDetails) {
+    public ResponseEntity<ClientResume> updateClient(@PathVariable Long id, @RequestBody Client clientDetails) {
         try {
             Client updatedClient = clientService.update(id, clientDetails);
-            return ResponseEntity.ok(updatedClient);
+            return ResponseEntity.ok(ClientResume.de(updatedClient));
         } catch (RuntimeException e) {
             return ResponseEntity.notFound().build();
         }
@@ -1,16 +1,27 @@
 package com.example.DeviSmart.controllers;
 
+import com.example.DeviSmart.dto.DevisDetail;
+import com.example.DeviSmart.dto.DevisResume;
+import com.example.DeviSmart.dto.FactureDetail;
+import com.example.DeviSmart.dto.PageCurseur;
 import com.example.DeviSmart.entities.Devis;
 import com.example.DeviSmart.entities.Facture;
 import com.example.DeviSmart.services.DevisService;
+import com.example.DeviSmart.services.IdempotenceService;
 import com.example.DeviSmart.services.PdfGenerationService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
 
@@ -25,78 +36,128 @@ public class DevisController {
     @Autowired
     private PdfGenerationService pdfGenerationService;
 
+    @Autowired
+    private IdempotenceService idempotenceService;
+
+    /**
+     * Tous les devis, avec leurs lignes (vue détaillée)
+     */
     @GetMapping
-    public List<Devis> getAllDevis() {
+    public List<DevisDetail> getAllDevis() {
         return devisService.findAll();
     }
 
+    /**
+     * Liste résumée (sans lignes) paginée par curseur, avec filtres optionnels
+     * Ex: /api/devis/page?statut=BROUILLON&clientId=3&taille=50&curseur=1234
+     * montantMin / montantMax : bornes du total TTC
+     */
+    @GetMapping("/page")
+    public PageCurseur<DevisResume> getPageDevis(
+            @RequestParam(required = false) Long curseur,
+            @RequestParam(required = false) Integer taille,
+            @RequestParam(required = false) String statut,
+            @RequestParam(required = false) Long clientId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate du,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate au,
+            @RequestParam(required = false) BigDecimal montantMin,
+            @RequestParam(required = false) BigDecimal montantMax) {
+        return devisService.findPage(curseur, taille, statut, clientId, du, au, montantMin, montantMax);
+    }
+
     @GetMapping("/{id}")
-    public ResponseEntity<Devis> getDevisById(@PathVariable Long id) {
-        return devisService.findById(id)
-                .map(ResponseEntity::ok)
+    public ResponseEntity<DevisDetail> getDevisById(@PathVariable Long id) {
+        return devisService.findDetail(id)
+                .map(devis -> VersionsHttp.ok(devis, devis.version()))
                 .orElse(ResponseEntity.notFound().build());
     }
 
+    /**
+     * Liste résumée (sans lignes) des devis d'un client
+     */
     @GetMapping("/client/{clientId}")
-    public List<Devis> getDevisByClient(@PathVariable Long clientId) {
+    public List<DevisResume> getDevisByClient(@PathVariable Long clientId) {
         return devisService.findByClientId(clientId);
     }
 
     @GetMapping("/statut/{statut}")
-    public List<Devis> getDevisByStatut(@PathVariable String statut) {
+    public List<DevisResume> getDevisByStatut(@PathVariable String statut) {
         return devisService.findByStatut(statut);
     }
 
     @PostMapping
-    public Devis createDevis(@RequestBody Devis devis) {
-        return devisService.save(devis);
+    public DevisDetail createDevis(@RequestBody Devis devis) {
+        return DevisDetail.de(devisService.save(devis));
     }
 
+    // If-Match optionnel sur les modifications (version du devis, ETag de GET /{id}) :
+    // 412 si le devis a changé, 409 si une écriture concurrente est détectée sans précondition
+
     @PutMapping("/{id}")
-    public ResponseEntity<Devis> updateDevis(@PathVariable Long id, @RequestBody Devis devisDetails) {
+    public ResponseEntity<DevisDetail> updateDevis(@PathVariable Long id, @RequestBody Devis devisDetails,
+                                                   @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         try {
-            Devis updatedDevis = devisService.update(id, devisDetails);
-            return ResponseEntity.ok(updatedDevis);
+            Devis updatedDevis = devisService.update(id, devisDetails, VersionsHttp.versionAttendue(ifMatch));
+            return VersionsHttp.ok(DevisDetail.de(updatedDevis), updatedDevis.getVersion());
+        } catch (OptimisticLockingFailureException e) {
+            return VersionsHttp.conflit(ifMatch);
         } catch (RuntimeException e) {
             return ResponseEntity.notFound().build();
         }
     }
 
     @DeleteMapping("/{id}")
-    public ResponseEntity<Void> deleteDevis(@PathVariable Long id) {
-        devisService.delete(id);
-        return ResponseEntity.noContent().build();
+    public ResponseEntity<Void> deleteDevis(@PathVariable Long id, @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        try {
+            devisService.delete(id, VersionsHttp.versionAttendue(ifMatch));
+            return ResponseEntity.noContent().build();
+        } catch (OptimisticLockingFailureException e) {
+            return VersionsHttp.conflit(ifMatch);
+        }
     }
 
+    /**
+     * Valide le devis et renvoie sa facture ; rejouable sans doublon (facture
+     * existante renvoyée), Idempotency-Key optionnel pour rejouer la réponse d'origine
+     */
     @PostMapping("/{id}/valider")
-    public ResponseEntity<Facture> validerDevis(@PathVariable Long id) {
-        try {
-            Facture facture = devisService.validerDevis(id);
-            return ResponseEntity.ok(facture);
-        } catch (RuntimeException e) {
-            return ResponseEntity.notFound().build();
-        }
+    public ResponseEntity<?> validerDevis(@PathVariable Long id,
+                                          @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                          @RequestHeader(value = IdempotenceService.EN_TETE, required = false) String cleIdempotence) {
+        return idempotenceService.executer("devis.valider", cleIdempotence, id, () -> {
+            try {
+                Facture facture = devisService.validerDevis(id, VersionsHttp.versionAttendue(ifMatch));
+                return ResponseEntity.ok(FactureDetail.de(facture));
+            } catch (OptimisticLockingFailureException e) {
+                return VersionsHttp.conflit(ifMatch);
+            } catch (IllegalStateException | DataIntegrityViolationException e) {
+                // Devis refusé, ou facturé par une validation simultanée
+                return ResponseEntity.status(HttpStatus.CONFLICT).build();
+            } catch (RuntimeException e) {
+                return ResponseEntity.notFound().build();
+            }
+        });
     }
 
     @PostMapping("/{id}/refuser")
-    public ResponseEntity<Devis> refuserDevis(@PathVariable Long id) {
+    public ResponseEntity<DevisDetail> refuserDevis(@PathVariable Long id, @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         try {
-            Devis devis = devisService.refuserDevis(id);
-            return ResponseEntity.ok(devis);
+            Devis devis = devisService.refuserDevis(id, VersionsHttp.versionAttendue(ifMatch));
+            return VersionsHttp.ok(DevisDetail.de(devis), devis.getVersion());
+        } catch (OptimisticLockingFailureException e) {
+            return VersionsHttp.conflit(ifMatch);
         } catch (RuntimeException e) {
             return ResponseEntity.notFound().build();
         }
     }
 
     @GetMapping("/{id}/totaux")
-    public ResponseEntity<Map<String, Double>> getTotaux(@PathVariable Long id) {
+    public ResponseEntity<Map<String, Object>> getTotaux(@PathVariable Long id) {
         try {
-            double totalHT = devisService.calculerTotalHT(id);
-            double totalTTC = devisService.calculerTotalTTC(id);
             return ResponseEntity.ok(Map.of(
-                    "totalHT", totalHT,
-                    "totalTTC", totalTTC,
-                    "tva", totalTTC - totalHT
+                    "totalHT", devisService.calculerTotalHT(id),
+                    "totalTTC", devisService.calculerTotalTTC(id),
+                    "tva", devisService.calculerMontantTVA(id)
             ));
         } catch (RuntimeException e) {
             return ResponseEntity.notFound().build();
@@ -104,23 +165,21 @@ public class DevisController {
     }
 
     /**
-     * Génère et télécharge le PDF d'un devis
+     * Génère et télécharge le PDF d'un devis, écrit directement dans la réponse
      */
     @GetMapping("/{id}/pdf")
-    public ResponseEntity<byte[]> genererPdf(@PathVariable Long id) {
+    public ResponseEntity<StreamingResponseBody> genererPdf(@PathVariable Long id) {
         try {
             Devis devis = devisService.findById(id)
                     .orElseThrow(() -> new RuntimeException("Devis non trouvé"));
             
-            byte[] pdfContent = pdfGenerationService.genererPdfDevis(devis);
-            
             HttpHeaders headers = new HttpHeaders();
             headers.setContentType(MediaType.APPLICATION_PDF);
             headers.setContentDispositionFormData("attachment", 
                 "devis_" + devis.getNumero().replace("/", "-") + ".pdf");
-            headers.setContentLength(pdfContent.length);
             
-            return new ResponseEntity<>(pdfContent, headers, HttpStatus.OK);
+            StreamingResponseBody corps = sortie -> pdfGenerationService.genererPdfDevis(devis, sortie);
+            return new ResponseEntity<>(corps, headers, HttpStatus.OK);
         } catch (RuntimeException e) {
             return ResponseEntity.notFound().build();
         }
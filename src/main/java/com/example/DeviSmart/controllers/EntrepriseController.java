@@ -3,6 +3,8 @@ package com.example.DeviSmart.controllers;
 import com.example.DeviSmart.entities.Entreprise;
 import com.example.DeviSmart.services.EntrepriseService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -23,23 +25,24 @@ public class EntrepriseController {
         if (entreprise == null) {
             return ResponseEntity.notFound().build();
         }
-        return ResponseEntity.ok(entreprise);
+        return VersionsHttp.ok(entreprise, entreprise.getRevision());
     }
 
     /**
      * Crée ou met à jour les informations de l'entreprise
+     * If-Match optionnel (révision, ETag de GET) : 412 si le profil a changé entre-temps
      */
     @PostMapping
-    public ResponseEntity<Entreprise> saveEntreprise(@RequestBody Entreprise entreprise) {
-        return ResponseEntity.ok(entrepriseService.saveEntreprise(entreprise));
+    public ResponseEntity<Entreprise> saveEntreprise(@RequestBody Entreprise entreprise, @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return enregistrer(entreprise, ifMatch);
     }
 
     /**
      * Met à jour les informations de l'entreprise
      */
     @PutMapping
-    public ResponseEntity<Entreprise> updateEntreprise(@RequestBody Entreprise entreprise) {
-        return ResponseEntity.ok(entrepriseService.saveEntreprise(entreprise));
+    public ResponseEntity<Entreprise> updateEntreprise(@RequestBody Entreprise entreprise, @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return enregistrer(entreprise, ifMatch);
     }
 
     /**
@@ -49,4 +52,13 @@ public class EntrepriseController {
     public ResponseEntity<Double> getTauxTVA() {
         return ResponseEntity.ok(entrepriseService.getTauxTVA());
     }
+
+    private ResponseEntity<Entreprise> enregistrer(Entreprise entreprise, String ifMatch) {
+        try {
+            Entreprise enregistree = entrepriseService.saveEntreprise(entreprise, VersionsHttp.versionAttendue(ifMatch));
+            return VersionsHttp.ok(enregistree, enregistree.getRevision());
+        } catch (OptimisticLockingFailureException e) {
+            return VersionsHttp.conflit(ifMatch);
+        }
+    }
 }
@@ -1,17 +1,38 @@
 package com.example.DeviSmart.controllers;
 
+import com.example.DeviSmart.dto.BilanRetard;
+import com.example.DeviSmart.dto.DemandeFacture;
+import com.example.DeviSmart.dto.FactureDetail;
+import com.example.DeviSmart.dto.FactureResume;
+import com.example.DeviSmart.dto.PageCurseur;
+import com.example.DeviSmart.dto.RapportLot;
+import com.example.DeviSmart.dto.StatistiqueClient;
+import com.example.DeviSmart.dto.StatistiqueMensuelle;
+import com.example.DeviSmart.dto.StatistiqueStatut;
 import com.example.DeviSmart.entities.Facture;
 import com.example.DeviSmart.entities.LigneFacture;
+import com.example.DeviSmart.services.ExportComptableService;
+import com.example.DeviSmart.services.ExportPdfService;
+import com.example.DeviSmart.services.FactureLotService;
 import com.example.DeviSmart.services.FactureService;
-import com.example.DeviSmart.services.FacturePdfService;
+import com.example.DeviSmart.services.IdempotenceService;
+import com.example.DeviSmart.services.PdfCacheService;
+import com.example.DeviSmart.services.RetardFacturesService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.Year;
 import java.util.List;
 import java.util.Map;
 
@@ -29,34 +50,70 @@ public class FactureController {
     private FactureService factureService;
 
     @Autowired
-    private FacturePdfService facturePdfService;
+    private FactureLotService factureLotService;
+
+    @Autowired
+    private PdfCacheService pdfCacheService;
+
+    @Autowired
+    private ExportPdfService exportPdfService;
+
+    @Autowired
+    private ExportComptableService exportComptableService;
+
+    @Autowired
+    private RetardFacturesService retardFacturesService;
+
+    @Autowired
+    private IdempotenceService idempotenceService;
 
     // ==================== LECTURE ====================
 
+    /**
+     * Toutes les factures, avec leurs lignes (vue détaillée)
+     */
     @GetMapping
-    public List<Facture> getAllFactures() {
+    public List<FactureDetail> getAllFactures() {
         return factureService.findAll();
     }
 
+    /**
+     * Liste résumée (sans lignes) paginée par curseur, avec filtres optionnels
+     * Ex: /api/factures/page?statut=NON_PAYEE&du=2026-01-01&taille=50&curseur=1234
+     */
+    @GetMapping("/page")
+    public PageCurseur<FactureResume> getPageFactures(
+            @RequestParam(required = false) Long curseur,
+            @RequestParam(required = false) Integer taille,
+            @RequestParam(required = false) String statut,
+            @RequestParam(required = false) Long clientId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate du,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate au) {
+        return factureService.findPage(curseur, taille, statut, clientId, du, au);
+    }
+
     @GetMapping("/{id}")
-    public ResponseEntity<Facture> getFactureById(@PathVariable Long id) {
-        return factureService.findById(id)
-                .map(ResponseEntity::ok)
+    public ResponseEntity<FactureDetail> getFactureById(@PathVariable Long id) {
+        return factureService.findDetail(id)
+                .map(facture -> VersionsHttp.ok(facture, facture.version()))
                 .orElse(ResponseEntity.notFound().build());
     }
 
+    /**
+     * Liste résumée (sans lignes) des factures d'un client
+     */
     @GetMapping("/client/{clientId}")
-    public List<Facture> getFacturesByClient(@PathVariable Long clientId) {
+    public List<FactureResume> getFacturesByClient(@PathVariable Long clientId) {
         return factureService.findByClientId(clientId);
     }
 
     @GetMapping("/statut/{statut}")
-    public List<Facture> getFacturesByStatut(@PathVariable String statut) {
+    public List<FactureResume> getFacturesByStatut(@PathVariable String statut) {
         return factureService.findByStatut(statut);
     }
 
     @GetMapping("/numero/{numero}")
-    public ResponseEntity<Facture> getFactureByNumero(@PathVariable String numero) {
+    public ResponseEntity<FactureDetail> getFactureByNumero(@PathVariable String numero) {
         return factureService.findByNumero(numero)
                 .map(ResponseEntity::ok)
                 .orElse(ResponseEntity.notFound().build());
@@ -67,13 +124,33 @@ public class FactureController {
     /**
      * Crée une nouvelle facture avec calculs automatiques
      * Body: { "clientId": 1, "lignes": [...] }
+     * Idempotency-Key optionnel : une requête rejouée avec la même clé reçoit la
+     * facture créée la première fois (aucun doublon, aucun numéro consommé)
      */
     @PostMapping("/creer")
-    public ResponseEntity<Facture> creerFacture(@RequestBody CreerFactureRequest request) {
+    public ResponseEntity<?> creerFacture(@RequestBody CreerFactureRequest request, @RequestHeader(value = IdempotenceService.EN_TETE, required = false) String cleIdempotence) {
+        return idempotenceService.executer("facture.creer", cleIdempotence, request, () -> {
+            try {
+                Facture facture = factureService.creerFacture(request.clientId, request.lignes);
+                return ResponseEntity.status(HttpStatus.CREATED).body(FactureDetail.de(facture));
+            } catch (RuntimeException e) {
+                return ResponseEntity.badRequest().build();
+            }
+        });
+    }
+
+    /**
+     * Création groupée (jusqu'à FactureLotService.TAILLE_MAX factures par appel)
+     * Body: [{ "reference": "ABO-42", "clientId": 1, "lignes": [...] }, ...]
+     *
+     * Les demandes sont traitées indépendamment : la réponse donne, dans l'ordre
+     * d'envoi, la facture créée ou l'erreur de chacune.
+     */
+    @PostMapping("/lot")
+    public ResponseEntity<RapportLot> creerFactures(@RequestBody List<DemandeFacture> demandes) {
         try {
-            Facture facture = factureService.creerFacture(request.clientId, request.lignes);
-            return ResponseEntity.status(HttpStatus.CREATED).body(facture);
-        } catch (RuntimeException e) {
+            return ResponseEntity.ok(factureLotService.creerFactures(demandes));
+        } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().build();
         }
     }
@@ -82,8 +159,8 @@ public class FactureController {
      * Ancienne méthode de création (deprecated, pour compatibilité)
      */
     @PostMapping
-    public Facture createFacture(@RequestBody Facture facture) {
-        return factureService.save(facture);
+    public FactureDetail createFacture(@RequestBody Facture facture) {
+        return FactureDetail.de(factureService.save(facture));
     }
 
     /**
@@ -91,45 +168,58 @@ public class FactureController {
      * Body: { "nomClient": "...", "adresseClient": "...", "lignes": [...] }
      */
     @PostMapping("/creer-manuelle")
-    public ResponseEntity<Facture> creerFactureManuelle(@RequestBody CreerFactureManuelleRequest request) {
-        try {
-            Facture facture = factureService.creerFactureManuelle(
-                request.nomClient,
-                request.adresseClient,
-                request.telephoneClient,
-                request.emailClient,
-                request.matriculeFiscalClient,
-                request.tauxTVA,
-                request.conditionsPaiement,
-                request.notes,
-                request.lignes
-            );
-            return ResponseEntity.status(HttpStatus.CREATED).body(facture);
-        } catch (RuntimeException e) {
-            return ResponseEntity.badRequest().build();
-        }
+    public ResponseEntity<?> creerFactureManuelle(@RequestBody CreerFactureManuelleRequest request, @RequestHeader(value = IdempotenceService.EN_TETE, required = false) String cleIdempotence) {
+        return idempotenceService.executer("facture.creer-manuelle", cleIdempotence, request, () -> {
+            try {
+                Facture facture = factureService.creerFactureManuelle(
+                    request.nomClient,
+                    request.adresseClient,
+                    request.telephoneClient,
+                    request.emailClient,
+                    request.matriculeFiscalClient,
+                    request.tauxTVA,
+                    request.conditionsPaiement,
+                    request.notes,
+                    request.lignes
+                );
+                return ResponseEntity.status(HttpStatus.CREATED).body(FactureDetail.de(facture));
+            } catch (RuntimeException e) {
+                return ResponseEntity.badRequest().build();
+            }
+        });
     }
 
     // ==================== MODIFICATION ====================
+    // If-Match optionnel (version de la facture, ETag de GET /{id}) : 412 si la facture a changé,
+    // 409 si une écriture concurrente est détectée sans précondition
 
     @PutMapping("/{id}")
-    public ResponseEntity<Facture> updateFacture(@PathVariable Long id, @RequestBody Facture factureDetails) {
+    public ResponseEntity<FactureDetail> updateFacture(@PathVariable Long id, @RequestBody Facture factureDetails,
+                                                       @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         try {
-            Facture updatedFacture = factureService.update(id, factureDetails);
-            return ResponseEntity.ok(updatedFacture);
+            Facture updatedFacture = factureService.update(id, factureDetails, VersionsHttp.versionAttendue(ifMatch));
+            return VersionsHttp.ok(FactureDetail.de(updatedFacture), updatedFacture.getVersion());
+        } catch (OptimisticLockingFailureException e) {
+            return VersionsHttp.conflit(ifMatch);
         } catch (RuntimeException e) {
             return ResponseEntity.notFound().build();
         }
     }
 
     /**
-     * Ajoute une ligne à une facture existante
+     * Ajoute une ligne à une facture existante (rejoué automatiquement en cas
+     * d'édition concurrente, sauf avec If-Match)
      */
     @PostMapping("/{id}/lignes")
-    public ResponseEntity<Facture> ajouterLigne(@PathVariable Long id, @RequestBody LigneFacture ligne) {
+    public ResponseEntity<FactureDetail> ajouterLigne(@PathVariable Long id, @RequestBody LigneFacture ligne,
+                                                      @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         try {
-            Facture facture = factureService.ajouterLigne(id, ligne);
-            return ResponseEntity.ok(facture);
+            Facture facture = factureService.ajouterLigne(id, ligne, VersionsHttp.versionAttendue(ifMatch));
+            return VersionsHttp.ok(FactureDetail.de(facture), facture.getVersion());
+        } catch (OptimisticLockingFailureException e) {
+            return VersionsHttp.conflit(ifMatch);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
         } catch (RuntimeException e) {
             return ResponseEntity.notFound().build();
         }
@@ -139,13 +229,18 @@ public class FactureController {
      * Met à jour une ligne existante
      */
     @PutMapping("/{id}/lignes/{ligneId}")
-    public ResponseEntity<Facture> modifierLigne(
+    public ResponseEntity<FactureDetail> modifierLigne(
             @PathVariable Long id,
             @PathVariable Long ligneId,
-            @RequestBody LigneFacture ligne) {
+            @RequestBody LigneFacture ligne,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         try {
-            Facture facture = factureService.mettreAJourLigne(id, ligneId, ligne);
-            return ResponseEntity.ok(facture);
+            Facture facture = factureService.mettreAJourLigne(id, ligneId, ligne, VersionsHttp.versionAttendue(ifMatch));
+            return VersionsHttp.ok(FactureDetail.de(facture), facture.getVersion());
+        } catch (OptimisticLockingFailureException e) {
+            return VersionsHttp.conflit(ifMatch);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
         } catch (RuntimeException e) {
             return ResponseEntity.notFound().build();
         }
@@ -155,10 +250,13 @@ public class FactureController {
      * Supprime une ligne
      */
     @DeleteMapping("/{id}/lignes/{ligneId}")
-    public ResponseEntity<Facture> supprimerLigne(@PathVariable Long id, @PathVariable Long ligneId) {
+    public ResponseEntity<FactureDetail> supprimerLigne(@PathVariable Long id, @PathVariable Long ligneId,
+                                                        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         try {
-            Facture facture = factureService.supprimerLigne(id, ligneId);
-            return ResponseEntity.ok(facture);
+            Facture facture = factureService.supprimerLigne(id, ligneId, VersionsHttp.versionAttendue(ifMatch));
+            return VersionsHttp.ok(FactureDetail.de(facture), facture.getVersion());
+        } catch (OptimisticLockingFailureException e) {
+            return VersionsHttp.conflit(ifMatch);
         } catch (RuntimeException e) {
             return ResponseEntity.notFound().build();
         }
@@ -167,48 +265,69 @@ public class FactureController {
     // ==================== SUPPRESSION ====================
 
     @DeleteMapping("/{id}")
-    public ResponseEntity<Void> deleteFacture(@PathVariable Long id) {
-        factureService.delete(id);
-        return ResponseEntity.noContent().build();
+    public ResponseEntity<Void> deleteFacture(@PathVariable Long id, @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        try {
+            factureService.delete(id, VersionsHttp.versionAttendue(ifMatch));
+            return ResponseEntity.noContent().build();
+        } catch (OptimisticLockingFailureException e) {
+            return VersionsHttp.conflit(ifMatch);
+        }
     }
 
     // ==================== STATUTS ====================
 
     @PostMapping("/{id}/payer")
-    public ResponseEntity<Facture> marquerPayee(@PathVariable Long id) {
+    public ResponseEntity<FactureDetail> marquerPayee(@PathVariable Long id, @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         try {
-            Facture facture = factureService.marquerPayee(id);
-            return ResponseEntity.ok(facture);
+            Facture facture = factureService.marquerPayee(id, VersionsHttp.versionAttendue(ifMatch));
+            return VersionsHttp.ok(FactureDetail.de(facture), facture.getVersion());
+        } catch (OptimisticLockingFailureException e) {
+            return VersionsHttp.conflit(ifMatch);
         } catch (RuntimeException e) {
             return ResponseEntity.notFound().build();
         }
     }
 
     @PostMapping("/{id}/impayer")
-    public ResponseEntity<Facture> marquerNonPayee(@PathVariable Long id) {
+    public ResponseEntity<FactureDetail> marquerNonPayee(@PathVariable Long id, @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         try {
-            Facture facture = factureService.marquerNonPayee(id);
-            return ResponseEntity.ok(facture);
+            Facture facture = factureService.marquerNonPayee(id, VersionsHttp.versionAttendue(ifMatch));
+            return VersionsHttp.ok(FactureDetail.de(facture), facture.getVersion());
+        } catch (OptimisticLockingFailureException e) {
+            return VersionsHttp.conflit(ifMatch);
         } catch (RuntimeException e) {
             return ResponseEntity.notFound().build();
         }
     }
 
     @PostMapping("/{id}/retard")
-    public ResponseEntity<Facture> marquerEnRetard(@PathVariable Long id) {
+    public ResponseEntity<FactureDetail> marquerEnRetard(@PathVariable Long id, @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         try {
-            Facture facture = factureService.marquerEnRetard(id);
-            return ResponseEntity.ok(facture);
+            Facture facture = factureService.marquerEnRetard(id, VersionsHttp.versionAttendue(ifMatch));
+            return VersionsHttp.ok(FactureDetail.de(facture), facture.getVersion());
+        } catch (OptimisticLockingFailureException e) {
+            return VersionsHttp.conflit(ifMatch);
         } catch (RuntimeException e) {
             return ResponseEntity.notFound().build();
         }
     }
 
+    /**
+     * Passe en retard toutes les factures non payées échues (tâche planifiée,
+     * déclenchable ici) ; ?simulation=true compte seulement les factures concernées
+     */
+    @PostMapping("/retards")
+    public ResponseEntity<BilanRetard> passerEnRetard(@RequestParam(defaultValue = "false") boolean simulation) {
+        return ResponseEntity.ok(retardFacturesService.passerEnRetard(simulation));
+    }
+
     @PostMapping("/{id}/annuler")
-    public ResponseEntity<Facture> annulerFacture(@PathVariable Long id) {
+    public ResponseEntity<FactureDetail> annulerFacture(@PathVariable Long id, @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         try {
-            Facture facture = factureService.annuler(id);
-            return ResponseEntity.ok(facture);
+            Facture facture = factureService.annuler(id, VersionsHttp.versionAttendue(ifMatch));
+            return VersionsHttp.ok(FactureDetail.de(facture), facture.getVersion());
+        } catch (OptimisticLockingFailureException e) {
+            return VersionsHttp.conflit(ifMatch);
         } catch (RuntimeException e) {
             return ResponseEntity.notFound().build();
         }
@@ -234,10 +353,12 @@ public class FactureController {
     }
 
     @PostMapping("/{id}/recalculer")
-    public ResponseEntity<Facture> recalculerTotaux(@PathVariable Long id) {
+    public ResponseEntity<FactureDetail> recalculerTotaux(@PathVariable Long id, @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         try {
-            Facture facture = factureService.recalculerTotaux(id);
-            return ResponseEntity.ok(facture);
+            Facture facture = factureService.recalculerTotaux(id, VersionsHttp.versionAttendue(ifMatch));
+            return VersionsHttp.ok(FactureDetail.de(facture), facture.getVersion());
+        } catch (OptimisticLockingFailureException e) {
+            return VersionsHttp.conflit(ifMatch);
         } catch (RuntimeException e) {
             return ResponseEntity.notFound().build();
         }
@@ -247,39 +368,172 @@ public class FactureController {
 
     @GetMapping("/stats")
     public ResponseEntity<Map<String, Object>> getStatistiques() {
+        Map<String, StatistiqueStatut> parStatut = factureService.getStatistiquesParStatut();
         return ResponseEntity.ok(Map.of(
-                "chiffreAffaires", factureService.getChiffreAffaires(),
-                "montantEnAttente", factureService.getMontantEnAttente(),
-                "montantEnRetard", factureService.getMontantEnRetard()
+                "chiffreAffaires", montant(parStatut, "PAYEE"),
+                "montantEnAttente", montant(parStatut, "NON_PAYEE"),
+                "montantEnRetard", montant(parStatut, "EN_RETARD"),
+                "parStatut", parStatut.values()
         ));
     }
 
+    /**
+     * Répartition mensuelle d'une année (année en cours par défaut)
+     */
+    @GetMapping("/stats/mensuelles")
+    public List<StatistiqueMensuelle> getStatistiquesMensuelles(@RequestParam(required = false) Integer annee) {
+        return factureService.getStatistiquesMensuelles(annee != null ? annee : Year.now().getValue());
+    }
+
+    @GetMapping("/stats/clients")
+    public List<StatistiqueClient> getStatistiquesParClient() {
+        return factureService.getStatistiquesParClient();
+    }
+
+    /**
+     * Recalcule les agrégats statistiques depuis les factures (après import ou correction en base)
+     */
+    @PostMapping("/stats/reconstruire")
+    public ResponseEntity<Map<String, StatistiqueStatut>> reconstruireStatistiques() {
+        return ResponseEntity.ok(factureService.reconstruireStatistiques());
+    }
+
+    private BigDecimal montant(Map<String, StatistiqueStatut> parStatut, String statut) {
+        StatistiqueStatut statistique = parStatut.get(statut);
+        return statistique != null && statistique.montant() != null ? statistique.montant() : BigDecimal.ZERO;
+    }
+
     // ==================== PDF ====================
 
     /**
      * Génère et télécharge le PDF d'une facture
+     *
+     * Servi depuis le cache disque quand le contenu n'a pas changé. L'ETag
+     * identifie le contenu : If-None-Match identique => 304 sans corps.
+     * Le PDF est écrit directement dans la réponse (transfert chunked s'il
+     * n'est pas encore en cache).
      */
     @GetMapping("/{id}/pdf")
-    public ResponseEntity<byte[]> genererPdf(@PathVariable Long id) {
+    public ResponseEntity<StreamingResponseBody> genererPdf(@PathVariable Long id,
+                                                            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         try {
             Facture facture = factureService.findById(id)
                     .orElseThrow(() -> new RuntimeException("Facture non trouvée"));
-            
-            byte[] pdfContent = facturePdfService.generer(facture);
+
+            // Charge aussi les lignes : le rendu se fait hors du thread de la requête
+            String cle = pdfCacheService.cle(facture);
+            String etag = "\"" + cle + "\"";
+            if (correspond(ifNoneMatch, etag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+            }
             
             String filename = "facture_" + facture.getNumeroFacture().replace("/", "-") + ".pdf";
             
             HttpHeaders headers = new HttpHeaders();
             headers.setContentType(MediaType.APPLICATION_PDF);
             headers.setContentDispositionFormData("attachment", filename);
-            headers.setContentLength(pdfContent.length);
-            
-            return new ResponseEntity<>(pdfContent, headers, HttpStatus.OK);
+            headers.setETag(etag);
+            headers.setCacheControl(CacheControl.noCache().cachePrivate());
+
+            // Content-Length seulement pour un fichier en cache déjà ouvert : un PDF
+            // régénéré n'a pas forcément la même taille (date de création, /ID)
+            PdfCacheService.PdfEnCache enCache = pdfCacheService.ouvrir(cle);
+            if (enCache != null) {
+                headers.setContentLength(enCache.taille());
+                StreamingResponseBody copie = enCache::copier;
+                return new ResponseEntity<>(copie, headers, HttpStatus.OK);
+            }
+
+            StreamingResponseBody corps = sortie -> pdfCacheService.ecrire(facture, cle, sortie);
+            return new ResponseEntity<>(corps, headers, HttpStatus.OK);
         } catch (RuntimeException e) {
             return ResponseEntity.notFound().build();
         }
     }
 
+    /**
+     * Export groupé des PDF des factures filtrées, en une seule réponse
+     * Ex: /api/factures/export/pdf?format=zip&du=2026-01-01&au=2026-01-31
+     *
+     * format=zip : une archive avec un PDF par facture (par défaut)
+     * format=pdf : un seul PDF regroupant toutes les factures
+     */
+    @GetMapping("/export/pdf")
+    public ResponseEntity<StreamingResponseBody> exporterPdf(
+            @RequestParam(defaultValue = ExportPdfService.FORMAT_ZIP) String format,
+            @RequestParam(required = false) String statut,
+            @RequestParam(required = false) Long clientId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate du,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate au) {
+        boolean zip = ExportPdfService.FORMAT_ZIP.equalsIgnoreCase(format);
+        if (!zip && !ExportPdfService.FORMAT_PDF.equalsIgnoreCase(format)) {
+            return ResponseEntity.badRequest().build();
+        }
+        HttpHeaders headers = new HttpHeaders();
+        if (zip) {
+            headers.setContentType(MediaType.parseMediaType("application/zip"));
+            headers.setContentDispositionFormData("attachment", "factures.zip");
+        } else {
+            headers.setContentType(MediaType.APPLICATION_PDF);
+            headers.setContentDispositionFormData("attachment", "factures.pdf");
+        }
+
+        StreamingResponseBody corps = zip
+                ? sortie -> exportPdfService.ecrireZip(statut, clientId, du, au, sortie)
+                : sortie -> exportPdfService.ecrireFusion(statut, clientId, du, au, sortie);
+        return new ResponseEntity<>(corps, headers, HttpStatus.OK);
+    }
+
+    /**
+     * Export comptable des factures filtrées et de leurs lignes, en flux
+     * Ex: /api/factures/export?format=csv&separateur=;&du=2026-01-01&au=2026-12-31
+     *
+     * format=csv : une ligne par ligne de facture (par défaut)
+     * format=jsonl : une facture par ligne, lignes incluses
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exporter(
+            @RequestParam(defaultValue = ExportComptableService.FORMAT_CSV) String format,
+            @RequestParam(defaultValue = ",") char separateur,
+            @RequestParam(required = false) String statut,
+            @RequestParam(required = false) Long clientId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate du,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate au) {
+        boolean csv = ExportComptableService.FORMAT_CSV.equalsIgnoreCase(format);
+        if (!csv && !ExportComptableService.FORMAT_JSONL.equalsIgnoreCase(format)) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        HttpHeaders headers = new HttpHeaders();
+        if (csv) {
+            headers.setContentType(new MediaType("text", "csv", StandardCharsets.UTF_8));
+            headers.setContentDispositionFormData("attachment", "factures.csv");
+        } else {
+            headers.setContentType(MediaType.APPLICATION_NDJSON);
+            headers.setContentDispositionFormData("attachment", "factures.jsonl");
+        }
+
+        StreamingResponseBody corps = sortie ->
+                exportComptableService.ecrire(format, separateur, statut, clientId, du, au, sortie);
+        return new ResponseEntity<>(corps, headers, HttpStatus.OK);
+    }
+
+    private boolean correspond(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidat : ifNoneMatch.split(",")) {
+            String valeur = candidat.trim();
+            if (valeur.startsWith("W/")) {
+                valeur = valeur.substring(2);
+            }
+            if (valeur.equals("*") || valeur.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     // ==================== DTOs INTERNES ====================
 
     /**
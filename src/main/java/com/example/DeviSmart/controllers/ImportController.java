@@ -0,0 +1,76 @@
+package com.example.DeviSmart.controllers;
+
+import com.example.DeviSmart.dto.EtatImport;
+import com.example.DeviSmart.services.ImportService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Contrôleur REST de la reprise de données
+ *
+ * 1. POST /api/imports/{type} (clients, devis, factures), fichier en multipart (champ "fichier")
+ *    Ex: curl -F fichier=@factures.csv "http://localhost:8080/api/imports/factures?separateur=;"
+ * 2. GET  /api/imports/{id} : état et compteurs
+ * 3. GET  /api/imports/{id}/erreurs : rapport CSV des documents rejetés
+ *
+ * Reprise après interruption : renvoyer le même fichier avec ?reprise={id}.
+ */
+@RestController
+@RequestMapping("/api/imports")
+@CrossOrigin(origins = "*")
+public class ImportController {
+
+    @Autowired
+    private ImportService importService;
+
+    @PostMapping(value = "/{type}", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<EtatImport> importer(
+            @PathVariable String type,
+            @RequestParam("fichier") MultipartFile fichier,
+            @RequestParam(required = false) String format,
+            @RequestParam(defaultValue = ",") char separateur,
+            @RequestParam(required = false) Long reprise) {
+        // Seul un import à reprendre introuvable donne 404 ; les autres erreurs restent des 500
+        if (reprise != null && importService.findById(reprise).isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        try (InputStream contenu = fichier.getInputStream()) {
+            return ResponseEntity.ok(EtatImport.de(importService.importer(
+                    type, format, separateur, fichier.getOriginalFilename(), contenu, reprise)));
+        } catch (IllegalArgumentException | IOException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<EtatImport> getImport(@PathVariable Long id) {
+        return importService.findById(id)
+                .map(EtatImport::de)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @GetMapping("/{id}/erreurs")
+    public ResponseEntity<Resource> getErreurs(@PathVariable Long id) {
+        Path fichier = importService.fichierErreurs(id);
+        if (importService.findById(id).isEmpty() || !Files.exists(fichier)) {
+            return ResponseEntity.notFound().build();
+        }
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(new MediaType("text", "csv", StandardCharsets.UTF_8));
+        headers.setContentDispositionFormData("attachment", "import-" + id + "-erreurs.csv");
+        return ResponseEntity.ok().headers(headers).body(new FileSystemResource(fichier));
+    }
+}
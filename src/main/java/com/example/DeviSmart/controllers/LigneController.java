@@ -1,5 +1,6 @@
 package com.example.DeviSmart.controllers;
 
+import com.example.DeviSmart.dto.PageCurseur;
 import com.example.DeviSmart.entities.Ligne;
 import com.example.DeviSmart.services.LigneService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -21,6 +22,17 @@ public class LigneController {
         return ligneService.findAll();
     }
 
+    /**
+     * Liste paginée par curseur, éventuellement limitée à un devis
+     */
+    @GetMapping("/page")
+    public PageCurseur<Ligne> getPageLignes(
+            @RequestParam(required = false) Long curseur,
+            @RequestParam(required = false) Integer taille,
+            @RequestParam(required = false) Long devisId) {
+        return ligneService.findPage(curseur, taille, devisId);
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<Ligne> getLigneById(@PathVariable Long id) {
         return ligneService.findById(id)
@@ -0,0 +1,92 @@
+package com.example.DeviSmart.controllers;
+
+import com.example.DeviSmart.dto.MetriquesPdf;
+import com.example.DeviSmart.dto.StatutTravailPdf;
+import com.example.DeviSmart.services.PdfJobService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.net.URI;
+import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Contrôleur REST de la génération PDF asynchrone
+ *
+ * 1. POST /api/pdf/jobs/factures/{id} (ou /devis/{id}) : 202 + état du travail
+ * 2. GET  /api/pdf/jobs/{jobId} : état (EN_ATTENTE, EN_COURS, TERMINE, ECHEC)
+ * 3. GET  /api/pdf/jobs/{jobId}/contenu : le PDF une fois le travail terminé
+ *
+ * File pleine : 503 avec l'en-tête Retry-After.
+ */
+@RestController
+@RequestMapping("/api/pdf/jobs")
+@CrossOrigin(origins = "*")
+public class PdfJobController {
+
+    @Autowired
+    private PdfJobService pdfJobService;
+
+    @PostMapping("/factures/{id}")
+    public ResponseEntity<StatutTravailPdf> soumettreFacture(@PathVariable Long id) {
+        return soumettre(() -> pdfJobService.soumettreFacture(id));
+    }
+
+    @PostMapping("/devis/{id}")
+    public ResponseEntity<StatutTravailPdf> soumettreDevis(@PathVariable Long id) {
+        return soumettre(() -> pdfJobService.soumettreDevis(id));
+    }
+
+    @GetMapping("/{jobId}")
+    public ResponseEntity<StatutTravailPdf> getStatut(@PathVariable String jobId) {
+        return pdfJobService.getStatut(jobId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Télécharge le PDF ; 409 tant que le travail n'est pas terminé ou s'il a échoué
+     */
+    @GetMapping("/{jobId}/contenu")
+    public ResponseEntity<?> getContenu(@PathVariable String jobId) {
+        StatutTravailPdf statut = pdfJobService.getStatut(jobId).orElse(null);
+        if (statut == null) {
+            return ResponseEntity.notFound().build();
+        }
+        byte[] contenu = pdfJobService.getContenu(jobId).orElse(null);
+        if (contenu == null) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(statut);
+        }
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_PDF);
+        headers.setContentDispositionFormData("attachment", statut.nomFichier());
+        headers.setContentLength(contenu.length);
+
+        return new ResponseEntity<>(contenu, headers, HttpStatus.OK);
+    }
+
+    @GetMapping("/metriques")
+    public MetriquesPdf getMetriques() {
+        return pdfJobService.getMetriques();
+    }
+
+    private ResponseEntity<StatutTravailPdf> soumettre(Supplier<Optional<StatutTravailPdf>> soumission) {
+        try {
+            return soumission.get()
+                    .map(statut -> ResponseEntity.accepted()
+                            .location(URI.create("/api/pdf/jobs/" + statut.id()))
+                            .body(statut))
+                    .orElse(ResponseEntity.notFound().build());
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(pdfJobService.getDelaiNouvelEssaiSecondes()))
+                    .build();
+        }
+    }
+}
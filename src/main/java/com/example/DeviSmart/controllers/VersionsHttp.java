@@ -0,0 +1,53 @@
+package com.example.DeviSmart.controllers;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+/**
+ * Versions (@Version) des factures, devis et entreprise exposées en HTTP :
+ * ETag des réponses, précondition If-Match des modifications
+ *
+ * Sans If-Match, une modification s'applique à la version courante ; une
+ * écriture concurrente reste détectée au commit (409 Conflict). Avec If-Match,
+ * une version différente de celle indiquée donne 412 Precondition Failed.
+ */
+final class VersionsHttp {
+
+    private VersionsHttp() {
+    }
+
+    static String etag(Long version) {
+        return "\"" + (version != null ? version : 0) + "\"";
+    }
+
+    /**
+     * Version attendue d'après If-Match : null si l'en-tête est absent ou vaut "*",
+     * -1 (aucune version) s'il est illisible
+     */
+    static Long versionAttendue(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.strip().equals("*")) {
+            return null;
+        }
+        String valeur = ifMatch.strip();
+        if (valeur.startsWith("W/")) {
+            valeur = valeur.substring(2);
+        }
+        valeur = valeur.replace("\"", "");
+        try {
+            return Long.valueOf(valeur);
+        } catch (NumberFormatException e) {
+            return -1L;
+        }
+    }
+
+    static <T> ResponseEntity<T> ok(T corps, Long version) {
+        return ResponseEntity.ok().eTag(etag(version)).body(corps);
+    }
+
+    /**
+     * Réponse à un conflit de version : 412 si le client avait posé une précondition, 409 sinon
+     */
+    static <T> ResponseEntity<T> conflit(String ifMatch) {
+        return ResponseEntity.status(ifMatch != null ? HttpStatus.PRECONDITION_FAILED : HttpStatus.CONFLICT).build();
+    }
+}
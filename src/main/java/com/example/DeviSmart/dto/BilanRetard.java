@@ -0,0 +1,17 @@
+package com.example.DeviSmart.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Bilan d'un passage des factures échues en retard
+ *
+ * @param simulation true : factures seulement comptées, rien n'est modifié
+ * @param dateReference Échéances strictement antérieures à cette date
+ * @param factures Factures passées (ou qui passeraient) en EN_RETARD
+ * @param montant Montant TTC cumulé de ces factures
+ * @param paquets Transactions exécutées (0 en simulation)
+ */
+public record BilanRetard(boolean simulation, LocalDate dateReference, long factures,
+                          BigDecimal montant, int paquets) {
+}
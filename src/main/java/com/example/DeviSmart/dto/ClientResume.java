@@ -0,0 +1,22 @@
+package com.example.DeviSmart.dto;
+
+import com.example.DeviSmart.entities.Client;
+
+/**
+ * Client tel que renvoyé par l'API, sans ses devis ni ses factures
+ */
+public record ClientResume(Long id,
+                           String nom,
+                           String email,
+                           String telephone,
+                           String adresse,
+                           String matriculeFiscal) {
+
+    public static ClientResume de(Client client) {
+        if (client == null) {
+            return null;
+        }
+        return new ClientResume(client.getId(), client.getNom(), client.getEmail(),
+                client.getTelephone(), client.getAdresse(), client.getMatriculeFiscal());
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.DeviSmart.dto;
+
+import com.example.DeviSmart.entities.LigneFacture;
+
+import java.util.List;
+
+/**
+ * Facture à créer dans une création groupée (POST /api/factures/lot)
+ *
+ * @param reference Identifiant côté appelant (ex: abonnement), renvoyé tel quel dans le résultat
+ */
+public record DemandeFacture(String reference,
+                             Long clientId,
+                             List<LigneFacture> lignes,
+                             String conditionsPaiement,
+                             String notes) {
+}
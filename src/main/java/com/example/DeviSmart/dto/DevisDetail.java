@@ -0,0 +1,64 @@
+package com.example.DeviSmart.dto;
+
+import com.example.DeviSmart.entities.Devis;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Vue détaillée d'un devis : client, lignes et totaux stockés
+ *
+ * Construite dans la transaction de lecture (ou juste après l'enregistrement) :
+ * la sérialisation JSON ne peut plus déclencher de chargement en base.
+ * version : à renvoyer dans If-Match pour une modification conditionnelle.
+ */
+public record DevisDetail(Long id,
+                          Long version,
+                          String numero,
+                          LocalDate dateCreation,
+                          LocalDate dateValidite,
+                          String statut,
+                          BigDecimal tauxTVA,
+                          String clientNom,
+                          String clientEmail,
+                          String clientTelephone,
+                          String clientAdresse,
+                          ClientResume client,
+                          List<Ligne> lignes,
+                          BigDecimal totalHT,
+                          BigDecimal montantTVA,
+                          BigDecimal totalTTC) {
+
+    public record Ligne(Long id,
+                        String designation,
+                        BigDecimal quantite,
+                        BigDecimal prixUnitaire,
+                        BigDecimal total) {
+
+        static Ligne de(com.example.DeviSmart.entities.Ligne ligne) {
+            return new Ligne(ligne.getId(), ligne.getDesignation(), ligne.getQuantite(),
+                    ligne.getPrixUnitaire(), ligne.getTotal());
+        }
+    }
+
+    public static DevisDetail de(Devis devis) {
+        return new DevisDetail(
+                devis.getId(),
+                devis.getVersion(),
+                devis.getNumero(),
+                devis.getDateCreation(),
+                devis.getDateValidite(),
+                devis.getStatut(),
+                devis.getTauxTVA(),
+                devis.getClientNom(),
+                devis.getClientEmail(),
+                devis.getClientTelephone(),
+                devis.getClientAdresse(),
+                ClientResume.de(devis.getClient()),
+                devis.getLignes().stream().map(Ligne::de).toList(),
+                devis.getTotalHT(),
+                devis.getMontantTVA(),
+                devis.getTotalTTC());
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.DeviSmart.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Vue résumée d'un devis pour les listes, lue directement en projection
+ *
+ * Les totaux sont ceux stockés sur le devis (Devis.recalculerTotaux) :
+ * aucune jointure sur les lignes.
+ */
+public record DevisResume(Long id,
+                          String numero,
+                          LocalDate dateCreation,
+                          LocalDate dateValidite,
+                          String statut,
+                          BigDecimal totalHT,
+                          BigDecimal montantTVA,
+                          BigDecimal totalTTC,
+                          Long clientId,
+                          String nomClient) {
+}
@@ -0,0 +1,30 @@
+package com.example.DeviSmart.dto;
+
+import com.example.DeviSmart.entities.ImportDonnees;
+
+import java.time.LocalDateTime;
+
+/**
+ * État d'un import, tel que renvoyé au client
+ *
+ * statut : EN_COURS, TERMINE ou ECHOUE. Un import ECHOUE reprend après
+ * dernierEnregistrement en renvoyant le même fichier avec reprise = id.
+ */
+public record EtatImport(Long id,
+                         String type,
+                         String format,
+                         String nomFichier,
+                         String statut,
+                         long dernierEnregistrement,
+                         long importes,
+                         long rejetes,
+                         LocalDateTime dateDebut,
+                         LocalDateTime dateFin,
+                         String message) {
+
+    public static EtatImport de(ImportDonnees suivi) {
+        return new EtatImport(suivi.getId(), suivi.getType(), suivi.getFormat(), suivi.getNomFichier(),
+                suivi.getStatut(), suivi.getDernierEnregistrement(), suivi.getImportes(), suivi.getRejetes(),
+                suivi.getDateDebut(), suivi.getDateFin(), suivi.getMessage());
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.DeviSmart.dto;
+
+import com.example.DeviSmart.entities.Facture;
+import com.example.DeviSmart.entities.LigneFacture;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Vue détaillée d'une facture : données intégrées, client et lignes
+ *
+ * Construite dans la transaction de lecture (ou juste après l'enregistrement) :
+ * la sérialisation JSON ne peut plus déclencher de chargement en base.
+ * version : à renvoyer dans If-Match pour une modification conditionnelle.
+ */
+public record FactureDetail(Long id,
+                            Long version,
+                            String numeroFacture,
+                            LocalDate dateEmission,
+                            LocalDate dateEcheance,
+                            String statut,
+                            String referenceDevis,
+                            String nomEntreprise,
+                            String adresseEntreprise,
+                            String telephoneEntreprise,
+                            String emailEntreprise,
+                            String matriculeFiscal,
+                            String registreCommerce,
+                            String nomClient,
+                            String adresseClient,
+                            String telephoneClient,
+                            String emailClient,
+                            String matriculeFiscalClient,
+                            ClientResume client,
+                            List<Ligne> lignes,
+                            BigDecimal totalHT,
+                            BigDecimal tauxTVA,
+                            BigDecimal montantTVA,
+                            BigDecimal totalTTC,
+                            String conditionsPaiement,
+                            String notes) {
+
+    public record Ligne(Long id,
+                        String designation,
+                        BigDecimal quantite,
+                        BigDecimal prixUnitaireHT,
+                        BigDecimal totalLigneHT) {
+
+        static Ligne de(LigneFacture ligne) {
+            return new Ligne(ligne.getId(), ligne.getDesignation(), ligne.getQuantite(),
+                    ligne.getPrixUnitaireHT(), ligne.getTotalLigneHT());
+        }
+    }
+
+    public static FactureDetail de(Facture facture) {
+        return new FactureDetail(
+                facture.getId(),
+                facture.getVersion(),
+                facture.getNumeroFacture(),
+                facture.getDateEmission(),
+                facture.getDateEcheance(),
+                facture.getStatut(),
+                facture.getReferenceDevis(),
+                facture.getNomEntreprise(),
+                facture.getAdresseEntreprise(),
+                facture.getTelephoneEntreprise(),
+                facture.getEmailEntreprise(),
+                facture.getMatriculeFiscal(),
+                facture.getRegistreCommerce(),
+                facture.getNomClient(),
+                facture.getAdresseClient(),
+                facture.getTelephoneClient(),
+                facture.getEmailClient(),
+                facture.getMatriculeFiscalClient(),
+                ClientResume.de(facture.getClient()),
+                facture.getLignes().stream().map(Ligne::de).toList(),
+                facture.getTotalHT(),
+                facture.getTauxTVA(),
+                facture.getMontantTVA(),
+                facture.getTotalTTC(),
+                facture.getConditionsPaiement(),
+                facture.getNotes());
+    }
+}
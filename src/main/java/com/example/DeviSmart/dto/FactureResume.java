@@ -0,0 +1,22 @@
+package com.example.DeviSmart.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Vue résumée d'une facture pour les listes, lue directement en projection
+ * (ni lignes ni client chargés, rien dans le contexte de persistance)
+ *
+ * clientId null : facture manuelle sans client enregistré
+ */
+public record FactureResume(Long id,
+                            String numeroFacture,
+                            LocalDate dateEmission,
+                            LocalDate dateEcheance,
+                            String statut,
+                            BigDecimal totalHT,
+                            BigDecimal montantTVA,
+                            BigDecimal totalTTC,
+                            Long clientId,
+                            String nomClient) {
+}
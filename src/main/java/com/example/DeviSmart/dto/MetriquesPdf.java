@@ -0,0 +1,23 @@
+package com.example.DeviSmart.dto;
+
+/**
+ * Compteurs de la file de génération PDF depuis le démarrage
+ *
+ * Les temps sont en millisecondes, lus sur les timers devismart.pdf.jobs.attente
+ * (délai entre la soumission et la prise en charge par un worker) et
+ * devismart.pdf.jobs.rendu (chargement et génération). Les moyennes portent sur
+ * tout l'historique, les maxima sur la fenêtre récente du registre.
+ */
+public record MetriquesPdf(int workers,
+                           int capaciteFile,
+                           int enFile,
+                           int enCours,
+                           long soumis,
+                           long rejetes,
+                           long termines,
+                           long echecs,
+                           double attenteMoyenneMs,
+                           long attenteMaxMs,
+                           double renduMoyenMs,
+                           long renduMaxMs) {
+}
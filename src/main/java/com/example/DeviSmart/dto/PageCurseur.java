@@ -0,0 +1,38 @@
+package com.example.DeviSmart.dto;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Page d'une liste parcourue par curseur (pagination keyset)
+ *
+ * Les éléments sont triés par id décroissant. Pour obtenir la page suivante,
+ * rappeler l'endpoint avec curseur = curseurSuivant ; null indique la dernière page.
+ */
+public record PageCurseur<T>(List<T> elements, Long curseurSuivant) {
+
+    public static final int TAILLE_DEFAUT = 50;
+    public static final int TAILLE_MAX = 200;
+
+    /**
+     * Ramène la taille demandée dans les limites autorisées
+     */
+    public static int borner(Integer taille) {
+        if (taille == null || taille <= 0) {
+            return TAILLE_DEFAUT;
+        }
+        return Math.min(taille, TAILLE_MAX);
+    }
+
+    /**
+     * Construit la page à partir d'une lecture de (taille + 1) éléments :
+     * l'élément en trop indique seulement qu'une page suivante existe
+     */
+    public static <T> PageCurseur<T> de(List<T> lus, int taille, Function<T, Long> id) {
+        if (lus.size() <= taille) {
+            return new PageCurseur<>(lus, null);
+        }
+        List<T> elements = lus.subList(0, taille);
+        return new PageCurseur<>(List.copyOf(elements), id.apply(elements.get(taille - 1)));
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.DeviSmart.dto;
+
+import java.util.List;
+
+/**
+ * Bilan d'une création groupée : compteurs et résultat de chaque demande, dans l'ordre
+ */
+public record RapportLot(int demandees, int creees, int echecs, List<ResultatCreation> resultats) {
+
+    public static RapportLot de(List<ResultatCreation> resultats) {
+        int creees = (int) resultats.stream().filter(ResultatCreation::succes).count();
+        return new RapportLot(resultats.size(), creees, resultats.size() - creees, resultats);
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.DeviSmart.dto;
+
+/**
+ * Résultat de la création d'une facture dans un lot, à la position de la demande
+ *
+ * @param erreur null si la facture a été créée
+ */
+public record ResultatCreation(int index,
+                               String reference,
+                               Long factureId,
+                               String numeroFacture,
+                               String erreur) {
+
+    public static ResultatCreation succes(int index, String reference, Long factureId, String numeroFacture) {
+        return new ResultatCreation(index, reference, factureId, numeroFacture, null);
+    }
+
+    public static ResultatCreation echec(int index, String reference, String erreur) {
+        return new ResultatCreation(index, reference, null, null, erreur);
+    }
+
+    public boolean succes() {
+        return erreur == null;
+    }
+}
@@ -0,0 +1,10 @@
+package com.example.DeviSmart.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * Nombre de factures et montant TTC cumulé pour un client et un statut
+ * (clientId null : factures manuelles sans client enregistré)
+ */
+public record StatistiqueClient(Long clientId, String nomClient, String statut, Long nombre, BigDecimal montant) {
+}
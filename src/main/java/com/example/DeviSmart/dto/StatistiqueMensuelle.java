@@ -0,0 +1,9 @@
+package com.example.DeviSmart.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * Nombre de factures et montant TTC cumulé pour un mois d'émission et un statut
+ */
+public record StatistiqueMensuelle(Integer annee, Integer mois, String statut, Long nombre, BigDecimal montant) {
+}
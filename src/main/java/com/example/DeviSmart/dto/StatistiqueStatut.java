@@ -0,0 +1,9 @@
+package com.example.DeviSmart.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * Nombre de factures et montant TTC cumulé pour un statut
+ */
+public record StatistiqueStatut(String statut, Long nombre, BigDecimal montant) {
+}
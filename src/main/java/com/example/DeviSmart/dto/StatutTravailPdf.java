@@ -0,0 +1,20 @@
+package com.example.DeviSmart.dto;
+
+import java.time.Instant;
+
+/**
+ * État d'un travail de génération PDF, tel que renvoyé au client
+ *
+ * etat : EN_ATTENTE, EN_COURS, TERMINE ou ECHEC.
+ * Les durées sont en millisecondes, null tant que l'étape n'est pas terminée.
+ */
+public record StatutTravailPdf(String id,
+                               String type,
+                               Long documentId,
+                               String etat,
+                               Instant soumisLe,
+                               Long attenteMs,
+                               Long renduMs,
+                               String nomFichier,
+                               String erreur) {
+}
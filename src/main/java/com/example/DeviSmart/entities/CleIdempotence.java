@@ -0,0 +1,121 @@
+package com.example.DeviSmart.entities;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Entité CleIdempotence - Réponse enregistrée pour un en-tête Idempotency-Key
+ *
+ * Une ligne par couple (opération, clé), réservée avant l'exécution (EN_COURS)
+ * puis complétée avec la réponse envoyée (TERMINEE) : une requête rejouée
+ * avec la même clé reçoit la même réponse sans être exécutée à nouveau.
+ * Conservée devismart.idempotence.duree-heures, persistée pour survivre à un
+ * redémarrage.
+ */
+@Entity
+@Table(name = "cles_idempotence",
+        uniqueConstraints = @UniqueConstraint(name = "uk_idempotence_operation_cle", columnNames = {"operation", "cle"}),
+        indexes = @Index(name = "idx_idempotence_date", columnList = "dateCreation"))
+public class CleIdempotence {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 50)
+    private String operation; // ex: facture.creer, devis.valider
+
+    @Column(nullable = false)
+    private String cle;
+
+    // SHA-256 de la requête : une clé réutilisée pour une autre requête est refusée
+    @Column(nullable = false, length = 64)
+    private String empreinte;
+
+    @Column(nullable = false, length = 20)
+    private String statut = "EN_COURS"; // EN_COURS, TERMINEE
+
+    private Integer codeHttp;
+
+    // Corps JSON de la réponse d'origine
+    @Lob
+    private String reponse;
+
+    @Column(nullable = false)
+    private LocalDateTime dateCreation;
+
+    // Constructors
+    public CleIdempotence() {}
+
+    public CleIdempotence(String operation, String cle, String empreinte) {
+        this.operation = operation;
+        this.cle = cle;
+        this.empreinte = empreinte;
+        this.dateCreation = LocalDateTime.now();
+    }
+
+    // Getters & Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    public void setOperation(String operation) {
+        this.operation = operation;
+    }
+
+    public String getCle() {
+        return cle;
+    }
+
+    public void setCle(String cle) {
+        this.cle = cle;
+    }
+
+    public String getEmpreinte() {
+        return empreinte;
+    }
+
+    public void setEmpreinte(String empreinte) {
+        this.empreinte = empreinte;
+    }
+
+    public String getStatut() {
+        return statut;
+    }
+
+    public void setStatut(String statut) {
+        this.statut = statut;
+    }
+
+    public Integer getCodeHttp() {
+        return codeHttp;
+    }
+
+    public void setCodeHttp(Integer codeHttp) {
+        this.codeHttp = codeHttp;
+    }
+
+    public String getReponse() {
+        return reponse;
+    }
+
+    public void setReponse(String reponse) {
+        this.reponse = reponse;
+    }
+
+    public LocalDateTime getDateCreation() {
+        return dateCreation;
+    }
+
+    public void setDateCreation(LocalDateTime dateCreation) {
+        this.dateCreation = dateCreation;
+    }
+}
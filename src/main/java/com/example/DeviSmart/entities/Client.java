@@ -5,8 +5,10 @@ import java.util.List;
 
 @Entity
 public class Client {
+    // Séquence par 50 comme Facture : insertions en batch JDBC lors des imports
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "client_seq")
+    @SequenceGenerator(name = "client_seq", sequenceName = "client_seq", allocationSize = 50)
     private Long id;
 
     private String nom;
@@ -0,0 +1,28 @@
+package com.example.DeviSmart.entities;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+import java.math.BigDecimal;
+
+/**
+ * Attribut en millièmes (long) stocké dans une colonne DECIMAL(15,3)
+ *
+ * Les colonnes de LigneFacture étaient déjà en DECIMAL(15,3). Celles de Ligne
+ * (quantite INTEGER, prix_unitaire DOUBLE) passent en DECIMAL(15,3) : une base
+ * existante doit être migrée (ALTER COLUMN), les valeurs sont conservées au
+ * millième près.
+ */
+@Converter
+public class ConvertisseurMillimes implements AttributeConverter<Long, BigDecimal> {
+
+    @Override
+    public BigDecimal convertToDatabaseColumn(Long millimes) {
+        return millimes != null ? Millimes.enDecimal(millimes) : null;
+    }
+
+    @Override
+    public Long convertToEntityAttribute(BigDecimal valeur) {
+        return valeur != null ? Millimes.de(valeur) : null;
+    }
+}
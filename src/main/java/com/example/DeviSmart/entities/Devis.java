@@ -2,23 +2,48 @@ package com.example.DeviSmart.entities;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import jakarta.persistence.*;
+import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
 
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_devis_statut", columnList = "statut, id"),
+        @Index(name = "idx_devis_client", columnList = "client_id, id"),
+        @Index(name = "idx_devis_date_creation", columnList = "dateCreation, id"),
+        @Index(name = "idx_devis_statut_montant", columnList = "statut, totalTTC")
+})
 public class Devis {
+    // Séquence par 50 comme Facture : insertions en batch JDBC lors des imports
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "devis_seq")
+    @SequenceGenerator(name = "devis_seq", sequenceName = "devis_seq", allocationSize = 50)
     private Long id;
 
+    // Verrouillage optimiste : incrémentée à chaque modification, sert d'ETag (If-Match)
+    @Version
+    private Long version;
+
     private String numero; // ex: DEV-2026-001
     private LocalDate dateCreation;
     private LocalDate dateValidite;
     private String statut; // BROUILLON, VALIDÉ, REFUSÉ
     
-    // Taux de TVA applicable (en pourcentage, ex: 19.0)
-    private double tauxTVA = 19.0;
+    // Taux de TVA applicable (en pourcentage, ex: 19.00)
+    @Column(precision = 5, scale = 2)
+    private BigDecimal tauxTVA = new BigDecimal("19.00");
+
+    // Montants stockés comme pour Facture : maintenus par recalculerTotaux() à chaque
+    // modification des lignes, lus tels quels par les listes et les filtres par montant
+    @Column(precision = 15, scale = 3)
+    private BigDecimal totalHT = BigDecimal.ZERO;
+
+    @Column(precision = 15, scale = 3)
+    private BigDecimal montantTVA = BigDecimal.ZERO;
+
+    @Column(precision = 15, scale = 3)
+    private BigDecimal totalTTC = BigDecimal.ZERO;
 
     // Manual client information
     private String clientNom;
@@ -31,7 +56,8 @@ public class Devis {
     @JsonIgnoreProperties({"devis", "factures"})
     private Client client;
 
-    @OneToMany(mappedBy = "devis", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.EAGER)
+    // Chargées à la demande : DevisRepository.findDetailById pour le détail et le PDF
+    @OneToMany(mappedBy = "devis", cascade = CascadeType.ALL, orphanRemoval = true)
     @JsonIgnoreProperties({"devis", "facture"})
     private List<Ligne> lignes = new ArrayList<>();
 
@@ -46,20 +72,24 @@ public class Devis {
         this.client = client;
     }
 
-    // Calcul du total HT
-    public double getTotalHT() {
-        if (lignes == null) return 0;
-        return lignes.stream().mapToDouble(Ligne::getTotal).sum();
-    }
+    /**
+     * Recalcule les totaux du devis
+     * À appeler par le service après modification des lignes ou du taux de TVA
+     */
+    public void recalculerTotaux() {
+        // Calcul en millièmes, comme Facture.recalculerTotaux()
+        long ht = 0;
+        if (lignes != null) {
+            for (Ligne ligne : lignes) {
+                ht = Millimes.additionner(ht, ligne.totalEnMillimes());
+            }
+        }
+        // tauxTVA en pourcentage (19.00 => 0.1900)
+        long tva = tauxTVA != null ? Millimes.appliquerTaux(ht, tauxTVA.movePointLeft(2)) : 0;
 
-    // Calcul du montant TVA
-    public double getMontantTVA() {
-        return getTotalHT() * (tauxTVA / 100);
-    }
-
-    // Calcul du total TTC
-    public double getTotalTTC() {
-        return getTotalHT() + getMontantTVA();
+        this.totalHT = Millimes.enDecimal(ht);
+        this.montantTVA = Millimes.enDecimal(tva);
+        this.totalTTC = Millimes.enDecimal(Millimes.additionner(ht, tva));
     }
 
     // Getters & Setters
@@ -71,6 +101,14 @@ public class Devis {
         this.id = id;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     public String getNumero() {
         return numero;
     }
@@ -119,11 +157,23 @@ public class Devis {
         this.lignes = lignes;
     }
 
-    public double getTauxTVA() {
+    public BigDecimal getTotalHT() {
+        return totalHT;
+    }
+
+    public BigDecimal getMontantTVA() {
+        return montantTVA;
+    }
+
+    public BigDecimal getTotalTTC() {
+        return totalTTC;
+    }
+
+    public BigDecimal getTauxTVA() {
         return tauxTVA;
     }
 
-    public void setTauxTVA(double tauxTVA) {
+    public void setTauxTVA(BigDecimal tauxTVA) {
         this.tauxTVA = tauxTVA;
     }
 
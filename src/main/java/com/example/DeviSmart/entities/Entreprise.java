@@ -21,7 +21,12 @@ public class Entreprise {
     // Taux de TVA par défaut (en pourcentage)
     private double tauxTVA = 19.0;
 
-    // Compteurs pour la numérotation automatique
+    // Révision du profil : version de verrouillage optimiste, incrémentée par
+    // Hibernate à chaque modification (ETag de /api/entreprise, copiée dans les factures)
+    @Version
+    private long revision = 0;
+
+    // Anciens compteurs de numérotation (remplacés par NumerotationService)
     private int compteurDevis = 0;
     private int compteurFactures = 0;
 
@@ -40,6 +45,7 @@ public class Entreprise {
     }
 
     // Méthode pour générer le prochain numéro de devis
+    @Deprecated
     public String genererNumeroDevis() {
         compteurDevis++;
         int annee = java.time.Year.now().getValue();
@@ -47,6 +53,7 @@ public class Entreprise {
     }
 
     // Méthode pour générer le prochain numéro de facture
+    @Deprecated
     public String genererNumeroFacture() {
         compteurFactures++;
         int annee = java.time.Year.now().getValue();
@@ -142,6 +149,14 @@ public class Entreprise {
         this.tauxTVA = tauxTVA;
     }
 
+    public long getRevision() {
+        return revision;
+    }
+
+    public void setRevision(long revision) {
+        this.revision = revision;
+    }
+
     public int getCompteurDevis() {
         return compteurDevis;
     }
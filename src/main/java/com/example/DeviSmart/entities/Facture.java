@@ -3,7 +3,6 @@ package com.example.DeviSmart.entities;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import jakarta.persistence.*;
 import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
@@ -15,13 +14,26 @@ import java.util.List;
  * l'immutabilité des documents légaux et faciliter la génération PDF.
  */
 @Entity
-@Table(name = "factures")
+@Table(name = "factures", indexes = {
+        @Index(name = "idx_facture_statut", columnList = "statut, id"),
+        @Index(name = "idx_facture_statut_montant", columnList = "statut, totalTTC"),
+        @Index(name = "idx_facture_client", columnList = "client_id, id"),
+        @Index(name = "idx_facture_date_emission", columnList = "dateEmission, id"),
+        @Index(name = "idx_facture_statut_echeance", columnList = "statut, dateEcheance")
+})
 public class Facture {
     
+    // Séquence avec allocation par 50 (optimiseur pooled) : ids connus avant l'insertion,
+    // ce qui permet à Hibernate de regrouper les INSERT en batch JDBC (impossible en IDENTITY)
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "factures_seq")
+    @SequenceGenerator(name = "factures_seq", sequenceName = "factures_seq", allocationSize = 50)
     private Long id;
 
+    // Verrouillage optimiste : incrémentée à chaque modification, sert d'ETag (If-Match)
+    @Version
+    private Long version;
+
     // ==================== NUMÉRO UNIQUE ====================
     @Column(unique = true, nullable = false)
     private String numeroFacture; // ex: FAC-2025-0001
@@ -37,6 +49,8 @@ public class Facture {
     private String statut = "NON_PAYEE"; // NON_PAYEE, PAYEE, EN_RETARD, ANNULEE
 
     // ==================== RÉFÉRENCE DEVIS ====================
+    // Unique : un devis ne donne qu'une facture, même si sa validation est rejouée
+    @Column(unique = true)
     private String referenceDevis;
 
     // ==================== DONNÉES ENTREPRISE (intégrées) ====================
@@ -51,6 +65,9 @@ public class Facture {
     private String matriculeFiscal;
     private String registreCommerce;
 
+    // Révision du profil entreprise copié dans la facture
+    private Long revisionEntreprise;
+
     // ==================== DONNÉES CLIENT (intégrées) ====================
     @Column(nullable = false)
     private String nomClient;
@@ -108,18 +125,16 @@ public class Facture {
      * Cette méthode doit être appelée par le service après modification des lignes
      */
     public void recalculerTotaux() {
-        // Calculer total HT
-        this.totalHT = lignes.stream()
-                .map(LigneFacture::getTotalLigneHT)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-        
-        // Calculer montant TVA
-        this.montantTVA = this.totalHT.multiply(this.tauxTVA)
-                .setScale(3, RoundingMode.HALF_UP);
-        
-        // Calculer total TTC
-        this.totalTTC = this.totalHT.add(this.montantTVA)
-                .setScale(3, RoundingMode.HALF_UP);
+        // Calcul en millièmes : trois BigDecimal créés, quel que soit le nombre de lignes
+        long ht = 0;
+        for (LigneFacture ligne : lignes) {
+            ht = Millimes.additionner(ht, ligne.totalEnMillimes());
+        }
+        long tva = Millimes.appliquerTaux(ht, this.tauxTVA);
+
+        this.totalHT = Millimes.enDecimal(ht);
+        this.montantTVA = Millimes.enDecimal(tva);
+        this.totalTTC = Millimes.enDecimal(Millimes.additionner(ht, tva));
     }
 
     /**
@@ -149,6 +164,7 @@ public class Facture {
             this.emailEntreprise = entreprise.getEmail();
             this.matriculeFiscal = entreprise.getMatriculeFiscal();
             this.registreCommerce = entreprise.getRegistreCommerce();
+            this.revisionEntreprise = entreprise.getRevision();
             // Récupérer le taux TVA de l'entreprise
             this.tauxTVA = BigDecimal.valueOf(entreprise.getTauxTVA() / 100);
         }
@@ -185,6 +201,14 @@ public class Facture {
         this.id = id;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     public String getNumeroFacture() {
         return numeroFacture;
     }
@@ -273,6 +297,14 @@ public class Facture {
         this.registreCommerce = registreCommerce;
     }
 
+    public Long getRevisionEntreprise() {
+        return revisionEntreprise;
+    }
+
+    public void setRevisionEntreprise(Long revisionEntreprise) {
+        this.revisionEntreprise = revisionEntreprise;
+    }
+
     public String getNomClient() {
         return nomClient;
     }
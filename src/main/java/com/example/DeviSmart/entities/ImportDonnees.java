@@ -0,0 +1,142 @@
+package com.example.DeviSmart.entities;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Entité ImportDonnees - Suivi d'un import de fichier (clients, devis ou factures)
+ *
+ * Le point de reprise (dernierEnregistrement) est mis à jour dans la même
+ * transaction que chaque paquet écrit : après une interruption, l'import
+ * reprend au premier enregistrement non validé en renvoyant le même fichier.
+ */
+@Entity
+@Table(name = "imports_donnees")
+public class ImportDonnees {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 20)
+    private String type; // CLIENTS, DEVIS, FACTURES
+
+    @Column(nullable = false, length = 10)
+    private String format; // CSV, JSONL
+
+    private String nomFichier;
+
+    @Column(nullable = false, length = 20)
+    private String statut = "EN_COURS"; // EN_COURS, TERMINE, ECHOUE
+
+    // Numéro du dernier enregistrement traité et validé en base (point de reprise)
+    private long dernierEnregistrement;
+
+    private long importes;
+    private long rejetes;
+
+    private LocalDateTime dateDebut;
+    private LocalDateTime dateFin;
+
+    @Column(length = 2000)
+    private String message;
+
+    // Constructors
+    public ImportDonnees() {}
+
+    public ImportDonnees(String type, String format, String nomFichier) {
+        this.type = type;
+        this.format = format;
+        this.nomFichier = nomFichier;
+        this.dateDebut = LocalDateTime.now();
+    }
+
+    // Getters & Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    public void setFormat(String format) {
+        this.format = format;
+    }
+
+    public String getNomFichier() {
+        return nomFichier;
+    }
+
+    public void setNomFichier(String nomFichier) {
+        this.nomFichier = nomFichier;
+    }
+
+    public String getStatut() {
+        return statut;
+    }
+
+    public void setStatut(String statut) {
+        this.statut = statut;
+    }
+
+    public long getDernierEnregistrement() {
+        return dernierEnregistrement;
+    }
+
+    public void setDernierEnregistrement(long dernierEnregistrement) {
+        this.dernierEnregistrement = dernierEnregistrement;
+    }
+
+    public long getImportes() {
+        return importes;
+    }
+
+    public void setImportes(long importes) {
+        this.importes = importes;
+    }
+
+    public long getRejetes() {
+        return rejetes;
+    }
+
+    public void setRejetes(long rejetes) {
+        this.rejetes = rejetes;
+    }
+
+    public LocalDateTime getDateDebut() {
+        return dateDebut;
+    }
+
+    public void setDateDebut(LocalDateTime dateDebut) {
+        this.dateDebut = dateDebut;
+    }
+
+    public LocalDateTime getDateFin() {
+        return dateFin;
+    }
+
+    public void setDateFin(LocalDateTime dateFin) {
+        this.dateFin = dateFin;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+}
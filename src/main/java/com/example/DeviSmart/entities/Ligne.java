@@ -2,16 +2,30 @@ package com.example.DeviSmart.entities;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import jakarta.persistence.*;
+import java.math.BigDecimal;
 
+/**
+ * Ligne de devis, en virgule fixe comme LigneFacture : quantité et prix en
+ * millièmes (Millimes), colonnes DECIMAL(15,3)
+ */
 @Entity
+@Table(indexes = @Index(name = "idx_ligne_devis", columnList = "devis_id, id"))
 public class Ligne {
+    // Séquence par 50 comme Facture : insertions en batch JDBC lors des imports
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "ligne_seq")
+    @SequenceGenerator(name = "ligne_seq", sequenceName = "ligne_seq", allocationSize = 50)
     private Long id;
 
     private String designation;
-    private int quantite;
-    private double prixUnitaire;
+
+    @Column(nullable = false, precision = 15, scale = 3)
+    @Convert(converter = ConvertisseurMillimes.class)
+    private long quantite;
+
+    @Column(nullable = false, precision = 15, scale = 3)
+    @Convert(converter = ConvertisseurMillimes.class)
+    private long prixUnitaire;
 
     @ManyToOne
     @JoinColumn(name = "devis_id")
@@ -26,15 +40,29 @@ public class Ligne {
     // Constructors
     public Ligne() {}
 
+    public Ligne(String designation, BigDecimal quantite, BigDecimal prixUnitaire) {
+        this.designation = designation;
+        this.quantite = Millimes.de(quantite);
+        this.prixUnitaire = Millimes.de(prixUnitaire);
+    }
+
+    // Constructeur pour compatibilité avec int/double
     public Ligne(String designation, int quantite, double prixUnitaire) {
         this.designation = designation;
-        this.quantite = quantite;
-        this.prixUnitaire = prixUnitaire;
+        this.quantite = Math.multiplyExact(quantite, Millimes.UN);
+        this.prixUnitaire = Millimes.de(BigDecimal.valueOf(prixUnitaire));
     }
 
     // Calcul du total de la ligne
-    public double getTotal() {
-        return quantite * prixUnitaire;
+    public BigDecimal getTotal() {
+        return Millimes.enDecimal(totalEnMillimes());
+    }
+
+    /**
+     * Total en millièmes, pour les calculs de Devis (sans conversion)
+     */
+    public long totalEnMillimes() {
+        return Millimes.multiplier(quantite, prixUnitaire);
     }
 
     // Getters & Setters
@@ -54,20 +82,21 @@ public class Ligne {
         this.designation = designation;
     }
 
-    public int getQuantite() {
-        return quantite;
+    public BigDecimal getQuantite() {
+        return Millimes.enDecimal(quantite);
     }
 
-    public void setQuantite(int quantite) {
-        this.quantite = quantite;
+    // null : 0, comme l'ancien champ int
+    public void setQuantite(BigDecimal quantite) {
+        this.quantite = quantite != null ? Millimes.de(quantite) : 0;
     }
 
-    public double getPrixUnitaire() {
-        return prixUnitaire;
+    public BigDecimal getPrixUnitaire() {
+        return Millimes.enDecimal(prixUnitaire);
     }
 
-    public void setPrixUnitaire(double prixUnitaire) {
-        this.prixUnitaire = prixUnitaire;
+    public void setPrixUnitaire(BigDecimal prixUnitaire) {
+        this.prixUnitaire = prixUnitaire != null ? Millimes.de(prixUnitaire) : 0;
     }
 
     public Devis getDevis() {
@@ -3,32 +3,41 @@ package com.example.DeviSmart.entities;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import jakarta.persistence.*;
 import java.math.BigDecimal;
-import java.math.RoundingMode;
 
 /**
  * Entité LigneFacture - Représente une ligne dans une facture
  * Chaque produit/service facturé avec son calcul de total
+ *
+ * Quantité, prix et total sont gardés en millièmes (Millimes) et convertis en
+ * DECIMAL(15,3) à l'écriture : l'API reste en BigDecimal. Les setters
+ * acceptent null (le total n'est alors pas calculé) : les valeurs obligatoires
+ * sont contrôlées par FactureService.
  */
 @Entity
-@Table(name = "ligne_facture")
+@Table(name = "ligne_facture", indexes = @Index(name = "idx_ligne_facture_facture", columnList = "facture_id"))
 public class LigneFacture {
 
+    // Séquence par 50 comme Facture : insertions des lignes en batch JDBC
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "ligne_facture_seq")
+    @SequenceGenerator(name = "ligne_facture_seq", sequenceName = "ligne_facture_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false)
     private String designation;
 
     @Column(nullable = false, precision = 15, scale = 3)
-    private BigDecimal quantite = BigDecimal.ONE;
+    @Convert(converter = ConvertisseurMillimes.class)
+    private Long quantite = Millimes.UN;
 
     @Column(nullable = false, precision = 15, scale = 3)
-    private BigDecimal prixUnitaireHT = BigDecimal.ZERO;
+    @Convert(converter = ConvertisseurMillimes.class)
+    private Long prixUnitaireHT = 0L;
 
     // Total calculé : quantite × prixUnitaireHT
     @Column(precision = 15, scale = 3)
-    private BigDecimal totalLigneHT = BigDecimal.ZERO;
+    @Convert(converter = ConvertisseurMillimes.class)
+    private Long totalLigneHT = 0L;
 
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "facture_id", nullable = false)
@@ -40,16 +49,16 @@ public class LigneFacture {
 
     public LigneFacture(String designation, BigDecimal quantite, BigDecimal prixUnitaireHT) {
         this.designation = designation;
-        this.quantite = quantite;
-        this.prixUnitaireHT = prixUnitaireHT;
+        this.quantite = enMillimes(quantite);
+        this.prixUnitaireHT = enMillimes(prixUnitaireHT);
         this.calculerTotal();
     }
 
     // Constructeur pour compatibilité avec int/double
     public LigneFacture(String designation, int quantite, double prixUnitaireHT) {
         this.designation = designation;
-        this.quantite = BigDecimal.valueOf(quantite);
-        this.prixUnitaireHT = BigDecimal.valueOf(prixUnitaireHT);
+        this.quantite = Math.multiplyExact(quantite, Millimes.UN);
+        this.prixUnitaireHT = Millimes.de(BigDecimal.valueOf(prixUnitaireHT));
         this.calculerTotal();
     }
 
@@ -58,11 +67,25 @@ public class LigneFacture {
      */
     public void calculerTotal() {
         if (this.quantite != null && this.prixUnitaireHT != null) {
-            this.totalLigneHT = this.quantite.multiply(this.prixUnitaireHT)
-                    .setScale(3, RoundingMode.HALF_UP);
+            this.totalLigneHT = Millimes.multiplier(this.quantite, this.prixUnitaireHT);
         }
     }
 
+    /**
+     * Total HT en millièmes, pour les calculs de Facture (sans conversion)
+     */
+    public long totalEnMillimes() {
+        return totalLigneHT != null ? totalLigneHT : 0;
+    }
+
+    private static Long enMillimes(BigDecimal valeur) {
+        return valeur != null ? Millimes.de(valeur) : null;
+    }
+
+    private static BigDecimal enDecimal(Long millimes) {
+        return millimes != null ? Millimes.enDecimal(millimes) : null;
+    }
+
     // Getters & Setters
     public Long getId() {
         return id;
@@ -81,29 +104,29 @@ public class LigneFacture {
     }
 
     public BigDecimal getQuantite() {
-        return quantite;
+        return enDecimal(quantite);
     }
 
     public void setQuantite(BigDecimal quantite) {
-        this.quantite = quantite;
+        this.quantite = enMillimes(quantite);
         this.calculerTotal();
     }
 
     public BigDecimal getPrixUnitaireHT() {
-        return prixUnitaireHT;
+        return enDecimal(prixUnitaireHT);
     }
 
     public void setPrixUnitaireHT(BigDecimal prixUnitaireHT) {
-        this.prixUnitaireHT = prixUnitaireHT;
+        this.prixUnitaireHT = enMillimes(prixUnitaireHT);
         this.calculerTotal();
     }
 
     public BigDecimal getTotalLigneHT() {
-        return totalLigneHT;
+        return enDecimal(totalLigneHT);
     }
 
     public void setTotalLigneHT(BigDecimal totalLigneHT) {
-        this.totalLigneHT = totalLigneHT;
+        this.totalLigneHT = enMillimes(totalLigneHT);
     }
 
     public Facture getFacture() {
@@ -0,0 +1,105 @@
+package com.example.DeviSmart.entities;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Montants et quantités en virgule fixe : un long de millièmes (3 décimales,
+ * le millime pour le dinar)
+ *
+ * Les calculs des lignes et des totaux (devis et factures) se font sur ces
+ * entiers, sans allocation et sans erreur d'arrondi binaire. La conversion en
+ * BigDecimal n'a lieu qu'aux frontières : colonnes DECIMAL(15,3) (cf.
+ * ConvertisseurMillimes), JSON et PDF.
+ *
+ * Arrondi HALF_UP au millième, comme setScale(3, RoundingMode.HALF_UP). Un
+ * dépassement de capacité (au-delà de ~9,2 × 10^15 dinars) lève une
+ * ArithmeticException au lieu de donner un résultat faux.
+ */
+public final class Millimes {
+
+    public static final int DECIMALES = 3;
+
+    // 1,000 en millièmes
+    public static final long UN = 1000;
+
+    private static final long[] PUISSANCES_DE_DIX = new long[19];
+
+    static {
+        PUISSANCES_DE_DIX[0] = 1;
+        for (int i = 1; i < PUISSANCES_DE_DIX.length; i++) {
+            PUISSANCES_DE_DIX[i] = PUISSANCES_DE_DIX[i - 1] * 10;
+        }
+    }
+
+    private Millimes() {}
+
+    /**
+     * Valeur décimale en millièmes, arrondie au millième
+     */
+    public static long de(BigDecimal valeur) {
+        if (valeur == null) {
+            throw new IllegalArgumentException("Montant obligatoire");
+        }
+        return valeur.setScale(DECIMALES, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    /**
+     * Valeur décimale exacte des millièmes (échelle 3)
+     */
+    public static BigDecimal enDecimal(long millimes) {
+        return BigDecimal.valueOf(millimes, DECIMALES);
+    }
+
+    /**
+     * Produit de deux valeurs en millièmes (ex: quantité × prix unitaire)
+     */
+    public static long multiplier(long a, long b) {
+        return multiplier(a, b, DECIMALES);
+    }
+
+    /**
+     * montant × facteur / 10^decimales, arrondi au millième ; le facteur est
+     * un entier à "decimales" décimales (ex: taux de 19 % : 1900, 4 décimales)
+     */
+    public static long multiplier(long montant, long facteur, int decimales) {
+        if (decimales < 0 || decimales >= PUISSANCES_DE_DIX.length) {
+            throw new IllegalArgumentException("Nombre de décimales invalide: " + decimales);
+        }
+        long produit = montant * facteur;
+        long haut = Math.multiplyHigh(montant, facteur);
+        if (haut != (produit >> 63)) {
+            // Produit hors d'un long : calcul exact en BigDecimal (montants hors métier)
+            return BigDecimal.valueOf(montant).multiply(BigDecimal.valueOf(facteur))
+                    .movePointLeft(decimales).setScale(0, RoundingMode.HALF_UP).longValueExact();
+        }
+        return diviserArrondi(produit, PUISSANCES_DE_DIX[decimales]);
+    }
+
+    /**
+     * Montant × taux exprimé en fraction (ex: 0.19 pour 19 %)
+     */
+    public static long appliquerTaux(long montant, BigDecimal taux) {
+        if (taux == null || taux.signum() == 0) {
+            return 0;
+        }
+        BigDecimal normalise = taux.scale() < 0 ? taux.setScale(0)
+                : taux.scale() >= PUISSANCES_DE_DIX.length ? taux.setScale(PUISSANCES_DE_DIX.length - 1, RoundingMode.HALF_UP)
+                : taux;
+        return multiplier(montant, normalise.unscaledValue().longValueExact(), normalise.scale());
+    }
+
+    public static long additionner(long a, long b) {
+        return Math.addExact(a, b);
+    }
+
+    // Division entière arrondie HALF_UP (au plus loin de zéro à mi-chemin)
+    private static long diviserArrondi(long dividende, long diviseur) {
+        long quotient = dividende / diviseur;
+        long reste = dividende % diviseur;
+        if (Math.abs(reste) >= diviseur - Math.abs(reste)) {
+            quotient += dividende < 0 ? -1 : 1;
+        }
+        return quotient;
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.DeviSmart.entities;
+
+import jakarta.persistence.*;
+import java.math.BigDecimal;
+
+/**
+ * Entité ResumeFacture - Agrégat maintenu au fil de l'eau
+ *
+ * Une ligne par dimension (STATUT, MOIS, CLIENT), clé et statut, contenant le
+ * nombre de factures et le montant TTC cumulé. Mise à jour par incrément dans
+ * la transaction qui modifie la facture, elle évite de réagréger tout
+ * l'historique à chaque lecture des statistiques.
+ */
+@Entity
+@Table(name = "resume_factures",
+       uniqueConstraints = @UniqueConstraint(columnNames = {"dimension", "cle", "statut"}))
+public class ResumeFacture {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 10)
+    private String dimension; // STATUT, MOIS, CLIENT
+
+    // Vide pour STATUT, "2026-03" pour MOIS, id du client (ou "-") pour CLIENT
+    @Column(nullable = false, length = 40)
+    private String cle;
+
+    @Column(nullable = false)
+    private String statut;
+
+    // Libellé d'affichage (nom du client)
+    private String libelle;
+
+    @Column(nullable = false)
+    private long nombre;
+
+    @Column(nullable = false, precision = 19, scale = 3)
+    private BigDecimal montant = BigDecimal.ZERO;
+
+    // Constructors
+    public ResumeFacture() {}
+
+    public ResumeFacture(String dimension, String cle, String statut, String libelle, long nombre, BigDecimal montant) {
+        this.dimension = dimension;
+        this.cle = cle;
+        this.statut = statut;
+        this.libelle = libelle;
+        this.nombre = nombre;
+        this.montant = montant;
+    }
+
+    // Getters & Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getDimension() {
+        return dimension;
+    }
+
+    public void setDimension(String dimension) {
+        this.dimension = dimension;
+    }
+
+    public String getCle() {
+        return cle;
+    }
+
+    public void setCle(String cle) {
+        this.cle = cle;
+    }
+
+    public String getStatut() {
+        return statut;
+    }
+
+    public void setStatut(String statut) {
+        this.statut = statut;
+    }
+
+    public String getLibelle() {
+        return libelle;
+    }
+
+    public void setLibelle(String libelle) {
+        this.libelle = libelle;
+    }
+
+    public long getNombre() {
+        return nombre;
+    }
+
+    public void setNombre(long nombre) {
+        this.nombre = nombre;
+    }
+
+    public BigDecimal getMontant() {
+        return montant;
+    }
+
+    public void setMontant(BigDecimal montant) {
+        this.montant = montant;
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.DeviSmart.entities;
+
+import jakarta.persistence.*;
+
+/**
+ * Entité SequenceNumerotation - Compteur persistant d'une série de numéros
+ *
+ * Une ligne par préfixe (FAC, DEV) et par année : la numérotation repart
+ * automatiquement à 1 au changement d'année. La colonne valeur contient le
+ * dernier numéro réservé, les numéros sont distribués par blocs en mémoire.
+ */
+@Entity
+@Table(name = "sequences_numerotation",
+       uniqueConstraints = @UniqueConstraint(columnNames = {"prefixe", "annee"}))
+public class SequenceNumerotation {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 10)
+    private String prefixe; // ex: FAC, DEV
+
+    @Column(nullable = false)
+    private int annee;
+
+    // Dernier numéro réservé (fin du dernier bloc alloué)
+    @Column(nullable = false)
+    private long valeur;
+
+    // Constructors
+    public SequenceNumerotation() {}
+
+    public SequenceNumerotation(String prefixe, int annee, long valeur) {
+        this.prefixe = prefixe;
+        this.annee = annee;
+        this.valeur = valeur;
+    }
+
+    // Getters & Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getPrefixe() {
+        return prefixe;
+    }
+
+    public void setPrefixe(String prefixe) {
+        this.prefixe = prefixe;
+    }
+
+    public int getAnnee() {
+        return annee;
+    }
+
+    public void setAnnee(int annee) {
+        this.annee = annee;
+    }
+
+    public long getValeur() {
+        return valeur;
+    }
+
+    public void setValeur(long valeur) {
+        this.valeur = valeur;
+    }
+}
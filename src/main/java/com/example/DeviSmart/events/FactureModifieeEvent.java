@@ -0,0 +1,53 @@
+package com.example.DeviSmart.events;
+
+import com.example.DeviSmart.entities.Facture;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Objects;
+
+/**
+ * Événement publié (dans la transaction en cours) à chaque création,
+ * modification ou suppression d'une facture
+ *
+ * @param avant État avant l'opération (null pour une création)
+ * @param apres État après l'opération (null pour une suppression)
+ */
+public record FactureModifieeEvent(Etat avant, Etat apres) {
+
+    /**
+     * Photo des champs d'une facture utilisés par les agrégats
+     */
+    public record Etat(Long factureId, String statut, LocalDate dateEmission,
+                       Long clientId, String nomClient, BigDecimal totalTTC) {
+
+        public static Etat de(Facture facture) {
+            return new Etat(
+                    facture.getId(),
+                    facture.getStatut(),
+                    facture.getDateEmission(),
+                    facture.getClient() != null ? facture.getClient().getId() : null,
+                    facture.getNomClient(),
+                    facture.getTotalTTC());
+        }
+
+        /**
+         * Indique si les deux états comptent dans les mêmes agrégats pour le même montant
+         */
+        public boolean memeContribution(Etat autre) {
+            return Objects.equals(statut, autre.statut)
+                    && Objects.equals(dateEmission, autre.dateEmission)
+                    && Objects.equals(clientId, autre.clientId)
+                    && Objects.equals(nomClient, autre.nomClient)
+                    && montant().compareTo(autre.montant()) == 0;
+        }
+
+        public BigDecimal montant() {
+            return totalTTC != null ? totalTTC : BigDecimal.ZERO;
+        }
+    }
+
+    public Long factureId() {
+        return apres != null ? apres.factureId() : avant.factureId();
+    }
+}
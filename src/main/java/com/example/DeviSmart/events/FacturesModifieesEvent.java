@@ -0,0 +1,13 @@
+package com.example.DeviSmart.events;
+
+import java.util.List;
+
+/**
+ * Événement publié (dans la transaction en cours) après une écriture groupée
+ * de factures (création par lot, import, passage en retard) : les agrégats
+ * sont mis à jour une fois par lot plutôt qu'une fois par facture
+ *
+ * @param modifications Une modification par facture, au sens de FactureModifieeEvent
+ */
+public record FacturesModifieesEvent(List<FactureModifieeEvent> modifications) {
+}
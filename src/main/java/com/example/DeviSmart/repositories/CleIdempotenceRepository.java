@@ -0,0 +1,46 @@
+package com.example.DeviSmart.repositories;
+
+import com.example.DeviSmart.entities.CleIdempotence;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface CleIdempotenceRepository extends JpaRepository<CleIdempotence, Long> {
+
+    Optional<CleIdempotence> findByOperationAndCle(String operation, String cle);
+
+    // Réponse enregistrée une fois la requête exécutée
+    @Modifying
+    @Query("""
+            update CleIdempotence c
+            set c.statut = 'TERMINEE', c.codeHttp = :codeHttp, c.reponse = :reponse
+            where c.id = :id""")
+    int terminer(@Param("id") Long id, @Param("codeHttp") int codeHttp, @Param("reponse") String reponse);
+
+    @Modifying
+    @Query("delete from CleIdempotence c where c.id = :id")
+    int supprimer(@Param("id") Long id);
+
+    // ==================== PURGE ====================
+
+    // Clés expirées, et réservations abandonnées (arrêt pendant l'exécution)
+    @Modifying
+    @Query("""
+            delete from CleIdempotence c
+            where c.dateCreation < :expiration or (c.statut = 'EN_COURS' and c.dateCreation < :abandon)""")
+    int purger(@Param("expiration") LocalDateTime expiration, @Param("abandon") LocalDateTime abandon);
+
+    @Query("select max(c.id) from CleIdempotence c")
+    Long findDernierId();
+
+    // Ids croissants (IDENTITY) : supprime les clés les plus anciennes au-delà du nombre maximal
+    @Modifying
+    @Query("delete from CleIdempotence c where c.id <= :id")
+    int supprimerJusqua(@Param("id") Long id);
+}
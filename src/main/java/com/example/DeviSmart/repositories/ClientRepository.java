@@ -1,13 +1,48 @@
 package com.example.DeviSmart.repositories;
 
+import com.example.DeviSmart.dto.ClientResume;
 import com.example.DeviSmart.entities.Client;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface ClientRepository extends JpaRepository<Client, Long> {
     Optional<Client> findByEmail(String email);
     Optional<Client> findByMatriculeFiscal(String matriculeFiscal);
+    List<Client> findByEmailIn(Collection<String> emails);
+
+    // ==================== VUES RÉSUMÉES (projections, sans entités) ====================
+
+    @Query("""
+            select new com.example.DeviSmart.dto.ClientResume(c.id, c.nom, c.email, c.telephone, c.adresse, c.matriculeFiscal)
+            from Client c
+            order by c.id""")
+    List<ClientResume> findResumes();
+
+    @Query("""
+            select new com.example.DeviSmart.dto.ClientResume(c.id, c.nom, c.email, c.telephone, c.adresse, c.matriculeFiscal)
+            from Client c
+            where c.id = :id""")
+    Optional<ClientResume> findResumeById(@Param("id") Long id);
+
+    // Pagination keyset : première page, puis pages suivantes à partir du curseur
+    @Query("""
+            select new com.example.DeviSmart.dto.ClientResume(c.id, c.nom, c.email, c.telephone, c.adresse, c.matriculeFiscal)
+            from Client c
+            order by c.id desc""")
+    List<ClientResume> findResumesPremierePage(Limit limit);
+
+    @Query("""
+            select new com.example.DeviSmart.dto.ClientResume(c.id, c.nom, c.email, c.telephone, c.adresse, c.matriculeFiscal)
+            from Client c
+            where c.id < :curseur
+            order by c.id desc""")
+    List<ClientResume> findResumesAvant(@Param("curseur") Long curseur, Limit limit);
 }
@@ -1,13 +1,97 @@
 package com.example.DeviSmart.repositories;
 
+import com.example.DeviSmart.dto.DevisResume;
 import com.example.DeviSmart.entities.Devis;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.criteria.Predicate;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
-public interface DevisRepository extends JpaRepository<Devis, Long> {
+public interface DevisRepository extends JpaRepository<Devis, Long>, JpaSpecificationExecutor<Devis>, DevisVuesRepository {
     List<Devis> findByClientId(Long clientId);
     List<Devis> findByStatut(String statut);
+
+    // Numéros existants d'une série (ex: DEV-2026-%), du plus grand au plus petit
+    // (numéros à largeur minimale fixe : plus long = plus grand), pour initialiser la séquence
+    @Query("select d.numero from Devis d where d.numero like :motif order by length(d.numero) desc, d.numero desc")
+    List<String> findNumerosCorrespondants(@Param("motif") String motif, Pageable page);
+
+    // Numéros déjà présents parmi ceux fournis (import)
+    @Query("select d.numero from Devis d where d.numero in :numeros")
+    List<String> findNumerosExistants(@Param("numeros") Collection<String> numeros);
+
+    // Vue détaillée et rendu PDF : devis, client et lignes en une seule requête
+    @EntityGraph(attributePaths = {"client", "lignes"})
+    Optional<Devis> findDetailById(Long id);
+
+    // Devis à modifier : version incrémentée au commit même si seules ses lignes changent
+    @Lock(LockModeType.OPTIMISTIC_FORCE_INCREMENT)
+    Optional<Devis> findPourModificationById(Long id);
+
+    // ==================== VUES RÉSUMÉES (projections, sans entités) ====================
+
+    @Query("""
+            select new com.example.DeviSmart.dto.DevisResume(d.id, d.numero, d.dateCreation, d.dateValidite, d.statut,
+                d.totalHT, d.montantTVA, d.totalTTC, c.id, coalesce(c.nom, d.clientNom))
+            from Devis d left join d.client c
+            where c.id = :clientId
+            order by d.id desc""")
+    List<DevisResume> findResumesByClientId(@Param("clientId") Long clientId);
+
+    @Query("""
+            select new com.example.DeviSmart.dto.DevisResume(d.id, d.numero, d.dateCreation, d.dateValidite, d.statut,
+                d.totalHT, d.montantTVA, d.totalTTC, c.id, coalesce(c.nom, d.clientNom))
+            from Devis d left join d.client c
+            where d.statut = :statut
+            order by d.id desc""")
+    List<DevisResume> findResumesByStatut(@Param("statut") String statut);
+
+    /**
+     * Filtres optionnels de la liste paginée : curseur (id strictement inférieur),
+     * statut, client, période de création et bornes du total TTC (stocké, indexé
+     * avec le statut). Les critères null sont ignorés.
+     */
+    static Specification<Devis> filtre(Long curseur, String statut, Long clientId, LocalDate du, LocalDate au,
+                                       BigDecimal montantMin, BigDecimal montantMax) {
+        return (root, query, cb) -> {
+            List<Predicate> conditions = new ArrayList<>();
+            if (curseur != null) {
+                conditions.add(cb.lessThan(root.<Long>get("id"), curseur));
+            }
+            if (statut != null) {
+                conditions.add(cb.equal(root.get("statut"), statut));
+            }
+            if (clientId != null) {
+                conditions.add(cb.equal(root.get("client").get("id"), clientId));
+            }
+            if (du != null) {
+                conditions.add(cb.greaterThanOrEqualTo(root.<LocalDate>get("dateCreation"), du));
+            }
+            if (au != null) {
+                conditions.add(cb.lessThanOrEqualTo(root.<LocalDate>get("dateCreation"), au));
+            }
+            if (montantMin != null) {
+                conditions.add(cb.greaterThanOrEqualTo(root.<BigDecimal>get("totalTTC"), montantMin));
+            }
+            if (montantMax != null) {
+                conditions.add(cb.lessThanOrEqualTo(root.<BigDecimal>get("totalTTC"), montantMax));
+            }
+            return cb.and(conditions.toArray(new Predicate[0]));
+        };
+    }
 }
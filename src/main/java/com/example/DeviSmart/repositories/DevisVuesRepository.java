@@ -0,0 +1,18 @@
+package com.example.DeviSmart.repositories;
+
+import com.example.DeviSmart.dto.DevisResume;
+import com.example.DeviSmart.entities.Devis;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+
+/**
+ * Lectures en projection des devis, filtrées par Specification
+ */
+public interface DevisVuesRepository {
+
+    /**
+     * Résumés des devis correspondant au filtre, par id décroissant
+     */
+    List<DevisResume> findResumes(Specification<Devis> filtre, int limite);
+}
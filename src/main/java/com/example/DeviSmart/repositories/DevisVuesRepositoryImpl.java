@@ -0,0 +1,40 @@
+package com.example.DeviSmart.repositories;
+
+import com.example.DeviSmart.dto.DevisResume;
+import com.example.DeviSmart.entities.Client;
+import com.example.DeviSmart.entities.Devis;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+
+/**
+ * Même filtre que la liste d'entités (DevisRepository.filtre) ; totaux stockés
+ * sur le devis, comme dans les requêtes findResumesBy*
+ */
+class DevisVuesRepositoryImpl implements DevisVuesRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<DevisResume> findResumes(Specification<Devis> filtre, int limite) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<DevisResume> query = cb.createQuery(DevisResume.class);
+        Root<Devis> d = query.from(Devis.class);
+        Join<Devis, Client> c = d.join("client", JoinType.LEFT);
+        query.select(cb.construct(DevisResume.class,
+                        d.get("id"), d.get("numero"), d.get("dateCreation"), d.get("dateValidite"), d.get("statut"),
+                        d.get("totalHT"), d.get("montantTVA"), d.get("totalTTC"),
+                        c.get("id"), cb.coalesce(c.<String>get("nom"), d.<String>get("clientNom"))))
+                .where(filtre.toPredicate(d, query, cb))
+                .orderBy(cb.desc(d.get("id")));
+        return entityManager.createQuery(query).setMaxResults(limite).getResultList();
+    }
+}
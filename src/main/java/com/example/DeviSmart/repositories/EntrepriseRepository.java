@@ -4,10 +4,14 @@ import com.example.DeviSmart.entities.Entreprise;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Optional;
+
 @Repository
 public interface EntrepriseRepository extends JpaRepository<Entreprise, Long> {
+    Optional<Entreprise> findFirstByOrderByIdAsc();
+
     // Récupérer la première entreprise (configuration unique)
     default Entreprise getEntreprise() {
-        return findAll().stream().findFirst().orElse(null);
+        return findFirstByOrderByIdAsc().orElse(null);
     }
 }
@@ -1,15 +1,209 @@
 package com.example.DeviSmart.repositories;
 
+import com.example.DeviSmart.dto.FactureResume;
+import com.example.DeviSmart.dto.StatistiqueClient;
+import com.example.DeviSmart.dto.StatistiqueMensuelle;
+import com.example.DeviSmart.dto.StatistiqueStatut;
 import com.example.DeviSmart.entities.Facture;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import jakarta.persistence.criteria.Predicate;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
-public interface FactureRepository extends JpaRepository<Facture, Long> {
+public interface FactureRepository extends JpaRepository<Facture, Long>, JpaSpecificationExecutor<Facture>, FactureVuesRepository {
     List<Facture> findByClientId(Long clientId);
     List<Facture> findByStatut(String statut);
     Optional<Facture> findByNumeroFacture(String numeroFacture);
+
+    // Facture et lignes en une requête, pour le rendu PDF hors requête HTTP
+    @EntityGraph(attributePaths = "lignes")
+    Optional<Facture> findAvecLignesById(Long id);
+
+    // Vue détaillée : facture, client et lignes en une seule requête
+    @EntityGraph(attributePaths = {"client", "lignes"})
+    Optional<Facture> findDetailById(Long id);
+
+    // Facture à modifier : version incrémentée au commit même si seules ses lignes changent
+    @Lock(LockModeType.OPTIMISTIC_FORCE_INCREMENT)
+    Optional<Facture> findPourModificationById(Long id);
+
+    // ==================== VUES RÉSUMÉES (projections, sans entités) ====================
+
+    @Query("""
+            select new com.example.DeviSmart.dto.FactureResume(f.id, f.numeroFacture, f.dateEmission, f.dateEcheance,
+                f.statut, f.totalHT, f.montantTVA, f.totalTTC, f.client.id, f.nomClient)
+            from Facture f
+            where f.client.id = :clientId
+            order by f.id desc""")
+    List<FactureResume> findResumesByClientId(@Param("clientId") Long clientId);
+
+    @Query("""
+            select new com.example.DeviSmart.dto.FactureResume(f.id, f.numeroFacture, f.dateEmission, f.dateEcheance,
+                f.statut, f.totalHT, f.montantTVA, f.totalTTC, f.client.id, f.nomClient)
+            from Facture f
+            where f.statut = :statut
+            order by f.id desc""")
+    List<FactureResume> findResumesByStatut(@Param("statut") String statut);
+
+    // Numéros existants d'une série (ex: FAC-2026-%), du plus grand au plus petit
+    // (numéros à largeur minimale fixe : plus long = plus grand), pour initialiser la séquence
+    @Query("select f.numeroFacture from Facture f where f.numeroFacture like :motif order by length(f.numeroFacture) desc, f.numeroFacture desc")
+    List<String> findNumerosCorrespondants(@Param("motif") String motif, Pageable page);
+
+    // Numéros déjà présents parmi ceux fournis (import)
+    @Query("select f.numeroFacture from Facture f where f.numeroFacture in :numeros")
+    List<String> findNumerosExistants(@Param("numeros") Collection<String> numeros);
+
+    // Devis déjà facturés parmi ceux fournis (import)
+    @Query("select f.referenceDevis from Facture f where f.referenceDevis in :references")
+    List<String> findReferencesDevisExistantes(@Param("references") Collection<String> references);
+
+    // Facture issue d'un devis (validation rejouée)
+    Optional<Facture> findByReferenceDevis(String referenceDevis);
+
+    // ==================== ÉCHÉANCES (passage en retard) ====================
+
+    /**
+     * Ids des factures non payées dont l'échéance est dépassée, par id croissant
+     * (index statut, dateEcheance). Requête native : SELECT ... FOR UPDATE
+     * explicite, les lignes restent verrouillées jusqu'à la fin de la
+     * transaction (un verrou demandé sur une projection JPQL n'est pas garanti).
+     */
+    @Query(value = """
+            select id from factures
+            where statut = 'NON_PAYEE' and date_echeance < :date
+            order by id
+            limit :limite
+            for update""", nativeQuery = true)
+    List<Long> verrouillerEcheancesDepassees(@Param("date") LocalDate date, @Param("limite") int limite);
+
+    /**
+     * Résumés des factures verrouillées encore NON_PAYEE : relus après
+     * l'obtention du verrou, un passage concurrent a pu les traiter entre-temps
+     */
+    @Query("""
+            select new com.example.DeviSmart.dto.FactureResume(f.id, f.numeroFacture, f.dateEmission, f.dateEcheance,
+                f.statut, f.totalHT, f.montantTVA, f.totalTTC, f.client.id, f.nomClient)
+            from Facture f
+            where f.id in :ids and f.statut = 'NON_PAYEE'
+            order by f.id""")
+    List<FactureResume> findResumesNonPayeesByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Simulation : nombre et montant des factures qui passeraient en retard
+    @Query("""
+            select new com.example.DeviSmart.dto.StatistiqueStatut(f.statut, count(f), sum(f.totalTTC))
+            from Facture f
+            where f.statut = 'NON_PAYEE' and f.dateEcheance < :date
+            group by f.statut""")
+    List<StatistiqueStatut> statistiquesEcheancesDepassees(@Param("date") LocalDate date);
+
+    // Un seul UPDATE pour le paquet ; le statut est revérifié dans la requête, la version
+    // incrémentée comme par Hibernate (une édition concurrente échoue et est rejouée)
+    @Modifying
+    @Query("""
+            update Facture f set f.statut = 'EN_RETARD', f.version = f.version + 1
+            where f.id in :ids and f.statut = 'NON_PAYEE'""")
+    int marquerEnRetard(@Param("ids") Collection<Long> ids);
+
+    // ==================== EXPORT (flux) ====================
+
+    /**
+     * Factures filtrées avec client et lignes, en flux (curseur JDBC par paquets de 500 lignes)
+     *
+     * À consommer dans une transaction, en détachant chaque facture traitée.
+     * Le tri par id garde les lignes d'une facture contiguës dans le résultat.
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("""
+            select f from Facture f left join fetch f.client left join fetch f.lignes
+            where (:statut is null or f.statut = :statut)
+              and (:clientId is null or f.client.id = :clientId)
+              and (:du is null or f.dateEmission >= :du)
+              and (:au is null or f.dateEmission <= :au)
+            order by f.id""")
+    Stream<Facture> streamPourExport(@Param("statut") String statut, @Param("clientId") Long clientId,
+                                     @Param("du") LocalDate du, @Param("au") LocalDate au);
+
+    // ==================== STATISTIQUES (agrégées en SQL) ====================
+
+    @Query("select sum(f.totalTTC) from Facture f where f.statut = :statut")
+    BigDecimal sommeTotalTTCParStatut(@Param("statut") String statut);
+
+    @Query("""
+            select new com.example.DeviSmart.dto.StatistiqueStatut(f.statut, count(f), sum(f.totalTTC))
+            from Facture f
+            group by f.statut""")
+    List<StatistiqueStatut> statistiquesParStatut();
+
+    @Query("""
+            select new com.example.DeviSmart.dto.StatistiqueMensuelle(
+                year(f.dateEmission), month(f.dateEmission), f.statut, count(f), sum(f.totalTTC))
+            from Facture f
+            where f.dateEmission >= :du and f.dateEmission < :au
+            group by year(f.dateEmission), month(f.dateEmission), f.statut
+            order by year(f.dateEmission), month(f.dateEmission)""")
+    List<StatistiqueMensuelle> statistiquesMensuelles(@Param("du") LocalDate du, @Param("au") LocalDate au);
+
+    @Query("""
+            select new com.example.DeviSmart.dto.StatistiqueMensuelle(
+                year(f.dateEmission), month(f.dateEmission), f.statut, count(f), sum(f.totalTTC))
+            from Facture f
+            group by year(f.dateEmission), month(f.dateEmission), f.statut""")
+    List<StatistiqueMensuelle> statistiquesMensuellesCompletes();
+
+    @Query("""
+            select new com.example.DeviSmart.dto.StatistiqueClient(
+                f.client.id, max(f.nomClient), f.statut, count(f), sum(f.totalTTC))
+            from Facture f
+            group by f.client.id, f.statut""")
+    List<StatistiqueClient> statistiquesParClient();
+
+    /**
+     * Filtres optionnels de la liste paginée : curseur (id strictement inférieur),
+     * statut, client et période d'émission. Les critères null sont ignorés.
+     */
+    static Specification<Facture> filtre(Long curseur, String statut, Long clientId, LocalDate du, LocalDate au) {
+        return (root, query, cb) -> {
+            List<Predicate> conditions = new ArrayList<>();
+            if (curseur != null) {
+                conditions.add(cb.lessThan(root.<Long>get("id"), curseur));
+            }
+            if (statut != null) {
+                conditions.add(cb.equal(root.get("statut"), statut));
+            }
+            if (clientId != null) {
+                conditions.add(cb.equal(root.get("client").get("id"), clientId));
+            }
+            if (du != null) {
+                conditions.add(cb.greaterThanOrEqualTo(root.<LocalDate>get("dateEmission"), du));
+            }
+            if (au != null) {
+                conditions.add(cb.lessThanOrEqualTo(root.<LocalDate>get("dateEmission"), au));
+            }
+            return cb.and(conditions.toArray(new Predicate[0]));
+        };
+    }
 }
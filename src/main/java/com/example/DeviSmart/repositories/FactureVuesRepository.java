@@ -0,0 +1,24 @@
+package com.example.DeviSmart.repositories;
+
+import com.example.DeviSmart.dto.FactureResume;
+import com.example.DeviSmart.entities.Facture;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+
+/**
+ * Lectures en projection des factures, filtrées par Specification
+ */
+public interface FactureVuesRepository {
+
+    /**
+     * Résumés des factures correspondant au filtre, par id décroissant
+     */
+    List<FactureResume> findResumes(Specification<Facture> filtre, int limite);
+
+    /**
+     * Ids des factures correspondant au filtre, par id décroissant : aucune
+     * entité n'entre dans le contexte de persistance
+     */
+    List<Long> findIds(Specification<Facture> filtre, int limite);
+}
@@ -0,0 +1,47 @@
+package com.example.DeviSmart.repositories;
+
+import com.example.DeviSmart.dto.FactureResume;
+import com.example.DeviSmart.entities.Facture;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+
+/**
+ * Même filtre que la liste d'entités (FactureRepository.filtre), mais seules
+ * les colonnes du résumé sont lues : ni client ni lignes chargés
+ */
+class FactureVuesRepositoryImpl implements FactureVuesRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<FactureResume> findResumes(Specification<Facture> filtre, int limite) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<FactureResume> query = cb.createQuery(FactureResume.class);
+        Root<Facture> f = query.from(Facture.class);
+        query.select(cb.construct(FactureResume.class,
+                        f.get("id"), f.get("numeroFacture"), f.get("dateEmission"), f.get("dateEcheance"),
+                        f.get("statut"), f.get("totalHT"), f.get("montantTVA"), f.get("totalTTC"),
+                        f.get("client").get("id"), f.get("nomClient")))
+                .where(filtre.toPredicate(f, query, cb))
+                .orderBy(cb.desc(f.get("id")));
+        return entityManager.createQuery(query).setMaxResults(limite).getResultList();
+    }
+
+    @Override
+    public List<Long> findIds(Specification<Facture> filtre, int limite) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<Facture> f = query.from(Facture.class);
+        query.select(f.<Long>get("id"))
+                .where(filtre.toPredicate(f, query, cb))
+                .orderBy(cb.desc(f.get("id")));
+        return entityManager.createQuery(query).setMaxResults(limite).getResultList();
+    }
+}
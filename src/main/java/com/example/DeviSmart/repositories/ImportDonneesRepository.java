@@ -0,0 +1,21 @@
+package com.example.DeviSmart.repositories;
+
+import com.example.DeviSmart.entities.ImportDonnees;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ImportDonneesRepository extends JpaRepository<ImportDonnees, Long> {
+
+    // Point de reprise et compteurs, dans la transaction du paquet écrit
+    @Modifying
+    @Query("""
+            update ImportDonnees i
+            set i.dernierEnregistrement = :dernier, i.importes = i.importes + :importes, i.rejetes = i.rejetes + :rejetes
+            where i.id = :id""")
+    int avancer(@Param("id") Long id, @Param("dernier") long dernier,
+                @Param("importes") long importes, @Param("rejetes") long rejetes);
+}
@@ -1,13 +1,33 @@
 package com.example.DeviSmart.repositories;
 
 import com.example.DeviSmart.entities.Ligne;
+import jakarta.persistence.criteria.Predicate;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.stereotype.Repository;
 
+import java.util.ArrayList;
 import java.util.List;
 
 @Repository
-public interface LigneRepository extends JpaRepository<Ligne, Long> {
+public interface LigneRepository extends JpaRepository<Ligne, Long>, JpaSpecificationExecutor<Ligne> {
     List<Ligne> findByDevisId(Long devisId);
     List<Ligne> findByFactureId(Long factureId);
+
+    /**
+     * Filtres optionnels de la liste paginée : curseur (id strictement inférieur) et devis
+     */
+    static Specification<Ligne> filtre(Long curseur, Long devisId) {
+        return (root, query, cb) -> {
+            List<Predicate> conditions = new ArrayList<>();
+            if (curseur != null) {
+                conditions.add(cb.lessThan(root.<Long>get("id"), curseur));
+            }
+            if (devisId != null) {
+                conditions.add(cb.equal(root.get("devis").get("id"), devisId));
+            }
+            return cb.and(conditions.toArray(new Predicate[0]));
+        };
+    }
 }
@@ -0,0 +1,26 @@
+package com.example.DeviSmart.repositories;
+
+import com.example.DeviSmart.entities.ResumeFacture;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Repository
+public interface ResumeFactureRepository extends JpaRepository<ResumeFacture, Long> {
+    List<ResumeFacture> findByDimensionAndNombreGreaterThan(String dimension, long nombre);
+    List<ResumeFacture> findByDimensionAndCleStartingWithAndNombreGreaterThan(String dimension, String prefixe, long nombre);
+
+    // Incrément atomique en base : pas de perte de mise à jour entre transactions concurrentes
+    @Modifying
+    @Query("""
+            update ResumeFacture r
+            set r.nombre = r.nombre + :nombre, r.montant = r.montant + :montant
+            where r.dimension = :dimension and r.cle = :cle and r.statut = :statut""")
+    int incrementer(@Param("dimension") String dimension, @Param("cle") String cle, @Param("statut") String statut,
+                    @Param("nombre") long nombre, @Param("montant") BigDecimal montant);
+}
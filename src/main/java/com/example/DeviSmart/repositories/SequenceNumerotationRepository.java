@@ -0,0 +1,16 @@
+package com.example.DeviSmart.repositories;
+
+import com.example.DeviSmart.entities.SequenceNumerotation;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface SequenceNumerotationRepository extends JpaRepository<SequenceNumerotation, Long> {
+    // Verrou exclusif sur la seule ligne de la série, le temps de réserver un bloc
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<SequenceNumerotation> findByPrefixeAndAnnee(String prefixe, int annee);
+}
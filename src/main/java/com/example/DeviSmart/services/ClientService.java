@@ -1,9 +1,16 @@
 package com.example.DeviSmart.services;
 
+import com.example.DeviSmart.dto.ClientResume;
+import com.example.DeviSmart.dto.PageCurseur;
 import com.example.DeviSmart.entities.Client;
+import com.example.DeviSmart.events.FactureModifieeEvent;
 import com.example.DeviSmart.repositories.ClientRepository;
+import com.example.DeviSmart.repositories.FactureRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Optional;
@@ -14,12 +21,34 @@ public class ClientService {
     @Autowired
     private ClientRepository clientRepository;
 
-    public List<Client> findAll() {
-        return clientRepository.findAll();
+    @Autowired
+    private FactureRepository factureRepository;
+
+    @Autowired
+    private ApplicationEventPublisher evenements;
+
+    // Lectures en projection : les devis et factures du client ne sont jamais chargés
+
+    @Transactional(readOnly = true)
+    public List<ClientResume> findAll() {
+        return clientRepository.findResumes();
+    }
+
+    /**
+     * Page de clients (les plus récents d'abord), parcourue par curseur
+     */
+    @Transactional(readOnly = true)
+    public PageCurseur<ClientResume> findPage(Long curseur, Integer taille) {
+        int limite = PageCurseur.borner(taille);
+        List<ClientResume> clients = curseur == null
+                ? clientRepository.findResumesPremierePage(Limit.of(limite + 1))
+                : clientRepository.findResumesAvant(curseur, Limit.of(limite + 1));
+        return PageCurseur.de(clients, limite, ClientResume::id);
     }
 
-    public Optional<Client> findById(Long id) {
-        return clientRepository.findById(id);
+    @Transactional(readOnly = true)
+    public Optional<ClientResume> findById(Long id) {
+        return clientRepository.findResumeById(id);
     }
 
     public Client save(Client client) {
@@ -39,7 +68,14 @@ public class ClientService {
         return clientRepository.save(client);
     }
 
+    /**
+     * Supprime le client ; ses factures partent en cascade et sont
+     * retirées des agrégats statistiques dans la même transaction
+     */
+    @Transactional
     public void delete(Long id) {
+        factureRepository.findByClientId(id).forEach(facture ->
+                evenements.publishEvent(new FactureModifieeEvent(FactureModifieeEvent.Etat.de(facture), null)));
         clientRepository.deleteById(id);
     }
 
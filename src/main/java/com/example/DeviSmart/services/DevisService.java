@@ -1,10 +1,14 @@
 package com.example.DeviSmart.services;
 
+import com.example.DeviSmart.dto.DevisDetail;
+import com.example.DeviSmart.dto.DevisResume;
+import com.example.DeviSmart.dto.PageCurseur;
 import com.example.DeviSmart.entities.*;
 import com.example.DeviSmart.repositories.DevisRepository;
-import com.example.DeviSmart.repositories.FactureRepository;
 import com.example.DeviSmart.repositories.LigneRepository;
+import io.micrometer.core.annotation.Timed;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -16,34 +20,70 @@ import java.util.List;
 import java.util.Optional;
 
 @Service
+@Timed("devismart.service")
+@Transactional
 public class DevisService {
 
     @Autowired
     private DevisRepository devisRepository;
 
-    @Autowired
-    private FactureRepository factureRepository;
-
     @Autowired
     private LigneRepository ligneRepository;
 
     @Autowired
     private EntrepriseService entrepriseService;
 
-    public List<Devis> findAll() {
-        return devisRepository.findAll();
+    @Autowired
+    private FactureService factureService;
+
+    // Lectures en transaction lecture seule (pas de dirty checking ni de flush)
+
+    /**
+     * Tous les devis en vue détaillée : l'interface modifie les devis
+     * depuis la liste, les lignes sont donc incluses (chargées par lots)
+     */
+    @Transactional(readOnly = true)
+    public List<DevisDetail> findAll() {
+        return devisRepository.findAll().stream().map(DevisDetail::de).toList();
     }
 
+    /**
+     * Devis avec son client et ses lignes, chargés en une requête
+     * (entité, pour le rendu PDF et les traitements internes)
+     */
+    @Transactional(readOnly = true)
     public Optional<Devis> findById(Long id) {
-        return devisRepository.findById(id);
+        return devisRepository.findDetailById(id);
+    }
+
+    /**
+     * Vue détaillée d'un devis, construite avant la fin de la transaction
+     */
+    @Transactional(readOnly = true)
+    public Optional<DevisDetail> findDetail(Long id) {
+        return devisRepository.findDetailById(id).map(DevisDetail::de);
     }
 
-    public List<Devis> findByClientId(Long clientId) {
-        return devisRepository.findByClientId(clientId);
+    @Transactional(readOnly = true)
+    public List<DevisResume> findByClientId(Long clientId) {
+        return devisRepository.findResumesByClientId(clientId);
     }
 
-    public List<Devis> findByStatut(String statut) {
-        return devisRepository.findByStatut(statut);
+    @Transactional(readOnly = true)
+    public List<DevisResume> findByStatut(String statut) {
+        return devisRepository.findResumesByStatut(statut);
+    }
+
+    /**
+     * Page de devis (les plus récents d'abord), filtrée et parcourue par curseur
+     */
+    @Transactional(readOnly = true)
+    public PageCurseur<DevisResume> findPage(Long curseur, Integer taille, String statut, Long clientId,
+                                             LocalDate du, LocalDate au, BigDecimal montantMin, BigDecimal montantMax) {
+        int limite = PageCurseur.borner(taille);
+        List<DevisResume> devis = devisRepository.findResumes(
+                DevisRepository.filtre(curseur, statut, clientId, du, au, montantMin, montantMax), limite + 1);
+        return PageCurseur.de(devis, limite, DevisResume::id);
     }
 
     public Devis save(Devis devis) {
@@ -57,7 +97,7 @@ public class DevisService {
             devis.setStatut("BROUILLON");
         }
         // Appliquer le taux de TVA de l'entreprise
-        devis.setTauxTVA(entrepriseService.getTauxTVA());
+        devis.setTauxTVA(BigDecimal.valueOf(entrepriseService.getTauxTVA()));
         
         // Associate lignes with the devis
         if (devis.getLignes() != null) {
@@ -65,13 +105,20 @@ public class DevisService {
                 ligne.setDevis(devis);
             }
         }
+        devis.recalculerTotaux();
         
         return devisRepository.save(devis);
     }
 
-    public Devis update(Long id, Devis devisDetails) {
-        Devis devis = devisRepository.findById(id)
+    /**
+     * Met à jour un devis et remplace ses lignes
+     *
+     * @param versionAttendue Version lue par le client (If-Match), null pour ne pas la vérifier
+     */
+    public Devis update(Long id, Devis devisDetails, Long versionAttendue) {
+        Devis devis = devisRepository.findPourModificationById(id)
                 .orElseThrow(() -> new RuntimeException("Devis non trouvé avec l'id: " + id));
+        verifierVersion(devis, versionAttendue);
         
         devis.setDateValidite(devisDetails.getDateValidite());
         devis.setStatut(devisDetails.getStatut());
@@ -92,83 +139,92 @@ public class DevisService {
                 ligne.setDevis(devis);
                 devis.getLignes().add(ligne);
             }
+            devis.recalculerTotaux();
         }
         
         return devisRepository.save(devis);
     }
 
-    public void delete(Long id) {
-        devisRepository.deleteById(id);
+    public void delete(Long id, Long versionAttendue) {
+        devisRepository.findById(id).ifPresent(devis -> {
+            verifierVersion(devis, versionAttendue);
+            devisRepository.delete(devis);
+        });
     }
 
-    @Transactional
-    public Facture validerDevis(Long devisId) {
+    /**
+     * Valide le devis et crée sa facture
+     *
+     * Idempotent : si le devis a déjà été facturé (validation rejouée après un
+     * timeout), la facture existante est renvoyée sans nouveau numéro. L'unicité
+     * de Facture.referenceDevis écarte deux validations simultanées.
+     *
+     * @throws IllegalStateException si le devis a été refusé
+     */
+    public Facture validerDevis(Long devisId, Long versionAttendue) {
         Devis devis = devisRepository.findById(devisId)
                 .orElseThrow(() -> new RuntimeException("Devis non trouvé avec l'id: " + devisId));
+        if (devis.getNumero() != null) {
+            Optional<Facture> existante = factureService.findByReferenceDevis(devis.getNumero());
+            if (existante.isPresent()) {
+                return existante.get();
+            }
+        }
+        if ("REFUSÉ".equals(devis.getStatut())) {
+            throw new IllegalStateException("Devis refusé, validation impossible: " + devis.getNumero());
+        }
+        verifierVersion(devis, versionAttendue);
         
         // Mettre à jour le statut du devis
         devis.setStatut("VALIDÉ");
         devisRepository.save(devis);
 
-        // Récupérer les infos entreprise
-        Entreprise entreprise = entrepriseService.getEntreprise();
-
-        // Créer la facture correspondante avec la nouvelle structure
-        Facture facture = new Facture();
-        facture.setNumeroFacture(entrepriseService.genererNumeroFacture());
-        facture.setDateEmission(LocalDate.now());
-        facture.setDateEcheance(LocalDate.now().plusDays(30));
-        facture.setStatut("NON_PAYEE");
-        facture.setReferenceDevis(devis.getNumero());
-        
-        // Copier les données entreprise (immutables)
-        facture.copierDonneesEntreprise(entreprise);
-        
-        // Copier les données client (immutables)
-        if (devis.getClient() != null) {
-            facture.copierDonneesClient(devis.getClient());
-        }
-
-        // Convertir les lignes du devis en LigneFacture
-        if (devis.getLignes() != null) {
-            for (Ligne ligneDevis : devis.getLignes()) {
-                LigneFacture ligneFacture = new LigneFacture();
-                ligneFacture.setDesignation(ligneDevis.getDesignation());
-                ligneFacture.setQuantite(BigDecimal.valueOf(ligneDevis.getQuantite()));
-                ligneFacture.setPrixUnitaireHT(BigDecimal.valueOf(ligneDevis.getPrixUnitaire()));
-                ligneFacture.calculerTotal();
-                facture.ajouterLigne(ligneFacture);
-            }
-        }
-
-        // Calculer les totaux
-        facture.recalculerTotaux();
-        
-        return factureRepository.save(facture);
+        // Créer la facture correspondante (numérotation, agrégats statistiques)
+        return factureService.creerFactureDepuisDevis(devis);
     }
 
-    public Devis refuserDevis(Long devisId) {
+    public Devis refuserDevis(Long devisId, Long versionAttendue) {
         Devis devis = devisRepository.findById(devisId)
                 .orElseThrow(() -> new RuntimeException("Devis non trouvé avec l'id: " + devisId));
+        verifierVersion(devis, versionAttendue);
         
         devis.setStatut("REFUSÉ");
         return devisRepository.save(devis);
     }
 
-    // Calcul du total HT d'un devis
-    public double calculerTotalHT(Long devisId) {
+    // Total HT stocké du devis (lignes non chargées)
+    @Transactional(readOnly = true)
+    public BigDecimal calculerTotalHT(Long devisId) {
         Devis devis = devisRepository.findById(devisId)
                 .orElseThrow(() -> new RuntimeException("Devis non trouvé"));
         return devis.getTotalHT();
     }
 
-    // Calcul du total TTC d'un devis avec TVA dynamique
-    public double calculerTotalTTC(Long devisId) {
+    // Total TTC stocké du devis, TVA au taux enregistré sur le devis
+    @Transactional(readOnly = true)
+    public BigDecimal calculerTotalTTC(Long devisId) {
         Devis devis = devisRepository.findById(devisId)
                 .orElseThrow(() -> new RuntimeException("Devis non trouvé"));
         return devis.getTotalTTC();
     }
 
+    // Montant de TVA stocké du devis, arrondi au millime comme les autres totaux
+    @Transactional(readOnly = true)
+    public BigDecimal calculerMontantTVA(Long devisId) {
+        Devis devis = devisRepository.findById(devisId)
+                .orElseThrow(() -> new RuntimeException("Devis non trouvé"));
+        return devis.getMontantTVA();
+    }
+
+    /**
+     * Précondition If-Match : même exception qu'un conflit détecté au commit
+     */
+    private static void verifierVersion(Devis devis, Long versionAttendue) {
+        if (versionAttendue != null && !versionAttendue.equals(devis.getVersion())) {
+            throw new ObjectOptimisticLockingFailureException(Devis.class, devis.getId());
+        }
+    }
+
     private String generateNumero() {
         long count = devisRepository.count() + 1;
         return "DEV-" + Year.now().getValue() + "-" + String.format("%03d", count);
@@ -2,71 +2,131 @@ package com.example.DeviSmart.services;
 
 import com.example.DeviSmart.entities.Entreprise;
 import com.example.DeviSmart.repositories.EntrepriseRepository;
+import io.micrometer.core.annotation.Timed;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.util.Optional;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Service
+@Timed("devismart.service")
 public class EntrepriseService {
 
     @Autowired
     private EntrepriseRepository entrepriseRepository;
 
+    @Autowired
+    private NumerotationService numerotationService;
+
+    // Profil entreprise en mémoire, remplacé à chaque enregistrement.
+    // L'instance partagée est en lecture seule pour les appelants.
+    private final AtomicReference<Entreprise> cache = new AtomicReference<>();
+
+    // Identifiant de l'entreprise, pour une relecture par clé primaire
+    private volatile Long entrepriseId;
+
     /**
      * Récupère l'entreprise (configuration unique)
      */
     public Entreprise getEntreprise() {
-        return entrepriseRepository.getEntreprise();
+        Entreprise entreprise = cache.get();
+        if (entreprise == null) {
+            entreprise = chargerEntreprise();
+            if (entreprise != null && !cache.compareAndSet(null, entreprise)) {
+                // Un enregistrement concurrent a déjà publié une version plus récente
+                entreprise = cache.get();
+            }
+        }
+        return entreprise;
     }
 
     /**
      * Crée ou met à jour l'entreprise
+     *
+     * @param versionAttendue Révision sur laquelle l'appelant s'appuie (If-Match), null pour la révision courante
+     * @throws org.springframework.orm.ObjectOptimisticLockingFailureException si l'entreprise a été
+     *         modifiée depuis cette révision
      */
-    public Entreprise saveEntreprise(Entreprise entreprise) {
-        Entreprise existante = entrepriseRepository.getEntreprise();
+    public Entreprise saveEntreprise(Entreprise entreprise, Long versionAttendue) {
+        Entreprise existante = chargerEntreprise();
         if (existante != null) {
             entreprise.setId(existante.getId());
             // Préserver les compteurs
             entreprise.setCompteurDevis(existante.getCompteurDevis());
             entreprise.setCompteurFactures(existante.getCompteurFactures());
+            // Révision comparée à la base lors de la fusion, puis incrémentée par Hibernate
+            entreprise.setRevision(versionAttendue != null ? versionAttendue : existante.getRevision());
         }
-        return entrepriseRepository.save(entreprise);
+        Entreprise enregistree = entrepriseRepository.save(entreprise);
+        entrepriseId = enregistree.getId();
+        cache.set(enregistree);
+        return enregistree;
+    }
+
+    /**
+     * Vide le cache : le prochain accès relit l'entreprise en base
+     */
+    public void invaliderCache() {
+        cache.set(null);
     }
 
     /**
      * Génère le prochain numéro de devis
      */
     public String genererNumeroDevis() {
-        Entreprise entreprise = getOrCreateEntreprise();
-        String numero = entreprise.genererNumeroDevis();
-        entrepriseRepository.save(entreprise);
-        return numero;
+        return numerotationService.prochainNumero(NumerotationService.PREFIXE_DEVIS);
     }
 
     /**
      * Génère le prochain numéro de facture
      */
     public String genererNumeroFacture() {
-        Entreprise entreprise = getOrCreateEntreprise();
-        String numero = entreprise.genererNumeroFacture();
-        entrepriseRepository.save(entreprise);
-        return numero;
+        return numerotationService.prochainNumero(NumerotationService.PREFIXE_FACTURE);
+    }
+
+    /**
+     * Réserve une plage continue de numéros de devis (import)
+     */
+    public List<String> genererNumerosDevis(int nombre) {
+        return numerotationService.prochainsNumeros(NumerotationService.PREFIXE_DEVIS, nombre);
+    }
+
+    /**
+     * Réserve une plage continue de numéros de facture (création groupée)
+     */
+    public List<String> genererNumerosFacture(int nombre) {
+        return numerotationService.prochainsNumeros(NumerotationService.PREFIXE_FACTURE, nombre);
     }
 
     /**
      * Récupère le taux de TVA configuré
      */
     public double getTauxTVA() {
-        Entreprise entreprise = entrepriseRepository.getEntreprise();
+        Entreprise entreprise = getEntreprise();
         return entreprise != null ? entreprise.getTauxTVA() : 19.0;
     }
 
+    /**
+     * Lit l'entreprise en base : par clé primaire si elle est connue,
+     * sinon la première ligne de la table
+     */
+    private Entreprise chargerEntreprise() {
+        Long id = entrepriseId;
+        Entreprise entreprise = id != null
+                ? entrepriseRepository.findById(id).orElse(null)
+                : entrepriseRepository.getEntreprise();
+        if (entreprise != null) {
+            entrepriseId = entreprise.getId();
+        }
+        return entreprise;
+    }
+
     /**
      * Récupère ou crée l'entreprise par défaut
      */
     private Entreprise getOrCreateEntreprise() {
-        Entreprise entreprise = entrepriseRepository.getEntreprise();
+        Entreprise entreprise = chargerEntreprise();
         if (entreprise == null) {
             entreprise = new Entreprise();
             entreprise.setNom("DeviSmart");
@@ -78,7 +138,9 @@ public class EntrepriseService {
             entreprise.setMatriculeFiscal("FR12345678901");
             entreprise.setTauxTVA(19.0);
             entreprise = entrepriseRepository.save(entreprise);
+            entrepriseId = entreprise.getId();
         }
+        cache.set(entreprise);
         return entreprise;
     }
 
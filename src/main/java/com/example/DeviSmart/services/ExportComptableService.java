@@ -0,0 +1,156 @@
+package com.example.DeviSmart.services;
+
+import com.example.DeviSmart.dto.FactureDetail;
+import com.example.DeviSmart.entities.Facture;
+import com.example.DeviSmart.entities.LigneFacture;
+import com.example.DeviSmart.repositories.FactureRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Service d'export comptable (grand livre) des factures et de leurs lignes
+ *
+ * Les factures sont lues en flux (FactureRepository.streamPourExport, curseur
+ * JDBC en lecture seule) et écrites au fil de l'eau dans la réponse ; chaque
+ * facture est détachée une fois écrite. La mémoire utilisée ne dépend pas du
+ * nombre de factures exportées.
+ *
+ * CSV : une ligne par ligne de facture, données de la facture répétées
+ * (une ligne sans détail pour une facture vide). JSONL : une facture par ligne,
+ * au format de GET /api/factures/{id}.
+ */
+@Service
+public class ExportComptableService {
+
+    public static final String FORMAT_CSV = "csv";
+    public static final String FORMAT_JSONL = "jsonl";
+
+    private static final List<String> COLONNES = List.of(
+            "factureId", "numeroFacture", "dateEmission", "dateEcheance", "statut", "referenceDevis",
+            "clientId", "nomClient", "matriculeFiscalClient", "tauxTVA", "totalHT", "montantTVA", "totalTTC",
+            "ligneId", "designation", "quantite", "prixUnitaireHT", "totalLigneHT");
+
+    @Autowired
+    private FactureRepository factureRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JsonMapper jsonMapper;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * Écrit les factures filtrées (critères null ignorés), par id croissant
+     */
+    public void ecrire(String format, char separateur, String statut, Long clientId, LocalDate du, LocalDate au,
+                       OutputStream sortie) throws IOException {
+        boolean csv = FORMAT_CSV.equalsIgnoreCase(format);
+        Writer ecriture = new BufferedWriter(new OutputStreamWriter(sortie, StandardCharsets.UTF_8), 64 * 1024);
+        if (csv) {
+            ecrireLigneCsv(ecriture, separateur, COLONNES);
+        }
+
+        // Transaction en lecture seule : nécessaire au curseur (autocommit désactivé), sans flush ni dirty checking
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setReadOnly(true);
+        try {
+            transaction.executeWithoutResult(status -> {
+                try (Stream<Facture> factures = factureRepository.streamPourExport(statut, clientId, du, au)) {
+                    Iterator<Facture> iterateur = factures.iterator();
+                    while (iterateur.hasNext()) {
+                        Facture facture = iterateur.next();
+                        if (csv) {
+                            ecrireCsv(ecriture, separateur, facture);
+                        } else {
+                            ecriture.write(jsonMapper.writeValueAsString(FactureDetail.de(facture)));
+                            ecriture.write('\n');
+                        }
+                        // Les lignes suivent par cascade ; le client peut être partagé, il sera relu si besoin
+                        entityManager.detach(facture);
+                        if (facture.getClient() != null) {
+                            entityManager.detach(facture.getClient());
+                        }
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            // Client déconnecté : le curseur est fermé avec la transaction
+            throw e.getCause();
+        }
+        ecriture.flush();
+    }
+
+    private void ecrireCsv(Writer ecriture, char separateur, Facture facture) throws IOException {
+        List<LigneFacture> lignes = facture.getLignes();
+        if (lignes.isEmpty()) {
+            ecrireLigneCsv(ecriture, separateur, valeurs(facture, null));
+        }
+        for (LigneFacture ligne : lignes) {
+            ecrireLigneCsv(ecriture, separateur, valeurs(facture, ligne));
+        }
+    }
+
+    private static List<String> valeurs(Facture facture, LigneFacture ligne) {
+        return List.of(
+                texte(facture.getId()), texte(facture.getNumeroFacture()), texte(facture.getDateEmission()),
+                texte(facture.getDateEcheance()), texte(facture.getStatut()), texte(facture.getReferenceDevis()),
+                texte(facture.getClient() != null ? facture.getClient().getId() : null), texte(facture.getNomClient()),
+                texte(facture.getMatriculeFiscalClient()), montant(facture.getTauxTVA()), montant(facture.getTotalHT()),
+                montant(facture.getMontantTVA()), montant(facture.getTotalTTC()),
+                ligne != null ? texte(ligne.getId()) : "",
+                ligne != null ? texte(ligne.getDesignation()) : "",
+                ligne != null ? montant(ligne.getQuantite()) : "",
+                ligne != null ? montant(ligne.getPrixUnitaireHT()) : "",
+                ligne != null ? montant(ligne.getTotalLigneHT()) : "");
+    }
+
+    private static void ecrireLigneCsv(Writer ecriture, char separateur, List<String> valeurs) throws IOException {
+        for (int i = 0; i < valeurs.size(); i++) {
+            if (i > 0) {
+                ecriture.write(separateur);
+            }
+            String valeur = valeurs.get(i);
+            if (valeur.indexOf(separateur) >= 0 || valeur.indexOf('"') >= 0
+                    || valeur.indexOf('\n') >= 0 || valeur.indexOf('\r') >= 0) {
+                ecriture.write('"');
+                ecriture.write(valeur.replace("\"", "\"\""));
+                ecriture.write('"');
+            } else {
+                ecriture.write(valeur);
+            }
+        }
+        ecriture.write('\n');
+    }
+
+    private static String texte(Object valeur) {
+        return valeur != null ? valeur.toString() : "";
+    }
+
+    // Point décimal et pas de notation scientifique, quel que soit le tableur
+    private static String montant(BigDecimal valeur) {
+        return valeur != null ? valeur.toPlainString() : "";
+    }
+}
@@ -0,0 +1,237 @@
+package com.example.DeviSmart.services;
+
+import com.example.DeviSmart.entities.Facture;
+import com.example.DeviSmart.repositories.FactureRepository;
+import com.lowagie.text.Document;
+import com.lowagie.text.DocumentException;
+import com.lowagie.text.pdf.PdfCopy;
+import com.lowagie.text.pdf.PdfReader;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Service d'export groupé des PDF de factures
+ *
+ * Les factures filtrées sont parcourues par pages (curseur sur l'id) et rendues
+ * en parallèle par un pool dédié. Une fenêtre glissante limite le nombre de
+ * rendus en cours ou en attente d'écriture : la mémoire utilisée ne dépend pas
+ * du nombre de factures exportées. Les documents sont écrits dans l'ordre
+ * (id décroissant), au fur et à mesure, dans le flux de sortie.
+ */
+@Service
+public class ExportPdfService {
+
+    public static final String FORMAT_ZIP = "zip";
+    public static final String FORMAT_PDF = "pdf";
+
+    private static final Logger log = LoggerFactory.getLogger(ExportPdfService.class);
+    private static final int TAILLE_PAGE = 100;
+
+    @Autowired
+    private FactureRepository factureRepository;
+
+    @Autowired
+    private PdfCacheService pdfCacheService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${devismart.pdf.export.parallelisme:4}")
+    private int parallelisme;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean threadsVirtuels;
+
+    private ExecutorService executor;
+
+    @PostConstruct
+    void demarrer() {
+        ThreadFactory threads;
+        if (threadsVirtuels) {
+            // Parallélisme toujours borné : seuls les threads système sont économisés
+            threads = Thread.ofVirtual().name("pdf-export-", 1).factory();
+        } else {
+            CustomizableThreadFactory plateforme = new CustomizableThreadFactory("pdf-export-");
+            plateforme.setDaemon(true);
+            threads = plateforme;
+        }
+        executor = Executors.newFixedThreadPool(Math.max(1, parallelisme), threads);
+    }
+
+    @PreDestroy
+    void arreter() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Archive ZIP contenant un PDF par facture. Les factures dont le rendu
+     * échoue sont listées dans une entrée ERREURS.txt en fin d'archive.
+     */
+    public void ecrireZip(String statut, Long clientId, LocalDate du, LocalDate au,
+                          OutputStream sortie) throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(sortie);
+        // Les PDF sont déjà compressés : privilégier la vitesse
+        zip.setLevel(Deflater.BEST_SPEED);
+        List<String> erreurs = new ArrayList<>();
+
+        parcourir(statut, clientId, du, au, rendu -> {
+            if (rendu.erreur() != null) {
+                erreurs.add(rendu.nomFichier() + " : " + rendu.erreur());
+                return;
+            }
+            zip.putNextEntry(new ZipEntry(rendu.nomFichier()));
+            zip.write(rendu.contenu());
+            zip.closeEntry();
+        });
+
+        if (!erreurs.isEmpty()) {
+            zip.putNextEntry(new ZipEntry("ERREURS.txt"));
+            zip.write(String.join("\n", erreurs).getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+        }
+        zip.finish();
+    }
+
+    /**
+     * Un seul PDF contenant toutes les pages des factures, dans l'ordre.
+     * Chaque facture est copiée puis libérée avant de passer à la suivante.
+     */
+    public void ecrireFusion(String statut, Long clientId, LocalDate du, LocalDate au,
+                             OutputStream sortie) throws IOException {
+        Document document = new Document();
+        PdfCopy copie;
+        try {
+            copie = new PdfCopy(document, sortie);
+        } catch (DocumentException e) {
+            throw new IOException("Erreur export PDF fusionné", e);
+        }
+        copie.setCloseStream(false);
+        document.open();
+        int[] pages = {0};
+
+        parcourir(statut, clientId, du, au, rendu -> {
+            if (rendu.erreur() != null) {
+                log.warn("Facture ignorée dans l'export fusionné {} : {}", rendu.nomFichier(), rendu.erreur());
+                return;
+            }
+            PdfReader lecteur = new PdfReader(rendu.contenu());
+            try {
+                for (int i = 1; i <= lecteur.getNumberOfPages(); i++) {
+                    copie.addPage(copie.getImportedPage(lecteur, i));
+                    pages[0]++;
+                }
+                copie.freeReader(lecteur);
+            } catch (DocumentException e) {
+                throw new IOException("Erreur de copie de " + rendu.nomFichier(), e);
+            } finally {
+                lecteur.close();
+            }
+        });
+
+        if (pages[0] == 0) {
+            // Un PDF sans page est invalide : ajouter une page vide
+            copie.setPageEmpty(false);
+            document.newPage();
+        }
+        document.close();
+    }
+
+    // ==================== PARCOURS ====================
+
+    /**
+     * Parcourt les factures filtrées et transmet leurs rendus dans l'ordre,
+     * avec au plus 2 x parallelisme documents en mémoire
+     */
+    private void parcourir(String statut, Long clientId, LocalDate du, LocalDate au,
+                           Consommateur consommateur) throws IOException {
+        int fenetre = 2 * Math.max(1, parallelisme);
+        Deque<Future<Rendu>> enCours = new ArrayDeque<>();
+        try {
+            Long curseur = null;
+            do {
+                List<Long> ids = pageIds(curseur, statut, clientId, du, au);
+                for (Long id : ids) {
+                    if (enCours.size() >= fenetre) {
+                        consommateur.accepter(attendre(enCours.removeFirst()));
+                    }
+                    enCours.addLast(executor.submit(() -> rendre(id)));
+                }
+                curseur = ids.size() == TAILLE_PAGE ? ids.get(ids.size() - 1) : null;
+            } while (curseur != null);
+
+            while (!enCours.isEmpty()) {
+                consommateur.accepter(attendre(enCours.removeFirst()));
+            }
+        } finally {
+            // Client déconnecté ou erreur d'écriture : abandonner les rendus restants
+            enCours.forEach(rendu -> rendu.cancel(true));
+        }
+    }
+
+    /**
+     * Page d'ids (curseur sur l'id) : projection scalaire, le contexte de
+     * persistance de la requête (open-in-view) ne grossit pas avec l'export
+     */
+    private List<Long> pageIds(Long curseur, String statut, Long clientId, LocalDate du, LocalDate au) {
+        return factureRepository.findIds(FactureRepository.filtre(curseur, statut, clientId, du, au), TAILLE_PAGE);
+    }
+
+    private Rendu rendre(Long id) {
+        String nomFichier = "facture_" + id + ".pdf";
+        try {
+            TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+            transaction.setReadOnly(true);
+            Facture facture = transaction.execute(status -> factureRepository.findAvecLignesById(id)
+                    .orElseThrow(() -> new RuntimeException("Facture non trouvée avec l'id: " + id)));
+            nomFichier = "facture_" + facture.getNumeroFacture().replace("/", "-") + ".pdf";
+            return new Rendu(nomFichier, pdfCacheService.obtenir(facture), null);
+        } catch (RuntimeException e) {
+            return new Rendu(nomFichier, null, e.getMessage());
+        }
+    }
+
+    private static Rendu attendre(Future<Rendu> rendu) throws IOException {
+        try {
+            return rendu.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Export PDF interrompu", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Erreur export PDF", e.getCause());
+        }
+    }
+
+    // ==================== STRUCTURES INTERNES ====================
+
+    private record Rendu(String nomFichier, byte[] contenu, String erreur) {}
+
+    @FunctionalInterface
+    private interface Consommateur {
+        void accepter(Rendu rendu) throws IOException;
+    }
+}
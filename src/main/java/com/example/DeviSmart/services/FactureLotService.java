@@ -0,0 +1,245 @@
+package com.example.DeviSmart.services;
+
+import com.example.DeviSmart.dto.DemandeFacture;
+import com.example.DeviSmart.dto.RapportLot;
+import com.example.DeviSmart.dto.ResultatCreation;
+import com.example.DeviSmart.entities.Client;
+import com.example.DeviSmart.entities.Entreprise;
+import com.example.DeviSmart.entities.Facture;
+import com.example.DeviSmart.entities.LigneFacture;
+import com.example.DeviSmart.events.FactureModifieeEvent;
+import com.example.DeviSmart.events.FacturesModifieesEvent;
+import com.example.DeviSmart.repositories.ClientRepository;
+import io.micrometer.core.annotation.Timed;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Service FactureLot - Création groupée de factures (import des abonnements)
+ *
+ * Les demandes sont validées d'abord (clients lus en une requête), les numéros
+ * des demandes valides réservés en une seule plage, puis les factures insérées
+ * par paquets de hibernate.jdbc.batch_size, une transaction par paquet : les
+ * ids viennent de séquences (allocation par 50), les insertions partent donc
+ * en batch JDBC. Si un paquet échoue à l'écriture, ses demandes sont rejouées
+ * une par une pour isoler celles en erreur ; les autres sont créées.
+ *
+ * Chaque demande reçoit son résultat (facture créée ou message d'erreur),
+ * dans l'ordre d'envoi.
+ */
+@Service
+@Timed("devismart.service")
+public class FactureLotService {
+
+    public static final int TAILLE_MAX = 1000;
+
+    private static final Logger log = LoggerFactory.getLogger(FactureLotService.class);
+
+    @Autowired
+    private ClientRepository clientRepository;
+
+    @Autowired
+    private EntrepriseService entrepriseService;
+
+    @Autowired
+    private ApplicationEventPublisher evenements;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}")
+    private int taillePaquet;
+
+    /**
+     * Crée les factures demandées et rend compte de chacune
+     *
+     * @throws IllegalArgumentException si le lot est vide ou dépasse TAILLE_MAX
+     */
+    public RapportLot creerFactures(List<DemandeFacture> demandes) {
+        if (demandes == null || demandes.isEmpty() || demandes.size() > TAILLE_MAX) {
+            throw new IllegalArgumentException("Le lot doit contenir entre 1 et " + TAILLE_MAX + " factures");
+        }
+        ResultatCreation[] resultats = new ResultatCreation[demandes.size()];
+
+        // Validation : clients chargés en une requête, détachés ensuite (données copiées dans les factures)
+        Map<Long, Client> clients = chargerClients(demandes);
+        List<Integer> valides = new ArrayList<>();
+        for (int i = 0; i < demandes.size(); i++) {
+            String erreur = valider(demandes.get(i), clients);
+            if (erreur != null) {
+                resultats[i] = ResultatCreation.echec(i, reference(demandes.get(i)), erreur);
+            } else {
+                valides.add(i);
+            }
+        }
+
+        // Une seule réservation pour toutes les factures valides
+        List<String> numeros = entrepriseService.genererNumerosFacture(valides.size());
+        Entreprise entreprise = entrepriseService.getEntreprise();
+        List<Creation> creations = new ArrayList<>(valides.size());
+        for (int k = 0; k < valides.size(); k++) {
+            int index = valides.get(k);
+            DemandeFacture demande = demandes.get(index);
+            creations.add(new Creation(index, demande, numeros.get(k), clients.get(demande.clientId())));
+        }
+
+        int paquet = Math.max(1, taillePaquet);
+        for (int debut = 0; debut < creations.size(); debut += paquet) {
+            List<Creation> lot = creations.subList(debut, Math.min(debut + paquet, creations.size()));
+            try {
+                enregistrer(lot, entreprise, resultats);
+            } catch (RuntimeException e) {
+                log.warn("Paquet de {} factures en échec ({}), reprise facture par facture", lot.size(), e.getMessage());
+                for (Creation creation : lot) {
+                    try {
+                        enregistrer(List.of(creation), entreprise, resultats);
+                    } catch (RuntimeException erreur) {
+                        resultats[creation.index] = ResultatCreation.echec(creation.index,
+                                reference(creation.demande), message(erreur));
+                    }
+                }
+            }
+        }
+        return RapportLot.de(List.of(resultats));
+    }
+
+    /**
+     * Insère un paquet dans sa propre transaction ; les résultats ne sont
+     * renseignés qu'après validation
+     */
+    private void enregistrer(List<Creation> lot, Entreprise entreprise, ResultatCreation[] resultats) {
+        List<Facture> factures = new TransactionTemplate(transactionManager).execute(status -> {
+            List<Facture> creees = new ArrayList<>(lot.size());
+            List<FactureModifieeEvent> modifications = new ArrayList<>(lot.size());
+            for (Creation creation : lot) {
+                Facture facture = construire(creation, entreprise);
+                entityManager.persist(facture);
+                creees.add(facture);
+            }
+            entityManager.flush();
+            for (Facture facture : creees) {
+                modifications.add(new FactureModifieeEvent(null, FactureModifieeEvent.Etat.de(facture)));
+            }
+            evenements.publishEvent(new FacturesModifieesEvent(modifications));
+            entityManager.clear();
+            return creees;
+        });
+        for (int i = 0; i < lot.size(); i++) {
+            Creation creation = lot.get(i);
+            Facture facture = factures.get(i);
+            resultats[creation.index] = ResultatCreation.succes(creation.index, reference(creation.demande),
+                    facture.getId(), facture.getNumeroFacture());
+        }
+    }
+
+    /**
+     * Nouvelle facture à chaque tentative : les lignes reçues ne sont pas
+     * réutilisées, une tentative annulée leur aurait déjà attribué un id
+     */
+    private Facture construire(Creation creation, Entreprise entreprise) {
+        Facture facture = new Facture();
+        facture.setNumeroFacture(creation.numero);
+        facture.setDateEmission(LocalDate.now());
+        facture.setDateEcheance(LocalDate.now().plusDays(30));
+        facture.setStatut("NON_PAYEE");
+        facture.copierDonneesEntreprise(entreprise);
+        facture.copierDonneesClient(creation.client);
+        // Référence sans lecture : le client a déjà été chargé pour la validation
+        facture.setClient(entityManager.getReference(Client.class, creation.client.getId()));
+        facture.setConditionsPaiement(creation.demande.conditionsPaiement());
+        facture.setNotes(creation.demande.notes());
+
+        for (LigneFacture ligne : creation.demande.lignes()) {
+            facture.ajouterLigne(new LigneFacture(ligne.getDesignation(), ligne.getQuantite(), ligne.getPrixUnitaireHT()));
+        }
+        facture.recalculerTotaux();
+        return facture;
+    }
+
+    private Map<Long, Client> chargerClients(List<DemandeFacture> demandes) {
+        List<Long> ids = demandes.stream()
+                .filter(Objects::nonNull)
+                .map(DemandeFacture::clientId)
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList();
+        Map<Long, Client> clients = new HashMap<>();
+        if (!ids.isEmpty()) {
+            TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+            transaction.setReadOnly(true);
+            transaction.executeWithoutResult(status ->
+                    clientRepository.findAllById(ids).forEach(client -> clients.put(client.getId(), client)));
+        }
+        return clients;
+    }
+
+    /**
+     * Contrôles faits avant toute écriture, pour ne pas faire échouer un paquet entier
+     *
+     * @return Message d'erreur, ou null si la demande est valide
+     */
+    private String valider(DemandeFacture demande, Map<Long, Client> clients) {
+        if (demande == null) {
+            return "Demande vide";
+        }
+        if (demande.clientId() == null) {
+            return "clientId obligatoire";
+        }
+        if (!clients.containsKey(demande.clientId())) {
+            return "Client non trouvé avec l'id: " + demande.clientId();
+        }
+        if (demande.lignes() == null || demande.lignes().isEmpty()) {
+            return "Au moins une ligne est obligatoire";
+        }
+        for (int i = 0; i < demande.lignes().size(); i++) {
+            LigneFacture ligne = demande.lignes().get(i);
+            if (ligne == null || ligne.getDesignation() == null || ligne.getDesignation().isBlank()) {
+                return "Ligne " + (i + 1) + " : désignation obligatoire";
+            }
+            if (ligne.getQuantite() == null || ligne.getQuantite().signum() <= 0) {
+                return "Ligne " + (i + 1) + " : quantité invalide";
+            }
+            if (ligne.getPrixUnitaireHT() == null || ligne.getPrixUnitaireHT().compareTo(BigDecimal.ZERO) < 0) {
+                return "Ligne " + (i + 1) + " : prix unitaire invalide";
+            }
+        }
+        return null;
+    }
+
+    private static String reference(DemandeFacture demande) {
+        return demande != null ? demande.reference() : null;
+    }
+
+    private static String message(RuntimeException e) {
+        Throwable cause = e;
+        while (cause.getCause() != null && cause.getCause() != cause) {
+            cause = cause.getCause();
+        }
+        return cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName();
+    }
+
+    /**
+     * Demande valide avec son numéro réservé et son client
+     */
+    private record Creation(int index, DemandeFacture demande, String numero, Client client) {
+    }
+}
@@ -4,13 +4,18 @@ import com.example.DeviSmart.entities.Facture;
 import com.example.DeviSmart.entities.LigneFacture;
 import com.lowagie.text.*;
 import com.lowagie.text.pdf.*;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.awt.Color;
 import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
 import java.math.BigDecimal;
-import java.text.DecimalFormat;
-import java.time.format.DateTimeFormatter;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
 
 /**
  * Service de génération PDF pour les factures
@@ -21,40 +26,14 @@ import java.time.format.DateTimeFormatter;
 @Service
 public class FacturePdfService {
 
-    // Couleurs du thème
-    private static final Color PRIMARY_COLOR = new Color(220, 38, 38);    // #dc2626 - Rouge
-    private static final Color DARK_COLOR = new Color(15, 23, 42);        // #0f172a
-    private static final Color GRAY_COLOR = new Color(100, 116, 139);     // #64748b
-    private static final Color LIGHT_GRAY = new Color(241, 245, 249);     // #f1f5f9
-    private static final Color BORDER_COLOR = new Color(226, 232, 240);   // #e2e8f0
-
-    // Formatage
-    private static final DecimalFormat DECIMAL_FORMAT = new DecimalFormat("#,##0.000");
-    private static final DecimalFormat PERCENT_FORMAT = new DecimalFormat("0.00");
-    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd/MM/yyyy");
-
-    // Polices
-    private Font titleFont;
-    private Font headerFont;
-    private Font labelFont;
-    private Font valueFont;
-    private Font dataFont;
-    private Font totalFont;
-    private Font footerFont;
-
-    public FacturePdfService() {
-        initFonts();
-    }
+    // À incrémenter à chaque changement de mise en page : invalide les PDF en cache
+    public static final String VERSION_GABARIT = "1";
 
-    private void initFonts() {
-        titleFont = new Font(Font.HELVETICA, 24, Font.BOLD, PRIMARY_COLOR);
-        headerFont = new Font(Font.HELVETICA, 10, Font.BOLD, Color.WHITE);
-        labelFont = new Font(Font.HELVETICA, 10, Font.NORMAL, GRAY_COLOR);
-        valueFont = new Font(Font.HELVETICA, 10, Font.BOLD, DARK_COLOR);
-        dataFont = new Font(Font.HELVETICA, 10, Font.NORMAL, DARK_COLOR);
-        totalFont = new Font(Font.HELVETICA, 14, Font.BOLD, PRIMARY_COLOR);
-        footerFont = new Font(Font.HELVETICA, 8, Font.NORMAL, GRAY_COLOR);
-    }
+    // Nombre de lignes de tableau accumulées avant écriture dans le flux de sortie
+    static final int LIGNES_PAR_LOT = 50;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
 
     /**
      * Génère le PDF d'une facture
@@ -63,10 +42,26 @@ public class FacturePdfService {
      * @return Bytes du PDF généré
      */
     public byte[] generer(Facture facture) {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        generer(facture, baos);
+        return baos.toByteArray();
+    }
+
+    /**
+     * Génère le PDF d'une facture directement dans un flux (réponse HTTP, fichier)
+     *
+     * Les pages sont écrites au fil de la génération : la mémoire utilisée ne
+     * dépend pas du nombre de lignes. Le flux n'est pas fermé.
+     */
+    public void generer(Facture facture, OutputStream sortie) {
+        MesurePdf.mesurer(meterRegistry, MesurePdf.TYPE_FACTURE, sortie, flux -> rendre(facture, flux));
+    }
+
+    private void rendre(Facture facture, OutputStream sortie) {
         try {
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
             Document document = new Document(PageSize.A4, 50, 50, 50, 50);
-            PdfWriter.getInstance(document, baos);
+            PdfWriter writer = PdfWriter.getInstance(document, sortie);
+            writer.setCloseStream(false);
 
             document.open();
 
@@ -95,13 +90,68 @@ public class FacturePdfService {
             ajouterPiedDePage(document, facture);
 
             document.close();
-            return baos.toByteArray();
 
         } catch (Exception e) {
             throw new RuntimeException("Erreur génération PDF facture: " + e.getMessage(), e);
         }
     }
 
+    /**
+     * Empreinte SHA-256 de toutes les données affichées dans le PDF
+     *
+     * Deux factures de même empreinte produisent le même document : sert de
+     * clé au cache des PDF et d'ETag. Tout champ ajouté au rendu doit
+     * être ajouté ici.
+     */
+    public String empreinte(Facture facture) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            ajouterEmpreinte(digest, VERSION_GABARIT);
+            ajouterEmpreinte(digest, facture.getNumeroFacture());
+            ajouterEmpreinte(digest, facture.getDateEmission());
+            ajouterEmpreinte(digest, facture.getDateEcheance());
+            ajouterEmpreinte(digest, facture.getReferenceDevis());
+            ajouterEmpreinte(digest, facture.getStatut());
+            ajouterEmpreinte(digest, facture.getNomEntreprise());
+            ajouterEmpreinte(digest, facture.getAdresseEntreprise());
+            ajouterEmpreinte(digest, facture.getTelephoneEntreprise());
+            ajouterEmpreinte(digest, facture.getEmailEntreprise());
+            ajouterEmpreinte(digest, facture.getMatriculeFiscal());
+            ajouterEmpreinte(digest, facture.getRegistreCommerce());
+            ajouterEmpreinte(digest, facture.getNomClient());
+            ajouterEmpreinte(digest, facture.getAdresseClient());
+            ajouterEmpreinte(digest, facture.getTelephoneClient());
+            ajouterEmpreinte(digest, facture.getEmailClient());
+            ajouterEmpreinte(digest, facture.getMatriculeFiscalClient());
+            if (facture.getLignes() != null) {
+                for (LigneFacture ligne : facture.getLignes()) {
+                    ajouterEmpreinte(digest, ligne.getDesignation());
+                    ajouterEmpreinte(digest, ligne.getQuantite());
+                    ajouterEmpreinte(digest, ligne.getPrixUnitaireHT());
+                    ajouterEmpreinte(digest, ligne.getTotalLigneHT());
+                }
+            }
+            ajouterEmpreinte(digest, facture.getTotalHT());
+            ajouterEmpreinte(digest, facture.getTauxTVAPourcentage());
+            ajouterEmpreinte(digest, facture.getMontantTVA());
+            ajouterEmpreinte(digest, facture.getTotalTTC());
+            ajouterEmpreinte(digest, facture.getConditionsPaiement());
+            ajouterEmpreinte(digest, facture.getNotes());
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponible", e);
+        }
+    }
+
+    private void ajouterEmpreinte(MessageDigest digest, Object valeur) {
+        String texte = valeur instanceof BigDecimal montant
+                ? montant.stripTrailingZeros().toPlainString()
+                : String.valueOf(valeur);
+        digest.update(texte.getBytes(StandardCharsets.UTF_8));
+        // Séparateur : ("ab", "c") et ("a", "bc") ne donnent pas la même empreinte
+        digest.update((byte) 0x1F);
+    }
+
     // ==================== SECTIONS DU PDF ====================
 
     private void ajouterEntete(Document document, Facture facture) throws DocumentException {
@@ -109,7 +159,7 @@ public class FacturePdfService {
         table.setWidthPercentage(100);
 
         // Nom entreprise
-        PdfPCell nomCell = new PdfPCell(new Phrase(facture.getNomEntreprise(), titleFont));
+        PdfPCell nomCell = new PdfPCell(new Phrase(facture.getNomEntreprise(), PdfTheme.TITRE));
         nomCell.setBorder(Rectangle.NO_BORDER);
         nomCell.setPaddingBottom(10);
         table.addCell(nomCell);
@@ -132,7 +182,7 @@ public class FacturePdfService {
             coords.append("  |  RC: ").append(facture.getRegistreCommerce());
         }
 
-        PdfPCell coordsCell = new PdfPCell(new Phrase(coords.toString(), labelFont));
+        PdfPCell coordsCell = new PdfPCell(new Phrase(coords.toString(), PdfTheme.LIBELLE));
         coordsCell.setBorder(Rectangle.NO_BORDER);
         coordsCell.setPaddingBottom(15);
         table.addCell(coordsCell);
@@ -149,13 +199,13 @@ public class FacturePdfService {
         table.setSpacingBefore(15);
 
         // Titre "FACTURE"
-        Font bigTitleFont = new Font(Font.HELVETICA, 28, Font.BOLD, DARK_COLOR);
+        Font bigTitleFont = PdfTheme.TITRE_DOCUMENT;
         PdfPCell titleCell = new PdfPCell(new Phrase("FACTURE", bigTitleFont));
         titleCell.setBorder(Rectangle.NO_BORDER);
         table.addCell(titleCell);
 
         // Numéro
-        Font numFont = new Font(Font.HELVETICA, 14, Font.BOLD, PRIMARY_COLOR);
+        Font numFont = PdfTheme.ACCENT;
         Paragraph numPara = new Paragraph("N° " + facture.getNumeroFacture(), numFont);
         numPara.setAlignment(Element.ALIGN_RIGHT);
         PdfPCell numCell = new PdfPCell(numPara);
@@ -174,11 +224,11 @@ public class FacturePdfService {
         table.setSpacingBefore(15);
 
         // Date d'émission
-        ajouterLigneInfo(table, "Date d'émission:", facture.getDateEmission().format(DATE_FORMAT));
+        ajouterLigneInfo(table, "Date d'émission:", facture.getDateEmission().format(PdfTheme.DATE));
 
         // Date d'échéance
         if (facture.getDateEcheance() != null) {
-            ajouterLigneInfo(table, "Date d'échéance:", facture.getDateEcheance().format(DATE_FORMAT));
+            ajouterLigneInfo(table, "Date d'échéance:", facture.getDateEcheance().format(PdfTheme.DATE));
         }
 
         // Référence devis
@@ -196,7 +246,7 @@ public class FacturePdfService {
         document.add(new Paragraph("\n"));
 
         // Titre section
-        Font sectionFont = new Font(Font.HELVETICA, 12, Font.BOLD, DARK_COLOR);
+        Font sectionFont = PdfTheme.SECTION;
         document.add(new Paragraph("CLIENT", sectionFont));
 
         // Cadre client
@@ -206,11 +256,11 @@ public class FacturePdfService {
         table.setSpacingBefore(5);
 
         // Nom client
-        Font clientNameFont = new Font(Font.HELVETICA, 11, Font.BOLD, DARK_COLOR);
+        Font clientNameFont = PdfTheme.SOUS_TITRE;
         PdfPCell nameCell = new PdfPCell(new Phrase(facture.getNomClient(), clientNameFont));
-        nameCell.setBackgroundColor(LIGHT_GRAY);
+        nameCell.setBackgroundColor(PdfTheme.GRIS_CLAIR);
         nameCell.setPadding(10);
-        nameCell.setBorderColor(BORDER_COLOR);
+        nameCell.setBorderColor(PdfTheme.BORDURE);
         table.addCell(nameCell);
 
         // Détails client
@@ -228,11 +278,11 @@ public class FacturePdfService {
             details.append("MF: ").append(facture.getMatriculeFiscalClient());
         }
 
-        PdfPCell detailsCell = new PdfPCell(new Phrase(details.toString(), dataFont));
-        detailsCell.setBackgroundColor(LIGHT_GRAY);
+        PdfPCell detailsCell = new PdfPCell(new Phrase(details.toString(), PdfTheme.DONNEE));
+        detailsCell.setBackgroundColor(PdfTheme.GRIS_CLAIR);
         detailsCell.setPadding(10);
         detailsCell.setPaddingTop(0);
-        detailsCell.setBorderColor(BORDER_COLOR);
+        detailsCell.setBorderColor(PdfTheme.BORDURE);
         table.addCell(detailsCell);
 
         document.add(table);
@@ -244,12 +294,16 @@ public class FacturePdfService {
         PdfPTable table = new PdfPTable(4);
         table.setWidthPercentage(100);
         table.setWidths(new float[]{4, 1, 1.5f, 1.5f});
+        // Tableau ajouté par lots : les lignes déjà placées sont libérées,
+        // l'en-tête est répété sur chaque page
+        table.setHeaderRows(1);
+        table.setComplete(false);
 
         // En-têtes
         String[] headers = {"DÉSIGNATION", "QTÉ", "P.U. HT", "TOTAL HT"};
         for (String header : headers) {
-            PdfPCell cell = new PdfPCell(new Phrase(header, headerFont));
-            cell.setBackgroundColor(DARK_COLOR);
+            PdfPCell cell = new PdfPCell(new Phrase(header, PdfTheme.EN_TETE_TABLEAU));
+            cell.setBackgroundColor(PdfTheme.SOMBRE);
             cell.setPadding(10);
             cell.setHorizontalAlignment(header.equals("DÉSIGNATION") ? Element.ALIGN_LEFT : Element.ALIGN_RIGHT);
             table.addCell(cell);
@@ -257,45 +311,51 @@ public class FacturePdfService {
 
         // Lignes de données
         boolean alternate = false;
+        int lignesEnAttente = 0;
         if (facture.getLignes() != null) {
             for (LigneFacture ligne : facture.getLignes()) {
-                Color bgColor = alternate ? LIGHT_GRAY : Color.WHITE;
+                Color bgColor = alternate ? PdfTheme.GRIS_CLAIR : Color.WHITE;
 
                 // Désignation
-                PdfPCell cell = new PdfPCell(new Phrase(ligne.getDesignation(), dataFont));
+                PdfPCell cell = new PdfPCell(new Phrase(ligne.getDesignation(), PdfTheme.DONNEE));
                 cell.setBackgroundColor(bgColor);
                 cell.setPadding(8);
-                cell.setBorderColor(BORDER_COLOR);
+                cell.setBorderColor(PdfTheme.BORDURE);
                 table.addCell(cell);
 
                 // Quantité
-                cell = new PdfPCell(new Phrase(formatDecimal(ligne.getQuantite()), dataFont));
+                cell = new PdfPCell(new Phrase(formatDecimal(ligne.getQuantite()), PdfTheme.DONNEE));
                 cell.setBackgroundColor(bgColor);
                 cell.setPadding(8);
                 cell.setHorizontalAlignment(Element.ALIGN_RIGHT);
-                cell.setBorderColor(BORDER_COLOR);
+                cell.setBorderColor(PdfTheme.BORDURE);
                 table.addCell(cell);
 
                 // Prix unitaire
-                cell = new PdfPCell(new Phrase(formatMontant(ligne.getPrixUnitaireHT()), dataFont));
+                cell = new PdfPCell(new Phrase(formatMontant(ligne.getPrixUnitaireHT()), PdfTheme.DONNEE));
                 cell.setBackgroundColor(bgColor);
                 cell.setPadding(8);
                 cell.setHorizontalAlignment(Element.ALIGN_RIGHT);
-                cell.setBorderColor(BORDER_COLOR);
+                cell.setBorderColor(PdfTheme.BORDURE);
                 table.addCell(cell);
 
                 // Total ligne
-                cell = new PdfPCell(new Phrase(formatMontant(ligne.getTotalLigneHT()), dataFont));
+                cell = new PdfPCell(new Phrase(formatMontant(ligne.getTotalLigneHT()), PdfTheme.DONNEE));
                 cell.setBackgroundColor(bgColor);
                 cell.setPadding(8);
                 cell.setHorizontalAlignment(Element.ALIGN_RIGHT);
-                cell.setBorderColor(BORDER_COLOR);
+                cell.setBorderColor(PdfTheme.BORDURE);
                 table.addCell(cell);
 
                 alternate = !alternate;
+                if (++lignesEnAttente == LIGNES_PAR_LOT) {
+                    document.add(table);
+                    lignesEnAttente = 0;
+                }
             }
         }
 
+        table.setComplete(true);
         document.add(table);
     }
 
@@ -310,22 +370,22 @@ public class FacturePdfService {
         ajouterLigneTotaux(table, "Total HT", formatMontant(facture.getTotalHT()), false);
 
         // TVA
-        String tauxLabel = "TVA (" + PERCENT_FORMAT.format(facture.getTauxTVAPourcentage()) + "%)";
+        String tauxLabel = "TVA (" + FormateurMontant.POURCENTAGE.formater(facture.getTauxTVAPourcentage()) + "%)";
         ajouterLigneTotaux(table, tauxLabel, formatMontant(facture.getMontantTVA()), false);
 
         // Total TTC (mis en évidence)
-        PdfPCell labelCell = new PdfPCell(new Phrase("TOTAL TTC", totalFont));
-        labelCell.setBackgroundColor(LIGHT_GRAY);
+        PdfPCell labelCell = new PdfPCell(new Phrase("TOTAL TTC", PdfTheme.ACCENT));
+        labelCell.setBackgroundColor(PdfTheme.GRIS_CLAIR);
         labelCell.setPadding(12);
-        labelCell.setBorderColor(PRIMARY_COLOR);
+        labelCell.setBorderColor(PdfTheme.PRIMAIRE);
         labelCell.setBorderWidth(2);
         table.addCell(labelCell);
 
-        PdfPCell valueCell = new PdfPCell(new Phrase(formatMontant(facture.getTotalTTC()), totalFont));
-        valueCell.setBackgroundColor(LIGHT_GRAY);
+        PdfPCell valueCell = new PdfPCell(new Phrase(formatMontant(facture.getTotalTTC()), PdfTheme.ACCENT));
+        valueCell.setBackgroundColor(PdfTheme.GRIS_CLAIR);
         valueCell.setPadding(12);
         valueCell.setHorizontalAlignment(Element.ALIGN_RIGHT);
-        valueCell.setBorderColor(PRIMARY_COLOR);
+        valueCell.setBorderColor(PdfTheme.PRIMAIRE);
         valueCell.setBorderWidth(2);
         table.addCell(valueCell);
 
@@ -336,21 +396,21 @@ public class FacturePdfService {
         document.add(new Paragraph("\n\n"));
 
         if (facture.getConditionsPaiement() != null && !facture.getConditionsPaiement().isEmpty()) {
-            Font condTitleFont = new Font(Font.HELVETICA, 11, Font.BOLD, DARK_COLOR);
+            Font condTitleFont = PdfTheme.SOUS_TITRE;
             document.add(new Paragraph("CONDITIONS DE PAIEMENT", condTitleFont));
 
-            Paragraph condPara = new Paragraph(facture.getConditionsPaiement(), labelFont);
+            Paragraph condPara = new Paragraph(facture.getConditionsPaiement(), PdfTheme.LIBELLE);
             condPara.setSpacingBefore(5);
             document.add(condPara);
         }
 
         if (facture.getNotes() != null && !facture.getNotes().isEmpty()) {
-            Font notesTitleFont = new Font(Font.HELVETICA, 11, Font.BOLD, DARK_COLOR);
+            Font notesTitleFont = PdfTheme.SOUS_TITRE;
             Paragraph notesTitre = new Paragraph("NOTES", notesTitleFont);
             notesTitre.setSpacingBefore(10);
             document.add(notesTitre);
 
-            Paragraph notesPara = new Paragraph(facture.getNotes(), labelFont);
+            Paragraph notesPara = new Paragraph(facture.getNotes(), PdfTheme.LIBELLE);
             notesPara.setSpacingBefore(5);
             document.add(notesPara);
         }
@@ -372,7 +432,7 @@ public class FacturePdfService {
         }
         mentions.append("\nDocument généré par DeviSmart");
 
-        footer.add(new Chunk(mentions.toString(), footerFont));
+        footer.add(new Chunk(mentions.toString(), PdfTheme.PIED));
         document.add(footer);
     }
 
@@ -382,7 +442,7 @@ public class FacturePdfService {
         PdfPTable sep = new PdfPTable(1);
         sep.setWidthPercentage(100);
         PdfPCell cell = new PdfPCell();
-        cell.setBorderColor(PRIMARY_COLOR);
+        cell.setBorderColor(PdfTheme.PRIMAIRE);
         cell.setBorderWidth(2);
         cell.setBorder(Rectangle.BOTTOM);
         cell.setPaddingBottom(5);
@@ -391,36 +451,36 @@ public class FacturePdfService {
     }
 
     private void ajouterLigneInfo(PdfPTable table, String label, String value) {
-        PdfPCell labelCell = new PdfPCell(new Phrase(label, labelFont));
+        PdfPCell labelCell = new PdfPCell(new Phrase(label, PdfTheme.LIBELLE));
         labelCell.setBorder(Rectangle.NO_BORDER);
         labelCell.setPaddingBottom(5);
         table.addCell(labelCell);
 
-        PdfPCell valueCell = new PdfPCell(new Phrase(value, valueFont));
+        PdfPCell valueCell = new PdfPCell(new Phrase(value, PdfTheme.VALEUR));
         valueCell.setBorder(Rectangle.NO_BORDER);
         valueCell.setPaddingBottom(5);
         table.addCell(valueCell);
     }
 
     private void ajouterLigneTotaux(PdfPTable table, String label, String value, boolean highlight) {
-        Font lFont = highlight ? totalFont : valueFont;
-        Font vFont = highlight ? totalFont : valueFont;
+        Font lFont = highlight ? PdfTheme.ACCENT : PdfTheme.VALEUR;
+        Font vFont = highlight ? PdfTheme.ACCENT : PdfTheme.VALEUR;
 
         PdfPCell labelCell = new PdfPCell(new Phrase(label, lFont));
         labelCell.setPadding(8);
-        labelCell.setBorderColor(BORDER_COLOR);
+        labelCell.setBorderColor(PdfTheme.BORDURE);
         table.addCell(labelCell);
 
         PdfPCell valueCell = new PdfPCell(new Phrase(value, vFont));
         valueCell.setPadding(8);
         valueCell.setHorizontalAlignment(Element.ALIGN_RIGHT);
-        valueCell.setBorderColor(BORDER_COLOR);
+        valueCell.setBorderColor(PdfTheme.BORDURE);
         table.addCell(valueCell);
     }
 
     private String formatMontant(BigDecimal montant) {
         if (montant == null) return "0,000 TND";
-        return DECIMAL_FORMAT.format(montant) + " TND";
+        return FormateurMontant.MONTANT.formater(montant) + " TND";
     }
 
     private String formatDecimal(BigDecimal value) {
@@ -1,15 +1,27 @@
 package com.example.DeviSmart.services;
 
+import com.example.DeviSmart.dto.FactureDetail;
+import com.example.DeviSmart.dto.FactureResume;
+import com.example.DeviSmart.dto.PageCurseur;
+import com.example.DeviSmart.dto.StatistiqueClient;
+import com.example.DeviSmart.dto.StatistiqueMensuelle;
+import com.example.DeviSmart.dto.StatistiqueStatut;
 import com.example.DeviSmart.entities.*;
+import com.example.DeviSmart.events.FactureModifieeEvent;
 import com.example.DeviSmart.repositories.FactureRepository;
 import com.example.DeviSmart.repositories.ClientRepository;
+import io.micrometer.core.annotation.Timed;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -19,6 +31,7 @@ import java.util.Optional;
  * Garantit la cohérence des données et l'immutabilité des documents légaux.
  */
 @Service
+@Timed("devismart.service")
 @Transactional
 public class FactureService {
 
@@ -31,26 +44,78 @@ public class FactureService {
     @Autowired
     private EntrepriseService entrepriseService;
 
+    @Autowired
+    private ResumeFacturesService resumeFacturesService;
+
+    @Autowired
+    private ApplicationEventPublisher evenements;
+
+    @Autowired
+    private RepriseOptimisteService repriseOptimiste;
+
     // ==================== LECTURE ====================
+    // Transactions en lecture seule : pas de vérification des modifications (dirty checking)
+    // ni de flush, et aucune copie d'état conservée pour les entités chargées
 
-    public List<Facture> findAll() {
-        return factureRepository.findAll();
+    /**
+     * Toutes les factures en vue détaillée : l'interface édite et imprime
+     * depuis la liste, les lignes sont donc incluses (chargées par lots)
+     */
+    @Transactional(readOnly = true)
+    public List<FactureDetail> findAll() {
+        return factureRepository.findAll().stream().map(FactureDetail::de).toList();
     }
 
+    /**
+     * Facture avec son client et ses lignes, chargés en une requête
+     * (entité, pour le rendu PDF et les traitements internes)
+     */
+    @Transactional(readOnly = true)
     public Optional<Facture> findById(Long id) {
-        return factureRepository.findById(id);
+        return factureRepository.findDetailById(id);
+    }
+
+    /**
+     * Vue détaillée d'une facture, construite avant la fin de la transaction
+     */
+    @Transactional(readOnly = true)
+    public Optional<FactureDetail> findDetail(Long id) {
+        return factureRepository.findDetailById(id).map(FactureDetail::de);
+    }
+
+    @Transactional(readOnly = true)
+    public List<FactureResume> findByClientId(Long clientId) {
+        return factureRepository.findResumesByClientId(clientId);
+    }
+
+    @Transactional(readOnly = true)
+    public List<FactureResume> findByStatut(String statut) {
+        return factureRepository.findResumesByStatut(statut);
     }
 
-    public List<Facture> findByClientId(Long clientId) {
-        return factureRepository.findByClientId(clientId);
+    @Transactional(readOnly = true)
+    public Optional<FactureDetail> findByNumero(String numeroFacture) {
+        return factureRepository.findByNumeroFacture(numeroFacture).map(FactureDetail::de);
     }
 
-    public List<Facture> findByStatut(String statut) {
-        return factureRepository.findByStatut(statut);
+    /**
+     * Facture créée à la validation d'un devis, s'il y en a une
+     */
+    @Transactional(readOnly = true)
+    public Optional<Facture> findByReferenceDevis(String numeroDevis) {
+        return factureRepository.findByReferenceDevis(numeroDevis);
     }
 
-    public Optional<Facture> findByNumero(String numeroFacture) {
-        return factureRepository.findByNumeroFacture(numeroFacture);
+    /**
+     * Page de factures (les plus récentes d'abord), filtrée et parcourue par curseur
+     */
+    @Transactional(readOnly = true)
+    public PageCurseur<FactureResume> findPage(Long curseur, Integer taille, String statut,
+                                               Long clientId, LocalDate du, LocalDate au) {
+        int limite = PageCurseur.borner(taille);
+        List<FactureResume> factures = factureRepository.findResumes(
+                FactureRepository.filtre(curseur, statut, clientId, du, au), limite + 1);
+        return PageCurseur.de(factures, limite, FactureResume::id);
     }
 
     // ==================== CRÉATION ====================
@@ -85,6 +150,7 @@ public class FactureService {
         // Ajouter les lignes
         if (lignes != null) {
             for (LigneFacture ligne : lignes) {
+                verifierLigne(ligne);
                 ligne.calculerTotal(); // S'assurer que chaque ligne est calculée
                 facture.ajouterLigne(ligne);
             }
@@ -93,7 +159,7 @@ public class FactureService {
         // Calculer les totaux
         facture.recalculerTotaux();
         
-        return factureRepository.save(facture);
+        return enregistrer(facture, null);
     }
 
     /**
@@ -123,8 +189,8 @@ public class FactureService {
             for (Ligne ligneDevis : devis.getLignes()) {
                 LigneFacture ligneFacture = new LigneFacture();
                 ligneFacture.setDesignation(ligneDevis.getDesignation());
-                ligneFacture.setQuantite(BigDecimal.valueOf(ligneDevis.getQuantite()));
-                ligneFacture.setPrixUnitaireHT(BigDecimal.valueOf(ligneDevis.getPrixUnitaire()));
+                ligneFacture.setQuantite(ligneDevis.getQuantite());
+                ligneFacture.setPrixUnitaireHT(ligneDevis.getPrixUnitaire());
                 ligneFacture.calculerTotal();
                 facture.ajouterLigne(ligneFacture);
             }
@@ -133,7 +199,7 @@ public class FactureService {
         // Calculer les totaux
         facture.recalculerTotaux();
         
-        return factureRepository.save(facture);
+        return enregistrer(facture, null);
     }
 
     /**
@@ -183,6 +249,7 @@ public class FactureService {
         // Ajouter les lignes
         if (lignes != null) {
             for (LigneFacture ligne : lignes) {
+                verifierLigne(ligne);
                 ligne.calculerTotal();
                 facture.ajouterLigne(ligne);
             }
@@ -191,42 +258,59 @@ public class FactureService {
         // Calculer les totaux
         facture.recalculerTotaux();
         
-        return factureRepository.save(facture);
+        return enregistrer(facture, null);
     }
 
     // ==================== MODIFICATION ====================
+    // versionAttendue : version lue par le client (If-Match), null pour ne pas la vérifier.
+    // Toute modification concurrente est de toute façon détectée par @Version au commit.
 
     /**
      * Met à jour le statut d'une facture
      */
-    public Facture mettreAJourStatut(Long factureId, String nouveauStatut) {
+    public Facture mettreAJourStatut(Long factureId, String nouveauStatut, Long versionAttendue) {
         Facture facture = factureRepository.findById(factureId)
                 .orElseThrow(() -> new RuntimeException("Facture non trouvée avec l'id: " + factureId));
+        verifierVersion(facture, versionAttendue);
+        FactureModifieeEvent.Etat avant = FactureModifieeEvent.Etat.de(facture);
         
         facture.setStatut(nouveauStatut);
-        return factureRepository.save(facture);
+        return enregistrer(facture, avant);
     }
 
     /**
      * Ajoute une ligne à une facture existante et recalcule les totaux
+     *
+     * Opération commutative : en cas d'édition concurrente de la facture, elle
+     * est rejouée sur l'état relu (sauf si une version est attendue)
      */
-    public Facture ajouterLigne(Long factureId, LigneFacture nouvelleLigne) {
-        Facture facture = factureRepository.findById(factureId)
-                .orElseThrow(() -> new RuntimeException("Facture non trouvée avec l'id: " + factureId));
-        
-        nouvelleLigne.calculerTotal();
-        facture.ajouterLigne(nouvelleLigne);
-        facture.recalculerTotaux();
-        
-        return factureRepository.save(facture);
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public Facture ajouterLigne(Long factureId, LigneFacture nouvelleLigne, Long versionAttendue) {
+        verifierLigne(nouvelleLigne);
+        return repriseOptimiste.executer("facture.ajouterLigne", versionAttendue == null, () -> {
+            Facture facture = chargerPourModification(factureId, versionAttendue);
+            FactureModifieeEvent.Etat avant = FactureModifieeEvent.Etat.de(facture);
+
+            // Nouvelle ligne à chaque tentative : une tentative annulée a déjà attribué un id à la précédente
+            LigneFacture ligne = new LigneFacture(nouvelleLigne.getDesignation(),
+                    nouvelleLigne.getQuantite(), nouvelleLigne.getPrixUnitaireHT());
+            facture.ajouterLigne(ligne);
+            facture.recalculerTotaux();
+
+            Facture enregistree = enregistrer(facture, avant);
+            // Conflit détecté ici, dans la tentative, plutôt qu'au commit
+            factureRepository.flush();
+            return enregistree;
+        });
     }
 
     /**
      * Met à jour une ligne existante et recalcule les totaux
      */
-    public Facture mettreAJourLigne(Long factureId, Long ligneId, LigneFacture ligneModifiee) {
-        Facture facture = factureRepository.findById(factureId)
-                .orElseThrow(() -> new RuntimeException("Facture non trouvée avec l'id: " + factureId));
+    public Facture mettreAJourLigne(Long factureId, Long ligneId, LigneFacture ligneModifiee, Long versionAttendue) {
+        verifierLigne(ligneModifiee);
+        Facture facture = chargerPourModification(factureId, versionAttendue);
+        FactureModifieeEvent.Etat avant = FactureModifieeEvent.Etat.de(facture);
         
         facture.getLignes().stream()
                 .filter(l -> l.getId().equals(ligneId))
@@ -240,44 +324,49 @@ public class FactureService {
         
         facture.recalculerTotaux();
         
-        return factureRepository.save(facture);
+        return enregistrer(facture, avant);
     }
 
     /**
      * Supprime une ligne et recalcule les totaux
      */
-    public Facture supprimerLigne(Long factureId, Long ligneId) {
-        Facture facture = factureRepository.findById(factureId)
-                .orElseThrow(() -> new RuntimeException("Facture non trouvée avec l'id: " + factureId));
+    public Facture supprimerLigne(Long factureId, Long ligneId, Long versionAttendue) {
+        Facture facture = chargerPourModification(factureId, versionAttendue);
+        FactureModifieeEvent.Etat avant = FactureModifieeEvent.Etat.de(facture);
         
         facture.getLignes().removeIf(l -> l.getId().equals(ligneId));
         facture.recalculerTotaux();
         
-        return factureRepository.save(facture);
+        return enregistrer(facture, avant);
     }
 
     // ==================== STATUTS ====================
 
-    public Facture marquerPayee(Long factureId) {
-        return mettreAJourStatut(factureId, "PAYEE");
+    public Facture marquerPayee(Long factureId, Long versionAttendue) {
+        return mettreAJourStatut(factureId, "PAYEE", versionAttendue);
     }
 
-    public Facture marquerNonPayee(Long factureId) {
-        return mettreAJourStatut(factureId, "NON_PAYEE");
+    public Facture marquerNonPayee(Long factureId, Long versionAttendue) {
+        return mettreAJourStatut(factureId, "NON_PAYEE", versionAttendue);
     }
 
-    public Facture marquerEnRetard(Long factureId) {
-        return mettreAJourStatut(factureId, "EN_RETARD");
+    public Facture marquerEnRetard(Long factureId, Long versionAttendue) {
+        return mettreAJourStatut(factureId, "EN_RETARD", versionAttendue);
     }
 
-    public Facture annuler(Long factureId) {
-        return mettreAJourStatut(factureId, "ANNULEE");
+    public Facture annuler(Long factureId, Long versionAttendue) {
+        return mettreAJourStatut(factureId, "ANNULEE", versionAttendue);
     }
 
     // ==================== SUPPRESSION ====================
 
-    public void delete(Long id) {
-        factureRepository.deleteById(id);
+    public void delete(Long id, Long versionAttendue) {
+        factureRepository.findById(id).ifPresent(facture -> {
+            verifierVersion(facture, versionAttendue);
+            FactureModifieeEvent.Etat avant = FactureModifieeEvent.Etat.de(facture);
+            factureRepository.delete(facture);
+            evenements.publishEvent(new FactureModifieeEvent(avant, null));
+        });
     }
 
     // ==================== CALCULS MÉTIER (centralisés) ====================
@@ -286,9 +375,11 @@ public class FactureService {
      * Recalcule tous les totaux d'une facture
      * Cette méthode est le point central de tous les calculs
      */
-    public Facture recalculerTotaux(Long factureId) {
+    public Facture recalculerTotaux(Long factureId, Long versionAttendue) {
         Facture facture = factureRepository.findById(factureId)
                 .orElseThrow(() -> new RuntimeException("Facture non trouvée avec l'id: " + factureId));
+        verifierVersion(facture, versionAttendue);
+        FactureModifieeEvent.Etat avant = FactureModifieeEvent.Etat.de(facture);
         
         // Recalculer chaque ligne
         for (LigneFacture ligne : facture.getLignes()) {
@@ -298,12 +389,13 @@ public class FactureService {
         // Recalculer les totaux de la facture
         facture.recalculerTotaux();
         
-        return factureRepository.save(facture);
+        return enregistrer(facture, avant);
     }
 
     /**
      * Retourne le total HT d'une facture
      */
+    @Transactional(readOnly = true)
     public BigDecimal getTotalHT(Long factureId) {
         Facture facture = factureRepository.findById(factureId)
                 .orElseThrow(() -> new RuntimeException("Facture non trouvée"));
@@ -313,6 +405,7 @@ public class FactureService {
     /**
      * Retourne le total TTC d'une facture
      */
+    @Transactional(readOnly = true)
     public BigDecimal getTotalTTC(Long factureId) {
         Facture facture = factureRepository.findById(factureId)
                 .orElseThrow(() -> new RuntimeException("Facture non trouvée"));
@@ -325,33 +418,107 @@ public class FactureService {
      * Calcule le chiffre d'affaires total (factures payées)
      */
     public BigDecimal getChiffreAffaires() {
-        return factureRepository.findByStatut("PAYEE").stream()
-                .map(Facture::getTotalTTC)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        return sommeParStatut("PAYEE");
     }
 
     /**
      * Calcule le montant total des factures en attente
      */
     public BigDecimal getMontantEnAttente() {
-        return factureRepository.findByStatut("NON_PAYEE").stream()
-                .map(Facture::getTotalTTC)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        return sommeParStatut("NON_PAYEE");
     }
 
     /**
      * Calcule le montant total des factures en retard
      */
     public BigDecimal getMontantEnRetard() {
-        return factureRepository.findByStatut("EN_RETARD").stream()
-                .map(Facture::getTotalTTC)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        return sommeParStatut("EN_RETARD");
+    }
+
+    /**
+     * Nombre et montant TTC des factures par statut (agrégats maintenus)
+     */
+    @Transactional(readOnly = true)
+    public Map<String, StatistiqueStatut> getStatistiquesParStatut() {
+        return resumeFacturesService.parStatut();
+    }
+
+    /**
+     * Nombre et montant TTC par mois d'émission et par statut pour une année
+     */
+    @Transactional(readOnly = true)
+    public List<StatistiqueMensuelle> getStatistiquesMensuelles(int annee) {
+        return resumeFacturesService.mensuelles(annee);
+    }
+
+    /**
+     * Nombre et montant TTC par client et par statut
+     */
+    @Transactional(readOnly = true)
+    public List<StatistiqueClient> getStatistiquesParClient() {
+        return resumeFacturesService.parClient();
+    }
+
+    /**
+     * Recalcule les agrégats statistiques depuis la table des factures
+     */
+    public Map<String, StatistiqueStatut> reconstruireStatistiques() {
+        resumeFacturesService.reconstruire();
+        return resumeFacturesService.parStatut();
+    }
+
+    private BigDecimal sommeParStatut(String statut) {
+        StatistiqueStatut statistique = resumeFacturesService.parStatut().get(statut);
+        return statistique != null ? statistique.montant() : BigDecimal.ZERO;
+    }
+
+    /**
+     * Facture dont les lignes vont être modifiées : sa version est incrémentée
+     * au commit même si seule une ligne change, ce qui rend les éditions de
+     * lignes concurrentes détectables
+     */
+    private Facture chargerPourModification(Long factureId, Long versionAttendue) {
+        Facture facture = factureRepository.findPourModificationById(factureId)
+                .orElseThrow(() -> new RuntimeException("Facture non trouvée avec l'id: " + factureId));
+        verifierVersion(facture, versionAttendue);
+        return facture;
+    }
+
+    /**
+     * Quantité et prix unitaire obligatoires : LigneFacture les accepte null
+     * (désérialisation JSON), la colonne non
+     */
+    private static void verifierLigne(LigneFacture ligne) {
+        if (ligne == null || ligne.getQuantite() == null || ligne.getPrixUnitaireHT() == null) {
+            throw new IllegalArgumentException("Ligne de facture invalide : quantité et prix unitaire obligatoires");
+        }
+    }
+
+    /**
+     * Précondition If-Match : même exception qu'un conflit détecté au commit
+     */
+    private static void verifierVersion(Facture facture, Long versionAttendue) {
+        if (versionAttendue != null && !versionAttendue.equals(facture.getVersion())) {
+            throw new ObjectOptimisticLockingFailureException(Facture.class, facture.getId());
+        }
+    }
+
+    /**
+     * Enregistre la facture et publie l'événement de modification
+     * (mise à jour des agrégats dans la même transaction)
+     */
+    private Facture enregistrer(Facture facture, FactureModifieeEvent.Etat avant) {
+        Facture enregistree = factureRepository.save(facture);
+        evenements.publishEvent(new FactureModifieeEvent(avant, FactureModifieeEvent.Etat.de(enregistree)));
+        return enregistree;
     }
 
     // ==================== COMPATIBILITÉ (deprecated) ====================
 
     @Deprecated
     public Facture save(Facture facture) {
+        FactureModifieeEvent.Etat avant = facture.getId() == null ? null
+                : factureRepository.findById(facture.getId()).map(FactureModifieeEvent.Etat::de).orElse(null);
         if (facture.getNumeroFacture() == null || facture.getNumeroFacture().isEmpty()) {
             facture.setNumeroFacture(entrepriseService.genererNumeroFacture());
         }
@@ -376,18 +543,20 @@ public class FactureService {
         // Recalculer les totaux
         facture.recalculerTotaux();
         
-        return factureRepository.save(facture);
+        return enregistrer(facture, avant);
     }
 
     @Deprecated
-    public Facture update(Long id, Facture factureDetails) {
+    public Facture update(Long id, Facture factureDetails, Long versionAttendue) {
         Facture facture = factureRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Facture non trouvée avec l'id: " + id));
+        verifierVersion(facture, versionAttendue);
+        FactureModifieeEvent.Etat avant = FactureModifieeEvent.Etat.de(facture);
         
         facture.setStatut(factureDetails.getStatut());
         facture.recalculerTotaux();
         
-        return factureRepository.save(facture);
+        return enregistrer(facture, avant);
     }
 
     @Deprecated
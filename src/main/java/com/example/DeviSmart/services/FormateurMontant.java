@@ -0,0 +1,119 @@
+package com.example.DeviSmart.services;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+
+/**
+ * Formatage des montants et pourcentages des PDF, sans verrou
+ *
+ * Remplace les DecimalFormat statiques partagés (non thread-safe). Une instance
+ * est immuable : elle peut être utilisée par tous les rendus en parallèle.
+ * Même résultat que DecimalFormat("#,##0.000") (arrondi HALF_EVEN, séparateurs
+ * de la locale), à une différence près : une valeur négative arrondie à zéro
+ * s'affiche "0,000" et non "-0,000".
+ *
+ * Le calcul se fait sur un entier (ex: millimes pour 3 décimales) dans un
+ * tampon de caractères : une seule chaîne allouée par appel.
+ */
+public final class FormateurMontant {
+
+    // Montants en dinars : 3 décimales, séparateur de milliers
+    public static final FormateurMontant MONTANT = new FormateurMontant(3, true);
+
+    // Taux de TVA : 2 décimales, sans séparateur
+    public static final FormateurMontant POURCENTAGE = new FormateurMontant(2, false);
+
+    private static final int TAILLE_TAMPON = 48;
+
+    private final int decimales;
+    private final boolean groupement;
+    private final Locale locale;
+    private final char separateurDecimal;
+    private final char separateurMilliers;
+    private final char signeMoins;
+
+    public FormateurMontant(int decimales, boolean groupement) {
+        this(decimales, groupement, Locale.getDefault(Locale.Category.FORMAT));
+    }
+
+    public FormateurMontant(int decimales, boolean groupement, Locale locale) {
+        if (decimales < 0 || decimales > 18) {
+            throw new IllegalArgumentException("Nombre de décimales invalide: " + decimales);
+        }
+        DecimalFormatSymbols symboles = DecimalFormatSymbols.getInstance(locale);
+        this.decimales = decimales;
+        this.groupement = groupement;
+        this.locale = locale;
+        this.separateurDecimal = symboles.getDecimalSeparator();
+        this.separateurMilliers = symboles.getGroupingSeparator();
+        this.signeMoins = symboles.getMinusSign();
+    }
+
+    public String formater(BigDecimal valeur) {
+        BigDecimal arrondi = valeur.setScale(decimales, RoundingMode.HALF_EVEN);
+        if (arrondi.precision() > 18) {
+            // Au-delà d'un long : cas hors métier, formatage classique
+            return motifEquivalent().format(arrondi);
+        }
+        return formaterUnites(arrondi.unscaledValue().longValue());
+    }
+
+    /**
+     * Formate la valeur binaire exacte du double, comme DecimalFormat
+     */
+    public String formater(double valeur) {
+        if (Double.isNaN(valeur) || Double.isInfinite(valeur)) {
+            return motifEquivalent().format(valeur);
+        }
+        return formater(new BigDecimal(valeur));
+    }
+
+    /**
+     * Formate un nombre entier de plus petites unités (millimes pour 3 décimales)
+     * Ex: 1234567 => "1 234,567"
+     */
+    public String formaterUnites(long unites) {
+        char[] tampon = new char[TAILLE_TAMPON];
+        int position = TAILLE_TAMPON;
+        // Calcul sur la valeur négative : Long.MIN_VALUE n'a pas d'opposé
+        long reste = unites < 0 ? unites : -unites;
+
+        for (int i = 0; i < decimales; i++) {
+            tampon[--position] = (char) ('0' - reste % 10);
+            reste /= 10;
+        }
+        if (decimales > 0) {
+            tampon[--position] = separateurDecimal;
+        }
+
+        int chiffresDuGroupe = 0;
+        do {
+            if (groupement && chiffresDuGroupe == 3) {
+                tampon[--position] = separateurMilliers;
+                chiffresDuGroupe = 0;
+            }
+            tampon[--position] = (char) ('0' - reste % 10);
+            reste /= 10;
+            chiffresDuGroupe++;
+        } while (reste != 0);
+
+        if (unites < 0) {
+            tampon[--position] = signeMoins;
+        }
+        return new String(tampon, position, TAILLE_TAMPON - position);
+    }
+
+    /**
+     * DecimalFormat équivalent, créé à la demande (jamais partagé)
+     */
+    DecimalFormat motifEquivalent() {
+        StringBuilder motif = new StringBuilder(groupement ? "#,##0" : "0");
+        if (decimales > 0) {
+            motif.append('.').append("0".repeat(decimales));
+        }
+        return new DecimalFormat(motif.toString(), DecimalFormatSymbols.getInstance(locale));
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.DeviSmart.services;
+
+import com.example.DeviSmart.entities.CleIdempotence;
+import com.example.DeviSmart.repositories.CleIdempotenceRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Service Idempotence - Requêtes rejouables sans effet en double (en-tête Idempotency-Key)
+ *
+ * La clé est réservée en base avant l'exécution, dans une transaction courte :
+ * une requête identique arrivant pendant l'exécution reçoit 409 (à réessayer),
+ * une requête rejouée après coup reçoit la réponse d'origine sans rien
+ * exécuter (ni facture ni numéro consommé). La même clé avec une autre
+ * requête est refusée (422).
+ *
+ * Seules les réponses 2xx sont enregistrées : après une erreur, la clé est
+ * libérée et la requête peut être réessayée. Les clés expirent après
+ * devismart.idempotence.duree-heures et leur nombre est borné
+ * (devismart.idempotence.max-cles), les plus anciennes étant supprimées.
+ */
+@Service
+public class IdempotenceService {
+
+    public static final String EN_TETE = "Idempotency-Key";
+    public static final String EN_TETE_REJOUEE = "Idempotent-Replayed";
+
+    private static final Logger log = LoggerFactory.getLogger(IdempotenceService.class);
+    private static final int LONGUEUR_MAX_CLE = 255;
+    // Réservation jamais complétée (arrêt pendant l'exécution) : libérée après ce délai
+    private static final long ABANDON_MINUTES = 10;
+
+    @Autowired
+    private CleIdempotenceRepository repository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JsonMapper jsonMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${devismart.idempotence.duree-heures:24}")
+    private long dureeHeures;
+
+    @Value("${devismart.idempotence.max-cles:100000}")
+    private long maxCles;
+
+    /**
+     * Exécute l'action une seule fois par clé
+     *
+     * @param operation Portée de la clé (ex: facture.creer)
+     * @param cle Valeur de l'en-tête Idempotency-Key ; null : exécution directe
+     * @param requete Paramètres de la requête, pour détecter une clé réutilisée
+     */
+    public ResponseEntity<?> executer(String operation, String cle, Object requete,
+                                      Supplier<ResponseEntity<?>> action) {
+        if (cle == null || cle.isBlank()) {
+            return action.get();
+        }
+        if (cle.length() > LONGUEUR_MAX_CLE) {
+            return ResponseEntity.badRequest().build();
+        }
+        String empreinte = empreinte(requete);
+
+        Long id;
+        try {
+            id = nouvelleTransaction().execute(status ->
+                    repository.saveAndFlush(new CleIdempotence(operation, cle, empreinte)).getId());
+        } catch (DataIntegrityViolationException e) {
+            return rejouer(operation, cle, empreinte);
+        }
+
+        ResponseEntity<?> reponse;
+        try {
+            reponse = action.get();
+        } catch (RuntimeException e) {
+            liberer(id);
+            throw e;
+        }
+        if (!reponse.getStatusCode().is2xxSuccessful()) {
+            liberer(id);
+            compter(operation, "echec");
+            return reponse;
+        }
+        try {
+            String corps = reponse.getBody() != null ? jsonMapper.writeValueAsString(reponse.getBody()) : null;
+            nouvelleTransaction().executeWithoutResult(status ->
+                    repository.terminer(id, reponse.getStatusCode().value(), corps));
+        } catch (RuntimeException e) {
+            // L'action a réussi : sa réponse est envoyée, seul un rejeu pourra l'exécuter à nouveau
+            log.warn("Réponse non enregistrée pour la clé {} ({}) : {}", cle, operation, e.getMessage());
+            liberer(id);
+        }
+        compter(operation, "executee");
+        return reponse;
+    }
+
+    /**
+     * Supprime les clés expirées, les réservations abandonnées et les clés
+     * les plus anciennes au-delà du nombre maximal
+     */
+    @Scheduled(fixedDelayString = "${devismart.idempotence.purge-ms:600000}")
+    public void purger() {
+        LocalDateTime maintenant = LocalDateTime.now();
+        nouvelleTransaction().executeWithoutResult(status -> {
+            int supprimees = repository.purger(maintenant.minusHours(dureeHeures), maintenant.minusMinutes(ABANDON_MINUTES));
+            Long dernier = repository.findDernierId();
+            if (dernier != null && dernier > maxCles) {
+                supprimees += repository.supprimerJusqua(dernier - maxCles);
+            }
+            if (supprimees > 0) {
+                log.debug("{} clés d'idempotence supprimées", supprimees);
+            }
+        });
+    }
+
+    private ResponseEntity<?> rejouer(String operation, String cle, String empreinte) {
+        TransactionTemplate lecture = nouvelleTransaction();
+        lecture.setReadOnly(true);
+        Optional<CleIdempotence> existante = lecture.execute(status -> repository.findByOperationAndCle(operation, cle));
+        if (existante.isPresent() && !existante.get().getEmpreinte().equals(empreinte)) {
+            compter(operation, "refusee");
+            // 422 : même clé, requête différente
+            return ResponseEntity.status(422).build();
+        }
+        if (existante.isEmpty() || !"TERMINEE".equals(existante.get().getStatut())) {
+            // Exécution en cours (ou clé libérée à l'instant) : le client réessaiera
+            compter(operation, "conflit");
+            return ResponseEntity.status(HttpStatus.CONFLICT).header("Retry-After", "1").build();
+        }
+        compter(operation, "rejouee");
+        CleIdempotence enregistree = existante.get();
+        return ResponseEntity.status(enregistree.getCodeHttp())
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(EN_TETE_REJOUEE, "true")
+                .body(enregistree.getReponse());
+    }
+
+    private void liberer(Long id) {
+        try {
+            nouvelleTransaction().executeWithoutResult(status -> repository.supprimer(id));
+        } catch (RuntimeException e) {
+            // La réservation expirera avec la purge
+            log.warn("Clé d'idempotence {} non libérée : {}", id, e.getMessage());
+        }
+    }
+
+    private String empreinte(Object requete) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(sha256.digest(jsonMapper.writeValueAsBytes(requete)));
+        } catch (NoSuchAlgorithmException | JacksonException e) {
+            throw new IllegalStateException("Empreinte de requête impossible", e);
+        }
+    }
+
+    private void compter(String operation, String resultat) {
+        meterRegistry.counter("devismart.idempotence.requetes", "operation", operation, "resultat", resultat).increment();
+    }
+
+    private TransactionTemplate nouvelleTransaction() {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        return transaction;
+    }
+}
@@ -0,0 +1,635 @@
+package com.example.DeviSmart.services;
+
+import com.example.DeviSmart.entities.Client;
+import com.example.DeviSmart.entities.Devis;
+import com.example.DeviSmart.entities.Entreprise;
+import com.example.DeviSmart.entities.Facture;
+import com.example.DeviSmart.entities.ImportDonnees;
+import com.example.DeviSmart.entities.Ligne;
+import com.example.DeviSmart.entities.LigneFacture;
+import com.example.DeviSmart.events.FactureModifieeEvent;
+import com.example.DeviSmart.events.FacturesModifieesEvent;
+import com.example.DeviSmart.repositories.ClientRepository;
+import com.example.DeviSmart.repositories.DevisRepository;
+import com.example.DeviSmart.repositories.FactureRepository;
+import com.example.DeviSmart.repositories.ImportDonneesRepository;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.Year;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Service Import - Reprise de données (clients, devis, factures) depuis un fichier CSV ou JSONL
+ *
+ * Le fichier est lu document par document (SourceImport) et écrit par paquets
+ * de devismart.import.taille-paquet documents, une transaction par paquet :
+ * clients et numéros existants vérifiés en une requête par paquet, insertions
+ * en batch JDBC, puis flush/clear du contexte de persistance. La mémoire
+ * utilisée ne dépend donc pas de la taille du fichier.
+ *
+ * Le point de reprise est validé avec chaque paquet : un import interrompu
+ * (ECHOUE) reprend en renvoyant le même fichier avec son id. Les documents
+ * rejetés sont écrits dans le rapport d'erreurs ({id}-erreurs.csv) sans
+ * interrompre l'import.
+ */
+@Service
+@Timed("devismart.service")
+public class ImportService {
+
+    public static final String TYPE_CLIENTS = "CLIENTS";
+    public static final String TYPE_DEVIS = "DEVIS";
+    public static final String TYPE_FACTURES = "FACTURES";
+
+    private static final Set<String> STATUTS_FACTURE = Set.of("NON_PAYEE", "PAYEE", "EN_RETARD", "ANNULEE");
+    private static final Set<String> STATUTS_DEVIS = Set.of("BROUILLON", "ENVOYÉ", "VALIDÉ", "REFUSÉ");
+    private static final BigDecimal CENT = BigDecimal.valueOf(100);
+
+    private static final Logger log = LoggerFactory.getLogger(ImportService.class);
+
+    @Autowired
+    private ImportDonneesRepository importRepository;
+
+    @Autowired
+    private ClientRepository clientRepository;
+
+    @Autowired
+    private FactureRepository factureRepository;
+
+    @Autowired
+    private DevisRepository devisRepository;
+
+    @Autowired
+    private EntrepriseService entrepriseService;
+
+    @Autowired
+    private ApplicationEventPublisher evenements;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private JsonMapper jsonMapper;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${devismart.import.taille-paquet:500}")
+    private int taillePaquet;
+
+    @Value("${devismart.import.longueur-max-enregistrement:1048576}")
+    private int longueurMaxEnregistrement;
+
+    @Value("${devismart.import.repertoire:${java.io.tmpdir}/devismart-imports}")
+    private String repertoire;
+
+    /**
+     * Importe un fichier, ou reprend un import interrompu
+     *
+     * @param type CLIENTS, DEVIS ou FACTURES
+     * @param format CSV ou JSONL (null : déduit de l'extension du fichier)
+     * @param reprise Id d'un import à reprendre avec le même fichier (null : nouvel import)
+     * @return Suivi de l'import en fin de traitement
+     * @throws IllegalArgumentException si le type ou le format est inconnu
+     */
+    public ImportDonnees importer(String type, String format, char separateur, String nomFichier,
+                                  InputStream contenu, Long reprise) {
+        String typeImport = type(type);
+        String formatImport = format(format, nomFichier);
+        ImportDonnees suivi = reprise != null
+                ? reprendre(reprise, typeImport)
+                : importRepository.save(new ImportDonnees(typeImport, formatImport, nomFichier));
+        if ("TERMINE".equals(suivi.getStatut())) {
+            return suivi;
+        }
+        Long importId = suivi.getId();
+        long pointReprise = suivi.getDernierEnregistrement();
+
+        try (SourceImport source = SourceImport.ouvrir(contenu, formatImport, separateur,
+                cleRegroupement(typeImport), jsonMapper, longueurMaxEnregistrement);
+             BufferedWriter rapport = ouvrirRapport(importId, reprise != null)) {
+            List<SourceImport.Document> paquet = new ArrayList<>(taillePaquet);
+            SourceImport.Document document;
+            while ((document = source.suivant()) != null) {
+                if (document.dernier() <= pointReprise) {
+                    continue;
+                }
+                paquet.add(document);
+                if (paquet.size() >= Math.max(1, taillePaquet)) {
+                    ecrirePaquet(importId, typeImport, paquet, rapport);
+                    paquet.clear();
+                }
+            }
+            if (!paquet.isEmpty()) {
+                ecrirePaquet(importId, typeImport, paquet, rapport);
+            }
+            terminer(importId, "TERMINE", null);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Import {} interrompu : {}", importId, e.getMessage());
+            terminer(importId, "ECHOUE", message(e));
+        }
+        return importRepository.findById(importId)
+                .orElseThrow(() -> new RuntimeException("Import non trouvé avec l'id: " + importId));
+    }
+
+    public Optional<ImportDonnees> findById(Long id) {
+        return importRepository.findById(id);
+    }
+
+    /**
+     * Rapport des documents rejetés (CSV : enregistrements, erreur, contenu)
+     */
+    public Path fichierErreurs(Long importId) {
+        return Paths.get(repertoire).resolve(importId + "-erreurs.csv");
+    }
+
+    // ==================== PAQUETS ====================
+
+    /**
+     * Écrit un paquet et avance le point de reprise dans la même transaction.
+     * Les rejets sont écrits et vidés sur disque avant la validation : un arrêt
+     * juste après le commit ne peut plus les perdre. Si la validation échoue,
+     * le paquet est rejoué à la reprise et ses rejets peuvent figurer deux fois.
+     *
+     * Un paquet refusé par la base (colonne trop longue, contrainte violée...)
+     * est repris document par document, chacun dans sa transaction : seul le
+     * document fautif est rejeté, au lieu de bloquer l'import sur ce paquet.
+     */
+    private void ecrirePaquet(Long importId, String type, List<SourceImport.Document> paquet, Writer rapport) {
+        try {
+            enregistrerPaquet(importId, type, paquet, rapport);
+        } catch (UncheckedIOException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            entityManager.clear();
+            if (paquet.size() == 1) {
+                rejeter(importId, type, paquet.get(0), message(e), rapport);
+                return;
+            }
+            log.warn("Import {} : paquet de {} documents en échec ({}), reprise document par document",
+                    importId, paquet.size(), message(e));
+            for (SourceImport.Document document : paquet) {
+                ecrirePaquet(importId, type, List.of(document), rapport);
+            }
+        }
+    }
+
+    private void enregistrerPaquet(Long importId, String type, List<SourceImport.Document> paquet, Writer rapport) {
+        List<Rejet> rejets = new ArrayList<>();
+        long dernier = paquet.get(paquet.size() - 1).dernier();
+        Integer importes = new TransactionTemplate(transactionManager).execute(status -> {
+            int nombre = switch (type) {
+                case TYPE_CLIENTS -> importerClients(paquet, rejets);
+                case TYPE_DEVIS -> importerDevis(paquet, rejets);
+                default -> importerFactures(paquet, rejets);
+            };
+            entityManager.flush();
+            ecrireRejets(rejets, rapport);
+            importRepository.avancer(importId, dernier, nombre, rejets.size());
+            entityManager.clear();
+            return nombre;
+        });
+
+        meterRegistry.counter("devismart.import.documents", "type", type, "resultat", "importe").increment(importes);
+        meterRegistry.counter("devismart.import.documents", "type", type, "resultat", "rejete").increment(rejets.size());
+    }
+
+    /**
+     * Rejette un document refusé par la base et avance le point de reprise au-delà
+     */
+    private void rejeter(Long importId, String type, SourceImport.Document document, String erreur, Writer rapport) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            ecrireRejets(List.of(new Rejet(document, erreur)), rapport);
+            importRepository.avancer(importId, document.dernier(), 0, 1);
+        });
+        meterRegistry.counter("devismart.import.documents", "type", type, "resultat", "rejete").increment();
+    }
+
+    private void ecrireRejets(List<Rejet> rejets, Writer rapport) {
+        try {
+            for (Rejet rejet : rejets) {
+                rapport.write(csv(rejet.premier() == rejet.dernier() ? String.valueOf(rejet.premier()) : rejet.premier() + "-" + rejet.dernier()));
+                rapport.write(',');
+                rapport.write(csv(rejet.erreur()));
+                rapport.write(',');
+                rapport.write(csv(rejet.brut()));
+                rapport.write('\n');
+            }
+            rapport.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private int importerClients(List<SourceImport.Document> paquet, List<Rejet> rejets) {
+        Set<String> emails = valeurs(paquet, "email");
+        Set<String> existants = new HashSet<>();
+        if (!emails.isEmpty()) {
+            clientRepository.findByEmailIn(emails).forEach(client -> existants.add(client.getEmail()));
+        }
+        int importes = 0;
+        for (SourceImport.Document document : paquet) {
+            try {
+                lisible(document);
+                Map<String, String> champs = document.champs();
+                String email = champs.get("email");
+                if (email != null && !existants.add(email)) {
+                    throw new IllegalArgumentException("Client déjà existant avec l'email: " + email);
+                }
+                entityManager.persist(new Client(obligatoire(champs, "nom"), email, champs.get("telephone"),
+                        champs.get("adresse"), champs.get("matriculeFiscal")));
+                importes++;
+            } catch (IllegalArgumentException e) {
+                rejets.add(new Rejet(document, e.getMessage()));
+            }
+        }
+        return importes;
+    }
+
+    private int importerFactures(List<SourceImport.Document> paquet, List<Rejet> rejets) {
+        Map<String, Client> clients = clients(valeurs(paquet, "clientEmail"));
+        Set<String> numeros = valeurs(paquet, "numeroFacture");
+        Set<String> existants = numeros.isEmpty() ? new HashSet<>() : new HashSet<>(factureRepository.findNumerosExistants(numeros));
+        Set<String> references = valeurs(paquet, "referenceDevis");
+        Set<String> referencesFacturees = references.isEmpty() ? new HashSet<>()
+                : new HashSet<>(factureRepository.findReferencesDevisExistantes(references));
+        Entreprise entreprise = entrepriseService.getEntreprise();
+
+        List<Facture> factures = new ArrayList<>();
+        for (SourceImport.Document document : paquet) {
+            try {
+                lisible(document);
+                factures.add(facture(document, clients, existants, referencesFacturees, entreprise));
+            } catch (IllegalArgumentException e) {
+                rejets.add(new Rejet(document, e.getMessage()));
+            }
+        }
+
+        List<Facture> sansNumero = factures.stream().filter(f -> f.getNumeroFacture() == null).toList();
+        List<String> attribues = entrepriseService.genererNumerosFacture(sansNumero.size());
+        for (int i = 0; i < sansNumero.size(); i++) {
+            sansNumero.get(i).setNumeroFacture(attribues.get(i));
+        }
+        factures.forEach(entityManager::persist);
+        entityManager.flush();
+
+        List<FactureModifieeEvent> modifications = new ArrayList<>(factures.size());
+        for (Facture facture : factures) {
+            modifications.add(new FactureModifieeEvent(null, FactureModifieeEvent.Etat.de(facture)));
+        }
+        if (!modifications.isEmpty()) {
+            evenements.publishEvent(new FacturesModifieesEvent(modifications));
+        }
+        return factures.size();
+    }
+
+    private int importerDevis(List<SourceImport.Document> paquet, List<Rejet> rejets) {
+        Map<String, Client> clients = clients(valeurs(paquet, "clientEmail"));
+        Set<String> numeros = valeurs(paquet, "numero");
+        Set<String> existants = numeros.isEmpty() ? new HashSet<>() : new HashSet<>(devisRepository.findNumerosExistants(numeros));
+        double tauxTVA = entrepriseService.getTauxTVA();
+
+        List<Devis> devis = new ArrayList<>();
+        for (SourceImport.Document document : paquet) {
+            try {
+                lisible(document);
+                devis.add(devis(document, clients, existants, tauxTVA));
+            } catch (IllegalArgumentException e) {
+                rejets.add(new Rejet(document, e.getMessage()));
+            }
+        }
+
+        List<Devis> sansNumero = devis.stream().filter(d -> d.getNumero() == null).toList();
+        List<String> attribues = entrepriseService.genererNumerosDevis(sansNumero.size());
+        for (int i = 0; i < sansNumero.size(); i++) {
+            sansNumero.get(i).setNumero(attribues.get(i));
+        }
+        devis.forEach(entityManager::persist);
+        return devis.size();
+    }
+
+    // ==================== CONVERSION ====================
+
+    private Facture facture(SourceImport.Document document, Map<String, Client> clients,
+                            Set<String> existants, Set<String> referencesFacturees, Entreprise entreprise) {
+        Map<String, String> champs = document.champs();
+        Facture facture = new Facture();
+        facture.setNumeroFacture(numeroLibre(champs.get("numeroFacture"), NumerotationService.PREFIXE_FACTURE, existants));
+        facture.setDateEmission(date(champs, "dateEmission", LocalDate.now()));
+        facture.setDateEcheance(date(champs, "dateEcheance", facture.getDateEmission().plusDays(30)));
+        facture.setStatut(statut(champs, "NON_PAYEE", STATUTS_FACTURE));
+        String referenceDevis = champs.get("referenceDevis");
+        if (referenceDevis != null && !referencesFacturees.add(referenceDevis)) {
+            throw new IllegalArgumentException("Devis déjà facturé: " + referenceDevis);
+        }
+        facture.setReferenceDevis(referenceDevis);
+        facture.copierDonneesEntreprise(entreprise);
+
+        // Client enregistré retrouvé par son email ; sinon facture à client saisi (nomClient obligatoire)
+        String email = champs.get("clientEmail");
+        Client client = email != null ? clients.get(email) : null;
+        if (client != null) {
+            facture.copierDonneesClient(client);
+        } else {
+            facture.setNomClient(obligatoire(champs, "nomClient"));
+            facture.setEmailClient(email);
+        }
+        if (champs.containsKey("nomClient")) {
+            facture.setNomClient(champs.get("nomClient"));
+        }
+        if (champs.containsKey("adresseClient")) {
+            facture.setAdresseClient(champs.get("adresseClient"));
+        }
+        if (champs.containsKey("telephoneClient")) {
+            facture.setTelephoneClient(champs.get("telephoneClient"));
+        }
+        if (champs.containsKey("matriculeFiscalClient")) {
+            facture.setMatriculeFiscalClient(champs.get("matriculeFiscalClient"));
+        }
+
+        BigDecimal tauxTVA = tauxTVA(champs);
+        if (tauxTVA != null) {
+            // Facture : taux stocké en fraction (19 => 0.19)
+            facture.setTauxTVA(tauxTVA.movePointLeft(2));
+        }
+        facture.setConditionsPaiement(champs.get("conditionsPaiement"));
+        facture.setNotes(champs.get("notes"));
+
+        for (Map<String, String> ligne : document.lignes()) {
+            if (ligne.containsKey("designation")) {
+                facture.ajouterLigne(new LigneFacture(ligne.get("designation"),
+                        decimal(ligne, "quantite", BigDecimal.ONE),
+                        decimal(ligne, "prixUnitaireHT", null, "prixUnitaireHT obligatoire")));
+            }
+        }
+        if (facture.getLignes().isEmpty()) {
+            throw new IllegalArgumentException("Au moins une ligne (designation, quantite, prixUnitaireHT) est obligatoire");
+        }
+        facture.recalculerTotaux();
+        return facture;
+    }
+
+    private Devis devis(SourceImport.Document document, Map<String, Client> clients,
+                        Set<String> existants, double tauxTVA) {
+        Map<String, String> champs = document.champs();
+        LocalDate dateCreation = date(champs, "dateCreation", LocalDate.now());
+        Devis devis = new Devis(numeroLibre(champs.get("numero"), NumerotationService.PREFIXE_DEVIS, existants),
+                dateCreation, date(champs, "dateValidite", dateCreation.plusDays(30)),
+                statut(champs, "BROUILLON", STATUTS_DEVIS), null);
+
+        // Client enregistré retrouvé par son email ; sinon devis à client saisi (clientNom obligatoire)
+        String email = champs.get("clientEmail");
+        devis.setClient(email != null ? clients.get(email) : null);
+        devis.setClientNom(champs.get("clientNom"));
+        devis.setClientEmail(email);
+        devis.setClientTelephone(champs.get("clientTelephone"));
+        devis.setClientAdresse(champs.get("clientAdresse"));
+        if (devis.getClient() == null && devis.getClientNom() == null) {
+            throw new IllegalArgumentException("clientNom obligatoire (aucun client avec cet email)");
+        }
+        BigDecimal taux = tauxTVA(champs);
+        devis.setTauxTVA(taux != null ? taux : BigDecimal.valueOf(tauxTVA));
+
+        for (Map<String, String> champsLigne : document.lignes()) {
+            if (champsLigne.containsKey("designation")) {
+                BigDecimal quantite = decimal(champsLigne, "quantite", BigDecimal.ONE);
+                BigDecimal prix = decimal(champsLigne, "prixUnitaire", null, "prixUnitaire obligatoire");
+                Ligne ligne = new Ligne(champsLigne.get("designation"), quantite, prix);
+                ligne.setDevis(devis);
+                devis.getLignes().add(ligne);
+            }
+        }
+        devis.recalculerTotaux();
+        return devis;
+    }
+
+    /**
+     * Numéro fourni par le fichier : unique, et hors de la série de l'année en
+     * cours (réservée à la numérotation automatique, sous peine de collision)
+     */
+    private static String numeroLibre(String numero, String prefixe, Set<String> existants) {
+        if (numero == null) {
+            return null;
+        }
+        if (numero.startsWith(prefixe + "-" + Year.now().getValue() + "-")) {
+            throw new IllegalArgumentException("Numéro " + numero + " réservé à la numérotation automatique (série en cours)");
+        }
+        if (!existants.add(numero)) {
+            throw new IllegalArgumentException("Numéro déjà existant: " + numero);
+        }
+        return numero;
+    }
+
+    private Map<String, Client> clients(Set<String> emails) {
+        Map<String, Client> clients = new HashMap<>();
+        if (!emails.isEmpty()) {
+            clientRepository.findByEmailIn(emails).forEach(client -> clients.putIfAbsent(client.getEmail(), client));
+        }
+        return clients;
+    }
+
+    // ==================== CHAMPS ====================
+
+    private static void lisible(SourceImport.Document document) {
+        if (document.erreur() != null) {
+            throw new IllegalArgumentException(document.erreur());
+        }
+    }
+
+    private static Set<String> valeurs(List<SourceImport.Document> paquet, String champ) {
+        Set<String> valeurs = new HashSet<>();
+        for (SourceImport.Document document : paquet) {
+            String valeur = document.champs().get(champ);
+            if (valeur != null) {
+                valeurs.add(valeur);
+            }
+        }
+        return valeurs;
+    }
+
+    private static String obligatoire(Map<String, String> champs, String nom) {
+        String valeur = champs.get(nom);
+        if (valeur == null) {
+            throw new IllegalArgumentException(nom + " obligatoire");
+        }
+        return valeur;
+    }
+
+    private static LocalDate date(Map<String, String> champs, String nom, LocalDate defaut) {
+        String valeur = champs.get(nom);
+        try {
+            return valeur != null ? LocalDate.parse(valeur) : defaut;
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException(nom + " : date AAAA-MM-JJ attendue, lu '" + valeur + "'");
+        }
+    }
+
+    private static BigDecimal decimal(Map<String, String> champs, String nom, BigDecimal defaut, String absent) {
+        BigDecimal valeur = decimal(champs, nom, defaut);
+        if (valeur == null) {
+            throw new IllegalArgumentException(absent);
+        }
+        return valeur;
+    }
+
+    private static BigDecimal decimal(Map<String, String> champs, String nom, BigDecimal defaut) {
+        String valeur = champs.get(nom);
+        try {
+            return valeur != null ? new BigDecimal(valeur.replace(',', '.')) : defaut;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(nom + " : nombre attendu, lu '" + valeur + "'");
+        }
+    }
+
+    /**
+     * Taux de TVA du fichier, toujours en pourcentage (19 pour 19 %, 0.5 pour
+     * 0,5 %), null s'il est absent ; hors de [0, 100] le document est rejeté
+     */
+    private static BigDecimal tauxTVA(Map<String, String> champs) {
+        BigDecimal taux = decimal(champs, "tauxTVA", null);
+        if (taux != null && (taux.signum() < 0 || taux.compareTo(CENT) > 0)) {
+            throw new IllegalArgumentException("tauxTVA : pourcentage entre 0 et 100 attendu, lu " + taux.toPlainString());
+        }
+        return taux;
+    }
+
+    private static String statut(Map<String, String> champs, String defaut, Set<String> autorises) {
+        String statut = champs.getOrDefault("statut", defaut).toUpperCase(Locale.ROOT);
+        if (!autorises.contains(statut)) {
+            throw new IllegalArgumentException("Statut inconnu: " + statut + " (attendu : " + autorises + ")");
+        }
+        return statut;
+    }
+
+    // ==================== SUIVI ====================
+
+    private ImportDonnees reprendre(Long id, String type) {
+        ImportDonnees suivi = importRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Import non trouvé avec l'id: " + id));
+        if (!suivi.getType().equals(type)) {
+            throw new IllegalArgumentException("L'import " + id + " porte sur " + suivi.getType() + ", pas " + type);
+        }
+        if (!"TERMINE".equals(suivi.getStatut())) {
+            suivi.setStatut("EN_COURS");
+            suivi.setMessage(null);
+            suivi.setDateFin(null);
+            suivi = importRepository.save(suivi);
+        }
+        return suivi;
+    }
+
+    private void terminer(Long importId, String statut, String message) {
+        importRepository.findById(importId).ifPresent(suivi -> {
+            suivi.setStatut(statut);
+            suivi.setMessage(message);
+            suivi.setDateFin(LocalDateTime.now());
+            importRepository.save(suivi);
+        });
+    }
+
+    /**
+     * Rapport complété en reprise ; remis à zéro pour un nouvel import (un
+     * fichier laissé par une base précédente peut porter le même id)
+     */
+    private BufferedWriter ouvrirRapport(Long importId, boolean reprise) throws IOException {
+        Path fichier = fichierErreurs(importId);
+        Files.createDirectories(fichier.getParent());
+        boolean nouveau = !reprise || Files.notExists(fichier);
+        BufferedWriter rapport = Files.newBufferedWriter(fichier, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE,
+                nouveau ? StandardOpenOption.TRUNCATE_EXISTING : StandardOpenOption.APPEND);
+        if (nouveau) {
+            rapport.write("enregistrements,erreur,contenu\n");
+        }
+        return rapport;
+    }
+
+    private static String type(String type) {
+        String normalise = type != null ? type.toUpperCase(Locale.ROOT) : "";
+        if (!Set.of(TYPE_CLIENTS, TYPE_DEVIS, TYPE_FACTURES).contains(normalise)) {
+            throw new IllegalArgumentException("Type d'import inconnu: " + type);
+        }
+        return normalise;
+    }
+
+    private static String format(String format, String nomFichier) {
+        if (format == null) {
+            String nom = nomFichier != null ? nomFichier.toLowerCase(Locale.ROOT) : "";
+            return nom.endsWith(".jsonl") || nom.endsWith(".ndjson") ? SourceImport.JSONL : SourceImport.CSV;
+        }
+        String normalise = format.toUpperCase(Locale.ROOT);
+        if (!normalise.equals(SourceImport.CSV) && !normalise.equals(SourceImport.JSONL)) {
+            throw new IllegalArgumentException("Format d'import inconnu: " + format);
+        }
+        return normalise;
+    }
+
+    // Colonne CSV regroupant les lignes d'un même document
+    private static String cleRegroupement(String type) {
+        return switch (type) {
+            case TYPE_FACTURES -> "numeroFacture";
+            case TYPE_DEVIS -> "numero";
+            default -> null;
+        };
+    }
+
+    private static String csv(String valeur) {
+        if (valeur == null) {
+            return "";
+        }
+        return "\"" + valeur.replace("\"", "\"\"") + "\"";
+    }
+
+    private static String message(Exception e) {
+        Throwable cause = e;
+        while (cause.getCause() != null && cause.getCause() != cause) {
+            cause = cause.getCause();
+        }
+        String message = cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName();
+        return message.length() > 2000 ? message.substring(0, 2000) : message;
+    }
+
+    /**
+     * Document rejeté, avec sa position dans le fichier
+     */
+    private record Rejet(long premier, long dernier, String erreur, String brut) {
+        Rejet(SourceImport.Document document, String erreur) {
+            this(document.premier(), document.dernier(), erreur, document.brut());
+        }
+    }
+}
@@ -1,9 +1,16 @@
 package com.example.DeviSmart.services;
 
+import com.example.DeviSmart.dto.PageCurseur;
+import com.example.DeviSmart.entities.Devis;
 import com.example.DeviSmart.entities.Ligne;
 import com.example.DeviSmart.repositories.LigneRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.PersistenceContext;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Optional;
@@ -14,10 +21,24 @@ public class LigneService {
     @Autowired
     private LigneRepository ligneRepository;
 
+    @PersistenceContext
+    private EntityManager entityManager;
+
     public List<Ligne> findAll() {
         return ligneRepository.findAll();
     }
 
+    /**
+     * Page de lignes (les plus récentes d'abord), éventuellement limitée à un devis
+     */
+    public PageCurseur<Ligne> findPage(Long curseur, Integer taille, Long devisId) {
+        int limite = PageCurseur.borner(taille);
+        List<Ligne> lignes = ligneRepository.findBy(
+                LigneRepository.filtre(curseur, devisId),
+                requete -> requete.sortBy(Sort.by(Sort.Direction.DESC, "id")).limit(limite + 1).all());
+        return PageCurseur.de(lignes, limite, Ligne::getId);
+    }
+
     public Optional<Ligne> findById(Long id) {
         return ligneRepository.findById(id);
     }
@@ -30,10 +51,20 @@ public class LigneService {
         return ligneRepository.findByFactureId(factureId);
     }
 
+    @Transactional
     public Ligne save(Ligne ligne) {
-        return ligneRepository.save(ligne);
+        Devis devis = marquerDevisModifie(ligne);
+        Ligne enregistree = ligneRepository.save(ligne);
+        if (devis != null) {
+            if (!devis.getLignes().contains(enregistree)) {
+                devis.getLignes().add(enregistree);
+            }
+            devis.recalculerTotaux();
+        }
+        return enregistree;
     }
 
+    @Transactional
     public Ligne update(Long id, Ligne ligneDetails) {
         Ligne ligne = ligneRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Ligne non trouvée avec l'id: " + id));
@@ -41,11 +72,43 @@ public class LigneService {
         ligne.setDesignation(ligneDetails.getDesignation());
         ligne.setQuantite(ligneDetails.getQuantite());
         ligne.setPrixUnitaire(ligneDetails.getPrixUnitaire());
+        Devis devis = marquerDevisModifie(ligne);
+        if (devis != null) {
+            devis.recalculerTotaux();
+        }
         
         return ligneRepository.save(ligne);
     }
 
+    @Transactional
     public void delete(Long id) {
-        ligneRepository.deleteById(id);
+        ligneRepository.findById(id).ifPresent(ligne -> {
+            Devis devis = marquerDevisModifie(ligne);
+            if (devis != null) {
+                devis.getLignes().remove(ligne);
+            }
+            ligneRepository.delete(ligne);
+            if (devis != null) {
+                devis.recalculerTotaux();
+            }
+        });
+    }
+
+    /**
+     * Une ligne de devis modifiée incrémente la version du devis au commit :
+     * une édition concurrente du devis (PUT /api/devis/{id}) échoue au lieu
+     * d'écraser la ligne. Renvoie le devis géré, dont l'appelant recalcule
+     * les totaux stockés (null pour une ligne sans devis).
+     */
+    private Devis marquerDevisModifie(Ligne ligne) {
+        if (ligne.getDevis() != null && ligne.getDevis().getId() != null) {
+            Devis devis = entityManager.find(Devis.class, ligne.getDevis().getId(),
+                    LockModeType.OPTIMISTIC_FORCE_INCREMENT);
+            if (devis != null) {
+                ligne.setDevis(devis);
+            }
+            return devis;
+        }
+        return null;
     }
 }
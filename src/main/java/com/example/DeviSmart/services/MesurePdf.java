@@ -0,0 +1,84 @@
+package com.example.DeviSmart.services;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.BaseUnits;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Mesure des rendus PDF : durée (devismart.pdf.rendu) et taille
+ * (devismart.pdf.taille), par type de document
+ *
+ * En rendu streamé, la durée inclut l'écriture vers le client : un client
+ * lent allonge la mesure, comme il occupe le thread de rendu.
+ */
+final class MesurePdf {
+
+    static final String TYPE_FACTURE = "facture";
+    static final String TYPE_DEVIS = "devis";
+
+    private MesurePdf() {}
+
+    static void mesurer(MeterRegistry registry, String type, OutputStream sortie, Consumer<OutputStream> rendu) {
+        Comptage flux = new Comptage(sortie);
+        long debut = System.nanoTime();
+        boolean succes = false;
+        try {
+            rendu.accept(flux);
+            succes = true;
+        } finally {
+            Timer.builder("devismart.pdf.rendu")
+                    .description("Durée de génération des PDF")
+                    .tag("type", type)
+                    .tag("resultat", succes ? "succes" : "echec")
+                    .publishPercentileHistogram()
+                    .register(registry)
+                    .record(System.nanoTime() - debut, TimeUnit.NANOSECONDS);
+            if (succes) {
+                DistributionSummary.builder("devismart.pdf.taille")
+                        .description("Taille des PDF générés")
+                        .baseUnit(BaseUnits.BYTES)
+                        .tag("type", type)
+                        .publishPercentileHistogram()
+                        .register(registry)
+                        .record(flux.octets);
+            }
+        }
+    }
+
+    /**
+     * Flux transparent qui compte les octets écrits
+     */
+    private static final class Comptage extends FilterOutputStream {
+
+        long octets;
+
+        Comptage(OutputStream sortie) {
+            super(sortie);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            octets++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            octets += len;
+        }
+
+        @Override
+        public void close() throws IOException {
+            // Le flux appartient à l'appelant
+            flush();
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package com.example.DeviSmart.services;
+
+import com.example.DeviSmart.entities.SequenceNumerotation;
+import com.example.DeviSmart.repositories.DevisRepository;
+import com.example.DeviSmart.repositories.FactureRepository;
+import com.example.DeviSmart.repositories.SequenceNumerotationRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Service de numérotation des factures et devis
+ *
+ * Chaque série (préfixe + année) possède une ligne dans sequences_numerotation.
+ * Les numéros sont réservés par blocs dans une transaction courte et distribués
+ * ensuite en mémoire sans verrou, ce qui évite de sérialiser toutes les créations
+ * de factures sur la ligne Entreprise. La série repart à 1 chaque nouvelle année.
+ *
+ * Trous possibles : les numéros non utilisés d'un bloc sont rendus à l'arrêt
+ * normal de l'application, mais perdus en cas d'arrêt brutal. Une taille de
+ * bloc de 1 garantit une numérotation continue (hors transactions annulées).
+ */
+@Service
+public class NumerotationService {
+
+    public static final String PREFIXE_FACTURE = "FAC";
+    public static final String PREFIXE_DEVIS = "DEV";
+
+    private static final Logger log = LoggerFactory.getLogger(NumerotationService.class);
+    private static final int TENTATIVES_CREATION = 3;
+    // Numéros lus par requête pour retrouver le dernier numéro d'une série
+    private static final int PAGE_NUMEROS = 20;
+
+    @Autowired
+    private SequenceNumerotationRepository sequenceRepository;
+
+    @Autowired
+    private FactureRepository factureRepository;
+
+    @Autowired
+    private DevisRepository devisRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${devismart.numerotation.taille-bloc:20}")
+    private int tailleBloc;
+
+    private final ConcurrentMap<String, Serie> series = new ConcurrentHashMap<>();
+
+    /**
+     * Retourne le prochain numéro de la série pour l'année en cours
+     *
+     * @param prefixe PREFIXE_FACTURE ou PREFIXE_DEVIS
+     * @return Numéro formaté, ex: FAC-2026-0001
+     */
+    public String prochainNumero(String prefixe) {
+        int annee = Year.now().getValue();
+        Serie serie = series.computeIfAbsent(prefixe + "-" + annee, cle -> nouvelleSerie(prefixe, annee));
+        long debut = System.nanoTime();
+        long valeur = prochaineValeur(serie);
+        serie.attribution.record(System.nanoTime() - debut, TimeUnit.NANOSECONDS);
+        return formater(prefixe, annee, valeur);
+    }
+
+    /**
+     * Réserve d'un coup une plage continue de numéros pour l'année en cours,
+     * hors du bloc partagé (créations groupées)
+     *
+     * Les numéros non utilisés de la plage (demandes en échec) ne sont pas rendus.
+     *
+     * @return Numéros consécutifs, dans l'ordre
+     */
+    public List<String> prochainsNumeros(String prefixe, int nombre) {
+        if (nombre <= 0) {
+            return List.of();
+        }
+        int annee = Year.now().getValue();
+        Serie serie = series.computeIfAbsent(prefixe + "-" + annee, cle -> nouvelleSerie(prefixe, annee));
+        long debut = System.nanoTime();
+        Bloc plage = reserverBloc(prefixe, annee, nombre);
+        serie.reservation.record(System.nanoTime() - debut, TimeUnit.NANOSECONDS);
+
+        List<String> numeros = new ArrayList<>(nombre);
+        for (long valeur = plage.prochain.get(); valeur <= plage.fin; valeur++) {
+            numeros.add(formater(prefixe, annee, valeur));
+        }
+        return numeros;
+    }
+
+    public static String formater(String prefixe, int annee, long valeur) {
+        return String.format("%s-%d-%04d", prefixe, annee, valeur);
+    }
+
+    private long prochaineValeur(Serie serie) {
+        while (true) {
+            Bloc bloc = serie.bloc;
+            long valeur = bloc.prochain.getAndIncrement();
+            if (valeur <= bloc.fin) {
+                return valeur;
+            }
+            // Bloc épuisé : un seul thread réserve le suivant, les autres attendent puis réessaient
+            serie.verrou.lock();
+            try {
+                if (serie.bloc == bloc) {
+                    long debut = System.nanoTime();
+                    serie.bloc = reserverBloc(serie.prefixe, serie.annee, tailleBloc);
+                    serie.reservation.record(System.nanoTime() - debut, TimeUnit.NANOSECONDS);
+                }
+            } finally {
+                serie.verrou.unlock();
+            }
+        }
+    }
+
+    /**
+     * Réserve un bloc de numéros dans une transaction indépendante de l'appelant,
+     * pour que le verrou sur la ligne de séquence soit relâché immédiatement
+     */
+    private Bloc reserverBloc(String prefixe, int annee, int taille) {
+        TransactionTemplate transaction = nouvelleTransaction();
+        for (int tentative = 1; ; tentative++) {
+            try {
+                return transaction.execute(status -> {
+                    SequenceNumerotation sequence = sequenceRepository.findByPrefixeAndAnnee(prefixe, annee)
+                            .orElseGet(() -> sequenceRepository.saveAndFlush(
+                                    new SequenceNumerotation(prefixe, annee, dernierNumeroExistant(prefixe, annee))));
+                    long debut = sequence.getValeur() + 1;
+                    long fin = sequence.getValeur() + Math.max(1, taille);
+                    sequence.setValeur(fin);
+                    return new Bloc(debut, fin);
+                });
+            } catch (DataIntegrityViolationException e) {
+                // Série créée en parallèle par une autre instance : relire la ligne existante
+                if (tentative >= TENTATIVES_CREATION) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Plus grand numéro déjà attribué dans la série, pour reprendre la suite
+     * des numéros émis avant la création de la séquence
+     *
+     * Les numéros sont lus du plus grand au plus petit, par pages : le premier
+     * suffixe numérique est le maximum. Les pages suivantes ne sont lues que
+     * si les premiers numéros ont un suffixe non numérique (import).
+     */
+    private long dernierNumeroExistant(String prefixe, int annee) {
+        String debut = prefixe + "-" + annee + "-";
+        for (int page = 0; ; page++) {
+            Pageable pagination = PageRequest.of(page, PAGE_NUMEROS);
+            List<String> numeros = PREFIXE_FACTURE.equals(prefixe)
+                    ? factureRepository.findNumerosCorrespondants(debut + "%", pagination)
+                    : devisRepository.findNumerosCorrespondants(debut + "%", pagination);
+            for (String numero : numeros) {
+                String suffixe = numero.substring(debut.length());
+                if (!suffixe.isEmpty() && suffixe.length() < 19 && suffixe.chars().allMatch(Character::isDigit)) {
+                    return Long.parseLong(suffixe);
+                }
+            }
+            if (numeros.size() < PAGE_NUMEROS) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Rend les numéros non distribués à l'arrêt de l'application, si aucune
+     * autre instance n'a réservé de bloc entre-temps
+     */
+    @PreDestroy
+    public void restituerBlocs() {
+        TransactionTemplate transaction = nouvelleTransaction();
+        for (Serie serie : series.values()) {
+            serie.verrou.lock();
+            try {
+                Bloc bloc = serie.bloc;
+                long prochain = bloc.prochain.getAndSet(bloc.fin + 1);
+                if (prochain > bloc.fin) {
+                    continue;
+                }
+                transaction.executeWithoutResult(status ->
+                        sequenceRepository.findByPrefixeAndAnnee(serie.prefixe, serie.annee)
+                                .filter(sequence -> sequence.getValeur() == bloc.fin)
+                                .ifPresent(sequence -> sequence.setValeur(prochain - 1)));
+            } catch (RuntimeException e) {
+                log.warn("Restitution impossible des numéros {}-{} : {}", serie.prefixe, serie.annee, e.getMessage());
+            } finally {
+                serie.verrou.unlock();
+            }
+        }
+    }
+
+    /**
+     * Latences par préfixe : attribution d'un numéro (devismart.numerotation.attribution,
+     * attente d'un renouvellement de bloc comprise) et réservation d'un bloc en base
+     * (devismart.numerotation.reservation)
+     */
+    private Serie nouvelleSerie(String prefixe, int annee) {
+        Timer attribution = Timer.builder("devismart.numerotation.attribution")
+                .tag("prefixe", prefixe)
+                .publishPercentiles(0.5, 0.99, 0.999)
+                .register(meterRegistry);
+        Timer reservation = Timer.builder("devismart.numerotation.reservation")
+                .tag("prefixe", prefixe)
+                .register(meterRegistry);
+        return new Serie(prefixe, annee, attribution, reservation);
+    }
+
+    private TransactionTemplate nouvelleTransaction() {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        return transaction;
+    }
+
+    // ==================== STRUCTURES INTERNES ====================
+
+    /**
+     * Plage [prochain, fin] de numéros réservés en base et distribués en mémoire
+     */
+    private static final class Bloc {
+        final AtomicLong prochain;
+        final long fin;
+
+        Bloc(long debut, long fin) {
+            this.prochain = new AtomicLong(debut);
+            this.fin = fin;
+        }
+    }
+
+    /**
+     * État en mémoire d'une série : bloc courant, verrou de renouvellement et mesures
+     */
+    private static final class Serie {
+        final String prefixe;
+        final int annee;
+        final Timer attribution;
+        final Timer reservation;
+        final ReentrantLock verrou = new ReentrantLock();
+        volatile Bloc bloc = new Bloc(1, 0);
+
+        Serie(String prefixe, int annee, Timer attribution, Timer reservation) {
+            this.prefixe = prefixe;
+            this.annee = annee;
+            this.attribution = attribution;
+            this.reservation = reservation;
+        }
+    }
+}
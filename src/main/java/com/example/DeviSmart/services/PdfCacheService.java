@@ -0,0 +1,400 @@
+package com.example.DeviSmart.services;
+
+import com.example.DeviSmart.entities.Facture;
+import com.example.DeviSmart.events.FactureModifieeEvent;
+import com.example.DeviSmart.events.FacturesModifieesEvent;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Cache disque des PDF de factures
+ *
+ * Un fichier par facture et par empreinte de contenu : {id}-{sha256}.pdf.
+ * Une facture émise ne change plus, un téléchargement répété devient donc une
+ * simple lecture de fichier. Si une donnée affichée change, l'empreinte change
+ * et l'ancien fichier n'est plus jamais servi ; il est supprimé dès la
+ * modification (FactureModifieeEvent) pour libérer la place.
+ *
+ * La taille totale est bornée (devismart.pdf.cache.taille-max-mo) : les
+ * fichiers les moins récemment servis sont supprimés en premier (LRU).
+ *
+ * L'index est protégé par un ReentrantLock plutôt que par synchronized : un
+ * thread virtuel bloqué sur un moniteur reste attaché à son thread porteur
+ * (Java 21). Aucune entrée/sortie n'est faite verrou tenu ; les fichiers
+ * évincés sont supprimés après sa libération.
+ */
+@Service
+public class PdfCacheService {
+
+    private static final Logger log = LoggerFactory.getLogger(PdfCacheService.class);
+    private static final String EXTENSION = ".pdf";
+    // Fichiers d'écriture en cours, renommés en .pdf une fois complets
+    private static final String PREFIXE_TEMPORAIRE = "pdf-";
+    private static final String EXTENSION_TEMPORAIRE = ".tmp";
+
+    @Autowired
+    private FacturePdfService facturePdfService;
+
+    @Value("${devismart.pdf.cache.repertoire:${java.io.tmpdir}/devismart-pdf}")
+    private String repertoireConfigure;
+
+    @Value("${devismart.pdf.cache.taille-max-mo:256}")
+    private long tailleMaxMo;
+
+    private Path repertoire;
+
+    // Index LRU nom de fichier -> taille, dans l'ordre d'accès ; protégé par verrou
+    private final LinkedHashMap<String, Long> index = new LinkedHashMap<>(256, 0.75f, true);
+    private long tailleTotale;
+    private final ReentrantLock verrou = new ReentrantLock();
+
+    /**
+     * Reconstruit l'index depuis les fichiers déjà présents (du plus ancien au plus récent)
+     * et supprime les fichiers temporaires laissés par un arrêt en cours d'écriture
+     */
+    @PostConstruct
+    void initialiser() throws IOException {
+        repertoire = Paths.get(repertoireConfigure);
+        Files.createDirectories(repertoire);
+        List<Path> fichiers;
+        List<Path> temporaires;
+        try (Stream<Path> liste = Files.list(repertoire)) {
+            List<Path> presents = liste.toList();
+            fichiers = presents.stream()
+                    .filter(f -> f.getFileName().toString().endsWith(EXTENSION))
+                    .sorted(Comparator.comparing(PdfCacheService::dateModification))
+                    .toList();
+            temporaires = presents.stream()
+                    .filter(f -> f.getFileName().toString().startsWith(PREFIXE_TEMPORAIRE)
+                            && f.getFileName().toString().endsWith(EXTENSION_TEMPORAIRE))
+                    .toList();
+        }
+        for (Path temporaire : temporaires) {
+            supprimer(temporaire.getFileName().toString());
+        }
+        Map<String, Long> tailles = new LinkedHashMap<>();
+        for (Path fichier : fichiers) {
+            tailles.put(fichier.getFileName().toString(), Files.size(fichier));
+        }
+        List<String> evinces;
+        verrou.lock();
+        try {
+            tailles.forEach((nom, taille) -> {
+                index.put(nom, taille);
+                tailleTotale += taille;
+            });
+            evinces = evincer();
+        } finally {
+            verrou.unlock();
+        }
+        evinces.forEach(this::supprimer);
+    }
+
+    /**
+     * Clé de cache de la facture, utilisée aussi comme ETag
+     */
+    public String cle(Facture facture) {
+        return facture.getId() + "-" + facturePdfService.empreinte(facture);
+    }
+
+    /**
+     * PDF de la facture : lu depuis le disque s'il est en cache, généré et
+     * enregistré sinon
+     */
+    public byte[] obtenir(Facture facture) {
+        return obtenir(facture, cle(facture));
+    }
+
+    public byte[] obtenir(Facture facture, String cle) {
+        String nom = cle + EXTENSION;
+        Path fichier = repertoire.resolve(nom);
+        if (taille(cle) != null) {
+            try {
+                return Files.readAllBytes(fichier);
+            } catch (NoSuchFileException e) {
+                // Évincé entre-temps : régénérer
+                retirer(nom);
+            } catch (IOException e) {
+                log.warn("Lecture impossible du PDF en cache {} : {}", nom, e.getMessage());
+            }
+        }
+
+        byte[] contenu = facturePdfService.generer(facture);
+        enregistrer(nom, contenu);
+        return contenu;
+    }
+
+    /**
+     * PDF en cache déjà ouvert, null s'il doit être généré. Le fichier est
+     * ouvert avant l'envoi des en-têtes : une éviction ultérieure supprime son
+     * nom mais pas le contenu ouvert, la taille annoncée reste donc exacte.
+     */
+    public PdfEnCache ouvrir(String cle) {
+        String nom = cle + EXTENSION;
+        if (taille(cle) == null) {
+            return null;
+        }
+        FileChannel canal = null;
+        try {
+            canal = FileChannel.open(repertoire.resolve(nom), StandardOpenOption.READ);
+            return new PdfEnCache(canal, canal.size());
+        } catch (NoSuchFileException e) {
+            // Évincé entre-temps : régénérer
+            retirer(nom);
+        } catch (IOException e) {
+            log.warn("Lecture impossible du PDF en cache {} : {}", nom, e.getMessage());
+        }
+        fermer(canal);
+        return null;
+    }
+
+    /**
+     * Taille du PDF en cache, null s'il doit être généré
+     */
+    private Long taille(String cle) {
+        verrou.lock();
+        try {
+            return index.get(cle + EXTENSION);
+        } finally {
+            verrou.unlock();
+        }
+    }
+
+    /**
+     * Écrit le PDF de la facture dans le flux : copie du fichier en cache, ou
+     * génération envoyée en même temps au flux et au fichier de cache.
+     * Le document n'est jamais entièrement en mémoire.
+     */
+    public void ecrire(Facture facture, String cle, OutputStream sortie) throws IOException {
+        String nom = cle + EXTENSION;
+        Path fichier = repertoire.resolve(nom);
+        if (taille(cle) != null) {
+            try {
+                Files.copy(fichier, sortie);
+                return;
+            } catch (NoSuchFileException e) {
+                // Évincé entre-temps : régénérer
+                retirer(nom);
+            }
+        }
+
+        Path temporaire = Files.createTempFile(repertoire, PREFIXE_TEMPORAIRE, EXTENSION_TEMPORAIRE);
+        boolean termine = false;
+        try {
+            try (OutputStream copie = Files.newOutputStream(temporaire)) {
+                facturePdfService.generer(facture, new Duplication(sortie, copie));
+            }
+            Files.move(temporaire, fichier, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            termine = true;
+        } finally {
+            if (!termine) {
+                Files.deleteIfExists(temporaire);
+            }
+        }
+        indexer(nom, Files.size(fichier));
+    }
+
+    /**
+     * Supprime les PDF en cache d'une facture modifiée ou supprimée,
+     * une fois la modification validée
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void surFactureModifiee(FactureModifieeEvent event) {
+        retirerFactures(Set.of(String.valueOf(event.factureId())));
+    }
+
+    /**
+     * Écriture groupée : un seul parcours de l'index pour tout le lot
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void surFacturesModifiees(FacturesModifieesEvent event) {
+        Set<String> ids = new HashSet<>();
+        for (FactureModifieeEvent modification : event.modifications()) {
+            // Création : aucun PDF en cache
+            if (modification.avant() != null) {
+                ids.add(String.valueOf(modification.factureId()));
+            }
+        }
+        if (!ids.isEmpty()) {
+            retirerFactures(ids);
+        }
+    }
+
+    private void retirerFactures(Set<String> ids) {
+        List<String> noms = new ArrayList<>();
+        verrou.lock();
+        try {
+            for (String nom : index.keySet()) {
+                int tiret = nom.indexOf('-');
+                if (tiret > 0 && ids.contains(nom.substring(0, tiret))) {
+                    noms.add(nom);
+                }
+            }
+        } finally {
+            verrou.unlock();
+        }
+        noms.forEach(this::retirer);
+    }
+
+    // ==================== GESTION DES FICHIERS ====================
+
+    /**
+     * Écrit dans un fichier temporaire puis le renomme : un lecteur ne voit
+     * jamais un PDF partiellement écrit
+     */
+    private void enregistrer(String nom, byte[] contenu) {
+        try {
+            Path temporaire = Files.createTempFile(repertoire, PREFIXE_TEMPORAIRE, EXTENSION_TEMPORAIRE);
+            Files.write(temporaire, contenu);
+            Files.move(temporaire, repertoire.resolve(nom),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // Le cache est une optimisation : le PDF généré est servi quand même
+            log.warn("Écriture impossible du PDF en cache {} : {}", nom, e.getMessage());
+            return;
+        }
+        indexer(nom, contenu.length);
+    }
+
+    private void indexer(String nom, long taille) {
+        List<String> evinces;
+        verrou.lock();
+        try {
+            Long ancienne = index.put(nom, taille);
+            tailleTotale += taille - (ancienne != null ? ancienne : 0);
+            evinces = evincer();
+        } finally {
+            verrou.unlock();
+        }
+        evinces.forEach(this::supprimer);
+    }
+
+    private void retirer(String nom) {
+        verrou.lock();
+        try {
+            Long taille = index.remove(nom);
+            if (taille != null) {
+                tailleTotale -= taille;
+            }
+        } finally {
+            verrou.unlock();
+        }
+        supprimer(nom);
+    }
+
+    /**
+     * Retire de l'index les fichiers les moins récemment utilisés jusqu'à
+     * repasser sous la limite ; renvoie leurs noms, à supprimer verrou libéré
+     */
+    private List<String> evincer() {
+        long limite = tailleMaxMo * 1024 * 1024;
+        List<String> evinces = new ArrayList<>();
+        Iterator<Map.Entry<String, Long>> it = index.entrySet().iterator();
+        while (tailleTotale > limite && it.hasNext()) {
+            Map.Entry<String, Long> plusAncien = it.next();
+            it.remove();
+            tailleTotale -= plusAncien.getValue();
+            evinces.add(plusAncien.getKey());
+        }
+        return evinces;
+    }
+
+    private void supprimer(String nom) {
+        try {
+            Files.deleteIfExists(repertoire.resolve(nom));
+        } catch (IOException e) {
+            log.warn("Suppression impossible du PDF en cache {} : {}", nom, e.getMessage());
+        }
+    }
+
+    private static void fermer(FileChannel canal) {
+        if (canal != null) {
+            try {
+                canal.close();
+            } catch (IOException e) {
+                // Rien à libérer de plus
+            }
+        }
+    }
+
+    /**
+     * PDF en cache ouvert et sa taille ; copier() le recopie puis le ferme
+     */
+    public record PdfEnCache(FileChannel canal, long taille) {
+
+        public void copier(OutputStream sortie) throws IOException {
+            try (InputStream entree = Channels.newInputStream(canal)) {
+                entree.transferTo(sortie);
+            }
+        }
+    }
+
+    /**
+     * Flux qui recopie chaque écriture vers la réponse et vers le fichier de cache
+     */
+    private static final class Duplication extends OutputStream {
+        private final OutputStream principal;
+        private final OutputStream copie;
+
+        Duplication(OutputStream principal, OutputStream copie) {
+            this.principal = principal;
+            this.copie = copie;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            principal.write(b);
+            copie.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            principal.write(b, off, len);
+            copie.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            principal.flush();
+            copie.flush();
+        }
+    }
+
+    private static FileTime dateModification(Path fichier) {
+        try {
+            return Files.getLastModifiedTime(fichier);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
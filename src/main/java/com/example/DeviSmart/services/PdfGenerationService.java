@@ -1,34 +1,29 @@
 package com.example.DeviSmart.services;
 
 import com.example.DeviSmart.entities.*;
-import com.example.DeviSmart.repositories.EntrepriseRepository;
 import com.lowagie.text.*;
 import com.lowagie.text.pdf.*;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.awt.Color;
 import java.io.ByteArrayOutputStream;
-import java.text.DecimalFormat;
-import java.time.format.DateTimeFormatter;
+import java.io.OutputStream;
+import java.math.BigDecimal;
 
 @Service
 public class PdfGenerationService {
 
     @Autowired
-    private EntrepriseRepository entrepriseRepository;
-
-    private static final Color PRIMARY_COLOR = new Color(220, 38, 38); // #dc2626
-    private static final Color DARK_COLOR = new Color(15, 23, 42); // #0f172a
-    private static final Color GRAY_COLOR = new Color(100, 116, 139); // #64748b
-    private static final Color LIGHT_GRAY = new Color(241, 245, 249); // #f1f5f9
-    
-    private static final DecimalFormat DECIMAL_FORMAT = new DecimalFormat("#,##0.000");
-    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+    private EntrepriseService entrepriseService;
 
     @Autowired
     private FacturePdfService facturePdfService;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     /**
      * Génère un PDF pour une facture (utilise le nouveau service)
      */
@@ -40,14 +35,28 @@ public class PdfGenerationService {
      * Génère un PDF pour un devis
      */
     public byte[] genererPdfDevis(Devis devis) {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        genererPdfDevis(devis, baos);
+        return baos.toByteArray();
+    }
+
+    /**
+     * Génère le PDF d'un devis directement dans un flux, sans le construire
+     * entièrement en mémoire. Le flux n'est pas fermé.
+     */
+    public void genererPdfDevis(Devis devis, OutputStream sortie) {
+        MesurePdf.mesurer(meterRegistry, MesurePdf.TYPE_DEVIS, sortie, flux -> rendreDevis(devis, flux));
+    }
+
+    private void rendreDevis(Devis devis, OutputStream sortie) {
         try {
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
             Document document = new Document(PageSize.A4, 50, 50, 50, 50);
-            PdfWriter.getInstance(document, baos);
+            PdfWriter writer = PdfWriter.getInstance(document, sortie);
+            writer.setCloseStream(false);
             
             document.open();
             
-            Entreprise entreprise = entrepriseRepository.getEntreprise();
+            Entreprise entreprise = entrepriseService.getEntreprise();
             
             // En-tête avec infos entreprise
             ajouterEnTeteEntreprise(document, entreprise);
@@ -75,8 +84,6 @@ public class PdfGenerationService {
             ajouterMentionsLegales(document, entreprise);
             
             document.close();
-            
-            return baos.toByteArray();
         } catch (Exception e) {
             throw new RuntimeException("Erreur lors de la génération du PDF de devis", e);
         }
@@ -87,7 +94,7 @@ public class PdfGenerationService {
         headerTable.setWidthPercentage(100);
         
         // Nom de l'entreprise
-        Font titleFont = new Font(Font.HELVETICA, 24, Font.BOLD, PRIMARY_COLOR);
+        Font titleFont = PdfTheme.TITRE;
         Paragraph nomEntreprise = new Paragraph(
             entreprise != null ? entreprise.getNom() : "DeviSmart", titleFont);
         
@@ -98,7 +105,7 @@ public class PdfGenerationService {
         
         // Coordonnées
         if (entreprise != null) {
-            Font infoFont = new Font(Font.HELVETICA, 10, Font.NORMAL, GRAY_COLOR);
+            Font infoFont = PdfTheme.LIBELLE;
             StringBuilder infos = new StringBuilder();
             
             if (entreprise.getAdresse() != null) {
@@ -127,7 +134,7 @@ public class PdfGenerationService {
         PdfPTable separateur = new PdfPTable(1);
         separateur.setWidthPercentage(100);
         PdfPCell sepCell = new PdfPCell();
-        sepCell.setBorderColor(PRIMARY_COLOR);
+        sepCell.setBorderColor(PdfTheme.PRIMAIRE);
         sepCell.setBorderWidth(2);
         sepCell.setBorder(Rectangle.BOTTOM);
         sepCell.setPaddingBottom(10);
@@ -143,7 +150,7 @@ public class PdfGenerationService {
         table.setWidths(new float[]{1, 1});
         
         // Type de document
-        Font typeFont = new Font(Font.HELVETICA, 28, Font.BOLD, DARK_COLOR);
+        Font typeFont = PdfTheme.TITRE_DOCUMENT;
         Paragraph typePara = new Paragraph(type, typeFont);
         PdfPCell typeCell = new PdfPCell(typePara);
         typeCell.setBorder(Rectangle.NO_BORDER);
@@ -151,7 +158,7 @@ public class PdfGenerationService {
         table.addCell(typeCell);
         
         // Numéro
-        Font numFont = new Font(Font.HELVETICA, 14, Font.BOLD, PRIMARY_COLOR);
+        Font numFont = PdfTheme.ACCENT;
         Paragraph numPara = new Paragraph("N° " + numero, numFont);
         numPara.setAlignment(Element.ALIGN_RIGHT);
         PdfPCell numCell = new PdfPCell(numPara);
@@ -169,12 +176,12 @@ public class PdfGenerationService {
         table.setWidthPercentage(50);
         table.setHorizontalAlignment(Element.ALIGN_LEFT);
         
-        Font labelFont = new Font(Font.HELVETICA, 10, Font.NORMAL, GRAY_COLOR);
-        Font valueFont = new Font(Font.HELVETICA, 10, Font.BOLD, DARK_COLOR);
+        Font labelFont = PdfTheme.LIBELLE;
+        Font valueFont = PdfTheme.VALEUR;
         
         // Date d'émission
         ajouterLigneInfo(table, "Date d'émission:", 
-            facture.getDateEmission().format(DATE_FORMATTER), labelFont, valueFont);
+            facture.getDateEmission().format(PdfTheme.DATE), labelFont, valueFont);
         
         // Référence devis
         if (facture.getReferenceDevis() != null && !facture.getReferenceDevis().isEmpty()) {
@@ -194,17 +201,17 @@ public class PdfGenerationService {
         table.setWidthPercentage(50);
         table.setHorizontalAlignment(Element.ALIGN_LEFT);
         
-        Font labelFont = new Font(Font.HELVETICA, 10, Font.NORMAL, GRAY_COLOR);
-        Font valueFont = new Font(Font.HELVETICA, 10, Font.BOLD, DARK_COLOR);
+        Font labelFont = PdfTheme.LIBELLE;
+        Font valueFont = PdfTheme.VALEUR;
         
         // Date de création
         ajouterLigneInfo(table, "Date de création:", 
-            devis.getDateCreation().format(DATE_FORMATTER), labelFont, valueFont);
+            devis.getDateCreation().format(PdfTheme.DATE), labelFont, valueFont);
         
         // Date de validité
         if (devis.getDateValidite() != null) {
             ajouterLigneInfo(table, "Valable jusqu'au:", 
-                devis.getDateValidite().format(DATE_FORMATTER), labelFont, valueFont);
+                devis.getDateValidite().format(PdfTheme.DATE), labelFont, valueFont);
         }
         
         // Statut
@@ -228,7 +235,7 @@ public class PdfGenerationService {
 
     private void ajouterInfosClient(Document document, Client client) throws DocumentException {
         // Titre section
-        Font sectionFont = new Font(Font.HELVETICA, 12, Font.BOLD, DARK_COLOR);
+        Font sectionFont = PdfTheme.SECTION;
         Paragraph titre = new Paragraph("CLIENT", sectionFont);
         document.add(titre);
         
@@ -237,15 +244,15 @@ public class PdfGenerationService {
         table.setWidthPercentage(50);
         table.setHorizontalAlignment(Element.ALIGN_LEFT);
         
-        Font clientFont = new Font(Font.HELVETICA, 11, Font.NORMAL, DARK_COLOR);
-        Font clientBoldFont = new Font(Font.HELVETICA, 11, Font.BOLD, DARK_COLOR);
+        Font clientFont = PdfTheme.TEXTE;
+        Font clientBoldFont = PdfTheme.SOUS_TITRE;
         
         StringBuilder clientInfos = new StringBuilder();
         if (client != null) {
             PdfPCell nameCell = new PdfPCell(new Phrase(client.getNom(), clientBoldFont));
-            nameCell.setBackgroundColor(LIGHT_GRAY);
+            nameCell.setBackgroundColor(PdfTheme.GRIS_CLAIR);
             nameCell.setPadding(10);
-            nameCell.setBorderColor(new Color(226, 232, 240));
+            nameCell.setBorderColor(PdfTheme.BORDURE);
             table.addCell(nameCell);
             
             StringBuilder details = new StringBuilder();
@@ -263,10 +270,10 @@ public class PdfGenerationService {
             }
             
             PdfPCell detailsCell = new PdfPCell(new Phrase(details.toString(), clientFont));
-            detailsCell.setBackgroundColor(LIGHT_GRAY);
+            detailsCell.setBackgroundColor(PdfTheme.GRIS_CLAIR);
             detailsCell.setPadding(10);
             detailsCell.setPaddingTop(0);
-            detailsCell.setBorderColor(new Color(226, 232, 240));
+            detailsCell.setBorderColor(PdfTheme.BORDURE);
             table.addCell(detailsCell);
         }
         
@@ -278,14 +285,17 @@ public class PdfGenerationService {
         PdfPTable table = new PdfPTable(5);
         table.setWidthPercentage(100);
         table.setWidths(new float[]{3, 1, 1.5f, 1.5f, 1.5f});
+        // Ajout par lots, en-tête répété sur chaque page
+        table.setHeaderRows(1);
+        table.setComplete(false);
         
         // En-têtes
-        Font headerFont = new Font(Font.HELVETICA, 10, Font.BOLD, Color.WHITE);
+        Font headerFont = PdfTheme.EN_TETE_TABLEAU;
         String[] headers = {"DÉSIGNATION", "QTÉ", "P.U. HT", "TOTAL HT", ""};
         
         for (int i = 0; i < 4; i++) {
             PdfPCell cell = new PdfPCell(new Phrase(headers[i], headerFont));
-            cell.setBackgroundColor(DARK_COLOR);
+            cell.setBackgroundColor(PdfTheme.SOMBRE);
             cell.setPadding(10);
             cell.setHorizontalAlignment(i == 0 ? Element.ALIGN_LEFT : Element.ALIGN_RIGHT);
             table.addCell(cell);
@@ -293,17 +303,18 @@ public class PdfGenerationService {
         
         // Dernière colonne vide pour l'en-tête
         PdfPCell emptyHeader = new PdfPCell(new Phrase("", headerFont));
-        emptyHeader.setBackgroundColor(DARK_COLOR);
+        emptyHeader.setBackgroundColor(PdfTheme.SOMBRE);
         emptyHeader.setPadding(10);
         table.addCell(emptyHeader);
         
         // Lignes de données
-        Font dataFont = new Font(Font.HELVETICA, 10, Font.NORMAL, DARK_COLOR);
+        Font dataFont = PdfTheme.DONNEE;
         boolean alternate = false;
+        int lignesEnAttente = 0;
         
         if (lignes != null) {
             for (Ligne ligne : lignes) {
-                Color bgColor = alternate ? LIGHT_GRAY : Color.WHITE;
+                Color bgColor = alternate ? PdfTheme.GRIS_CLAIR : Color.WHITE;
                 
                 // Désignation
                 PdfPCell cell = new PdfPCell(new Phrase(ligne.getDesignation(), dataFont));
@@ -312,21 +323,21 @@ public class PdfGenerationService {
                 table.addCell(cell);
                 
                 // Quantité
-                cell = new PdfPCell(new Phrase(String.valueOf(ligne.getQuantite()), dataFont));
+                cell = new PdfPCell(new Phrase(ligne.getQuantite().stripTrailingZeros().toPlainString(), dataFont));
                 cell.setBackgroundColor(bgColor);
                 cell.setPadding(8);
                 cell.setHorizontalAlignment(Element.ALIGN_RIGHT);
                 table.addCell(cell);
                 
                 // Prix unitaire
-                cell = new PdfPCell(new Phrase(DECIMAL_FORMAT.format(ligne.getPrixUnitaire()) + " €", dataFont));
+                cell = new PdfPCell(new Phrase(FormateurMontant.MONTANT.formater(ligne.getPrixUnitaire()) + " €", dataFont));
                 cell.setBackgroundColor(bgColor);
                 cell.setPadding(8);
                 cell.setHorizontalAlignment(Element.ALIGN_RIGHT);
                 table.addCell(cell);
                 
                 // Total ligne
-                cell = new PdfPCell(new Phrase(DECIMAL_FORMAT.format(ligne.getTotal()) + " €", dataFont));
+                cell = new PdfPCell(new Phrase(FormateurMontant.MONTANT.formaterUnites(ligne.totalEnMillimes()) + " €", dataFont));
                 cell.setBackgroundColor(bgColor);
                 cell.setPadding(8);
                 cell.setHorizontalAlignment(Element.ALIGN_RIGHT);
@@ -339,44 +350,49 @@ public class PdfGenerationService {
                 table.addCell(cell);
                 
                 alternate = !alternate;
+                if (++lignesEnAttente == FacturePdfService.LIGNES_PAR_LOT) {
+                    document.add(table);
+                    lignesEnAttente = 0;
+                }
             }
         }
         
+        table.setComplete(true);
         document.add(table);
         document.add(new Paragraph("\n"));
     }
 
-    private void ajouterTotaux(Document document, double totalHT, double tauxTVA, 
-                               double montantTVA, double totalTTC) throws DocumentException {
+    private void ajouterTotaux(Document document, BigDecimal totalHT, BigDecimal tauxTVA,
+                               BigDecimal montantTVA, BigDecimal totalTTC) throws DocumentException {
         PdfPTable table = new PdfPTable(2);
         table.setWidthPercentage(40);
         table.setHorizontalAlignment(Element.ALIGN_RIGHT);
         table.setWidths(new float[]{1, 1});
         
-        Font labelFont = new Font(Font.HELVETICA, 11, Font.NORMAL, DARK_COLOR);
-        Font valueFont = new Font(Font.HELVETICA, 11, Font.BOLD, DARK_COLOR);
-        Font totalFont = new Font(Font.HELVETICA, 14, Font.BOLD, PRIMARY_COLOR);
+        Font labelFont = PdfTheme.TEXTE;
+        Font valueFont = PdfTheme.SOUS_TITRE;
+        Font totalFont = PdfTheme.ACCENT;
         
         // Total HT
-        ajouterLigneTotaux(table, "Total HT", DECIMAL_FORMAT.format(totalHT) + " €", labelFont, valueFont);
+        ajouterLigneTotaux(table, "Total HT", FormateurMontant.MONTANT.formater(totalHT) + " €", labelFont, valueFont);
         
         // TVA
-        ajouterLigneTotaux(table, "TVA (" + DECIMAL_FORMAT.format(tauxTVA) + "%)", 
-            DECIMAL_FORMAT.format(montantTVA) + " €", labelFont, valueFont);
+        ajouterLigneTotaux(table, "TVA (" + FormateurMontant.MONTANT.formater(tauxTVA) + "%)", 
+            FormateurMontant.MONTANT.formater(montantTVA) + " €", labelFont, valueFont);
         
         // Total TTC
         PdfPCell labelCell = new PdfPCell(new Phrase("TOTAL TTC", totalFont));
-        labelCell.setBackgroundColor(LIGHT_GRAY);
+        labelCell.setBackgroundColor(PdfTheme.GRIS_CLAIR);
         labelCell.setPadding(10);
-        labelCell.setBorderColor(PRIMARY_COLOR);
+        labelCell.setBorderColor(PdfTheme.PRIMAIRE);
         labelCell.setBorderWidth(2);
         table.addCell(labelCell);
         
-        PdfPCell valueCell = new PdfPCell(new Phrase(DECIMAL_FORMAT.format(totalTTC) + " €", totalFont));
-        valueCell.setBackgroundColor(LIGHT_GRAY);
+        PdfPCell valueCell = new PdfPCell(new Phrase(FormateurMontant.MONTANT.formater(totalTTC) + " €", totalFont));
+        valueCell.setBackgroundColor(PdfTheme.GRIS_CLAIR);
         valueCell.setPadding(10);
         valueCell.setHorizontalAlignment(Element.ALIGN_RIGHT);
-        valueCell.setBorderColor(PRIMARY_COLOR);
+        valueCell.setBorderColor(PdfTheme.PRIMAIRE);
         valueCell.setBorderWidth(2);
         table.addCell(valueCell);
         
@@ -387,19 +403,19 @@ public class PdfGenerationService {
     private void ajouterLigneTotaux(PdfPTable table, String label, String value, Font labelFont, Font valueFont) {
         PdfPCell labelCell = new PdfPCell(new Phrase(label, labelFont));
         labelCell.setPadding(8);
-        labelCell.setBorderColor(new Color(226, 232, 240));
+        labelCell.setBorderColor(PdfTheme.BORDURE);
         table.addCell(labelCell);
         
         PdfPCell valueCell = new PdfPCell(new Phrase(value, valueFont));
         valueCell.setPadding(8);
         valueCell.setHorizontalAlignment(Element.ALIGN_RIGHT);
-        valueCell.setBorderColor(new Color(226, 232, 240));
+        valueCell.setBorderColor(PdfTheme.BORDURE);
         table.addCell(valueCell);
     }
 
     private void ajouterConditionsDevis(Document document, Devis devis) throws DocumentException {
-        Font titleFont = new Font(Font.HELVETICA, 11, Font.BOLD, DARK_COLOR);
-        Font textFont = new Font(Font.HELVETICA, 9, Font.NORMAL, GRAY_COLOR);
+        Font titleFont = PdfTheme.SOUS_TITRE;
+        Font textFont = PdfTheme.TEXTE_SECONDAIRE;
         
         Paragraph titre = new Paragraph("CONDITIONS", titleFont);
         document.add(titre);
@@ -407,7 +423,7 @@ public class PdfGenerationService {
         StringBuilder conditions = new StringBuilder();
         conditions.append("• Ce devis est valable jusqu'au ");
         if (devis.getDateValidite() != null) {
-            conditions.append(devis.getDateValidite().format(DATE_FORMATTER));
+            conditions.append(devis.getDateValidite().format(PdfTheme.DATE));
         } else {
             conditions.append("30 jours après émission");
         }
@@ -426,7 +442,7 @@ public class PdfGenerationService {
         
         PdfPCell sigCell = new PdfPCell();
         sigCell.setMinimumHeight(60);
-        sigCell.setBorderColor(new Color(226, 232, 240));
+        sigCell.setBorderColor(PdfTheme.BORDURE);
         sigTable.addCell(sigCell);
         
         document.add(sigTable);
@@ -434,7 +450,7 @@ public class PdfGenerationService {
     }
 
     private void ajouterMentionsLegales(Document document, Entreprise entreprise) throws DocumentException {
-        Font footerFont = new Font(Font.HELVETICA, 8, Font.NORMAL, GRAY_COLOR);
+        Font footerFont = PdfTheme.PIED;
         
         Paragraph footer = new Paragraph();
         footer.setAlignment(Element.ALIGN_CENTER);
@@ -0,0 +1,380 @@
+package com.example.DeviSmart.services;
+
+import com.example.DeviSmart.dto.MetriquesPdf;
+import com.example.DeviSmart.dto.StatutTravailPdf;
+import com.example.DeviSmart.entities.Devis;
+import com.example.DeviSmart.entities.Facture;
+import com.example.DeviSmart.repositories.DevisRepository;
+import com.example.DeviSmart.repositories.FactureRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Service de génération PDF asynchrone
+ *
+ * Les rendus OpenPDF sont exécutés par un pool de workers borné, hors des
+ * threads HTTP : un pic de demandes de PDF ne bloque plus les endpoints CRUD.
+ * La file d'attente est bornée elle aussi ; quand elle est pleine, la
+ * soumission est refusée (RejectedExecutionException) au lieu de s'accumuler.
+ *
+ * Les documents générés restent en mémoire jusqu'à leur expiration
+ * (devismart.pdf.conservation-minutes), puis sont purgés périodiquement.
+ * Leur volume total est borné (devismart.pdf.conservation-max-mo) : au-delà,
+ * les travaux terminés les plus anciens sont oubliés (404 ensuite).
+ *
+ * Avec spring.threads.virtual.enabled, les workers sont des threads virtuels :
+ * leur nombre reste borné (le rendu est limité par le CPU), mais les lectures
+ * en base et sur le cache disque ne bloquent plus de thread système.
+ */
+@Service
+public class PdfJobService {
+
+    public static final String TYPE_FACTURE = "FACTURE";
+    public static final String TYPE_DEVIS = "DEVIS";
+
+    public static final String ETAT_EN_ATTENTE = "EN_ATTENTE";
+    public static final String ETAT_EN_COURS = "EN_COURS";
+    public static final String ETAT_TERMINE = "TERMINE";
+    public static final String ETAT_ECHEC = "ECHEC";
+
+    private static final Logger log = LoggerFactory.getLogger(PdfJobService.class);
+
+    @Autowired
+    private FactureRepository factureRepository;
+
+    @Autowired
+    private DevisRepository devisRepository;
+
+    @Autowired
+    private PdfCacheService pdfCacheService;
+
+    @Autowired
+    private PdfGenerationService pdfGenerationService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${devismart.pdf.workers:2}")
+    private int workers;
+
+    @Value("${devismart.pdf.file-attente:50}")
+    private int capaciteFile;
+
+    @Value("${devismart.pdf.conservation-minutes:10}")
+    private long conservationMinutes;
+
+    @Value("${devismart.pdf.conservation-max-mo:64}")
+    private long conservationMaxMo;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean threadsVirtuels;
+
+    private ThreadPoolExecutor executor;
+
+    private final ConcurrentMap<String, Travail> travaux = new ConcurrentHashMap<>();
+
+    // Travaux terminés, du plus ancien au plus récent ; verrou des deux champs
+    private final Deque<Travail> conserves = new ArrayDeque<>();
+    private long octetsConserves;
+
+    // Compteurs cumulés depuis le démarrage
+    private final AtomicLong soumis = new AtomicLong();
+    private final AtomicLong rejetes = new AtomicLong();
+    private final AtomicLong termines = new AtomicLong();
+    private final AtomicLong echecs = new AtomicLong();
+    // Attente en file et durée de traitement (chargement + rendu) des travaux
+    private Timer attente;
+    private Timer rendu;
+
+    @PostConstruct
+    void demarrer() {
+        int taille = Math.max(1, workers);
+        executor = new ThreadPoolExecutor(taille, taille, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, capaciteFile)),
+                nommerThreads("pdf-worker-", threadsVirtuels),
+                new ThreadPoolExecutor.AbortPolicy());
+
+        // Mêmes compteurs que getMetriques(), exportés vers Micrometer
+        new ExecutorServiceMetrics(executor, "pdf-jobs", Tags.empty()).bindTo(meterRegistry);
+        compteur("soumis", soumis);
+        compteur("rejete", rejetes);
+        compteur("termine", termines);
+        compteur("echec", echecs);
+        attente = Timer.builder("devismart.pdf.jobs.attente")
+                .description("Attente des travaux PDF avant prise en charge par un worker")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        rendu = Timer.builder("devismart.pdf.jobs.rendu")
+                .description("Traitement des travaux PDF par un worker")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private void compteur(String etat, AtomicLong valeur) {
+        FunctionCounter.builder("devismart.pdf.travaux", valeur, AtomicLong::get)
+                .description("Travaux de génération PDF asynchrone")
+                .tag("etat", etat)
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void arreter() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+            executor.shutdownNow();
+        }
+    }
+
+    // ==================== SOUMISSION ====================
+
+    /**
+     * Soumet la génération du PDF d'une facture
+     *
+     * @return Statut du travail, vide si la facture n'existe pas
+     * @throws RejectedExecutionException si la file d'attente est pleine
+     */
+    public Optional<StatutTravailPdf> soumettreFacture(Long factureId) {
+        if (!factureRepository.existsById(factureId)) {
+            return Optional.empty();
+        }
+        return Optional.of(soumettre(TYPE_FACTURE, factureId));
+    }
+
+    /**
+     * Soumet la génération du PDF d'un devis
+     *
+     * @return Statut du travail, vide si le devis n'existe pas
+     * @throws RejectedExecutionException si la file d'attente est pleine
+     */
+    public Optional<StatutTravailPdf> soumettreDevis(Long devisId) {
+        if (!devisRepository.existsById(devisId)) {
+            return Optional.empty();
+        }
+        return Optional.of(soumettre(TYPE_DEVIS, devisId));
+    }
+
+    private StatutTravailPdf soumettre(String type, Long documentId) {
+        Travail travail = new Travail(UUID.randomUUID().toString(), type, documentId);
+        travaux.put(travail.id, travail);
+        try {
+            executor.execute(() -> executer(travail));
+        } catch (RejectedExecutionException e) {
+            travaux.remove(travail.id);
+            rejetes.incrementAndGet();
+            throw e;
+        }
+        soumis.incrementAndGet();
+        return travail.statut();
+    }
+
+    // ==================== CONSULTATION ====================
+
+    public Optional<StatutTravailPdf> getStatut(String id) {
+        return Optional.ofNullable(travaux.get(id)).map(Travail::statut);
+    }
+
+    /**
+     * Contenu du PDF, présent seulement si le travail est terminé
+     */
+    public Optional<byte[]> getContenu(String id) {
+        return Optional.ofNullable(travaux.get(id)).map(travail -> travail.contenu);
+    }
+
+    /**
+     * Délai conseillé avant une nouvelle soumission quand la file est pleine
+     */
+    public long getDelaiNouvelEssaiSecondes() {
+        double renduMoyenMs = rendu.mean(TimeUnit.MILLISECONDS);
+        long estimation = (long) Math.ceil(renduMoyenMs * executor.getQueue().size() / Math.max(1, workers) / 1000);
+        return Math.max(1, estimation);
+    }
+
+    public MetriquesPdf getMetriques() {
+        return new MetriquesPdf(
+                executor.getMaximumPoolSize(),
+                capaciteFile,
+                executor.getQueue().size(),
+                executor.getActiveCount(),
+                soumis.get(),
+                rejetes.get(),
+                termines.get(),
+                echecs.get(),
+                attente.mean(TimeUnit.MILLISECONDS),
+                (long) attente.max(TimeUnit.MILLISECONDS),
+                rendu.mean(TimeUnit.MILLISECONDS),
+                (long) rendu.max(TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Supprime les travaux terminés depuis plus longtemps que la durée de conservation
+     */
+    @Scheduled(fixedDelayString = "${devismart.pdf.purge-ms:60000}")
+    public void purgerTravauxExpires() {
+        Instant limite = Instant.now().minus(Duration.ofMinutes(conservationMinutes));
+        synchronized (conserves) {
+            while (!conserves.isEmpty() && conserves.peekFirst().termineLe.isBefore(limite)) {
+                oublier(conserves.removeFirst());
+            }
+        }
+    }
+
+    /**
+     * Garde un travail terminé ; au-delà du volume maximal, oublie les plus
+     * anciens (le plus récent est toujours gardé, même s'il dépasse seul la limite)
+     */
+    private void conserver(Travail travail) {
+        long octetsMax = conservationMaxMo * 1024 * 1024;
+        synchronized (conserves) {
+            conserves.addLast(travail);
+            octetsConserves += taille(travail);
+            while (octetsConserves > octetsMax && conserves.size() > 1) {
+                oublier(conserves.removeFirst());
+            }
+        }
+    }
+
+    private void oublier(Travail travail) {
+        travaux.remove(travail.id);
+        octetsConserves -= taille(travail);
+    }
+
+    private static long taille(Travail travail) {
+        byte[] contenu = travail.contenu;
+        return contenu == null ? 0 : contenu.length;
+    }
+
+    // ==================== EXÉCUTION ====================
+
+    private void executer(Travail travail) {
+        long debut = System.nanoTime();
+        travail.attenteNanos = debut - travail.soumisNanos;
+        attente.record(travail.attenteNanos, TimeUnit.NANOSECONDS);
+        travail.etat = ETAT_EN_COURS;
+        String etatFinal = ETAT_ECHEC;
+        try {
+            Document document = TYPE_FACTURE.equals(travail.type)
+                    ? chargerFacture(travail.documentId)
+                    : chargerDevis(travail.documentId);
+            travail.nomFichier = document.nomFichier();
+            travail.contenu = document.rendu().get();
+            etatFinal = ETAT_TERMINE;
+            termines.incrementAndGet();
+        } catch (RuntimeException e) {
+            log.warn("Échec de génération PDF {} {} : {}", travail.type, travail.documentId, e.getMessage());
+            travail.erreur = e.getMessage();
+            echecs.incrementAndGet();
+        } finally {
+            travail.renduNanos = System.nanoTime() - debut;
+            rendu.record(travail.renduNanos, TimeUnit.NANOSECONDS);
+            travail.termineLe = Instant.now();
+            // Publié en dernier : un état final implique des durées renseignées
+            travail.etat = etatFinal;
+            conserver(travail);
+        }
+    }
+
+    /**
+     * Charge la facture et ses lignes dans une transaction courte en lecture seule ;
+     * le rendu se fait ensuite sans connexion base
+     */
+    private Document chargerFacture(Long id) {
+        Facture facture = lectureSeule().execute(status -> factureRepository.findAvecLignesById(id)
+                .orElseThrow(() -> new RuntimeException("Facture non trouvée avec l'id: " + id)));
+        String nomFichier = "facture_" + facture.getNumeroFacture().replace("/", "-") + ".pdf";
+        return new Document(nomFichier, () -> pdfCacheService.obtenir(facture));
+    }
+
+    private Document chargerDevis(Long id) {
+        Devis devis = lectureSeule().execute(status -> devisRepository.findDetailById(id)
+                .orElseThrow(() -> new RuntimeException("Devis non trouvé avec l'id: " + id)));
+        String nomFichier = "devis_" + devis.getNumero().replace("/", "-") + ".pdf";
+        return new Document(nomFichier, () -> pdfGenerationService.genererPdfDevis(devis));
+    }
+
+    private TransactionTemplate lectureSeule() {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setReadOnly(true);
+        return transaction;
+    }
+
+    private static ThreadFactory nommerThreads(String prefixe, boolean virtuels) {
+        if (virtuels) {
+            return Thread.ofVirtual().name(prefixe, 1).factory();
+        }
+        AtomicInteger compteur = new AtomicInteger();
+        return tache -> {
+            Thread thread = new Thread(tache, prefixe + compteur.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    // ==================== STRUCTURES INTERNES ====================
+
+    private record Document(String nomFichier, Supplier<byte[]> rendu) {}
+
+    /**
+     * Travail de génération ; les champs sont écrits par le worker et lus
+     * par les threads HTTP, d'où volatile
+     */
+    private static final class Travail {
+        final String id;
+        final String type;
+        final Long documentId;
+        final Instant soumisLe = Instant.now();
+        final long soumisNanos = System.nanoTime();
+        volatile String etat = ETAT_EN_ATTENTE;
+        volatile String nomFichier;
+        volatile byte[] contenu;
+        volatile String erreur;
+        volatile long attenteNanos = -1;
+        volatile long renduNanos = -1;
+        volatile Instant termineLe;
+
+        Travail(String id, String type, Long documentId) {
+            this.id = id;
+            this.type = type;
+            this.documentId = documentId;
+        }
+
+        StatutTravailPdf statut() {
+            return new StatutTravailPdf(id, type, documentId, etat, soumisLe,
+                    attenteNanos < 0 ? null : TimeUnit.NANOSECONDS.toMillis(attenteNanos),
+                    renduNanos < 0 ? null : TimeUnit.NANOSECONDS.toMillis(renduNanos),
+                    nomFichier, erreur);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.DeviSmart.services;
+
+import com.lowagie.text.Font;
+
+import java.awt.Color;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Thème commun des documents PDF (factures et devis)
+ *
+ * Couleurs, polices et formats créés une seule fois et partagés par tous les
+ * rendus, y compris en parallèle. Ces objets ne doivent jamais être modifiés
+ * (setColor, setSize...) : pour une variante, créer une nouvelle Font.
+ */
+public final class PdfTheme {
+
+    // Couleurs
+    public static final Color PRIMAIRE = new Color(220, 38, 38);     // #dc2626 - Rouge
+    public static final Color SOMBRE = new Color(15, 23, 42);        // #0f172a
+    public static final Color GRIS = new Color(100, 116, 139);       // #64748b
+    public static final Color GRIS_CLAIR = new Color(241, 245, 249); // #f1f5f9
+    public static final Color BORDURE = new Color(226, 232, 240);    // #e2e8f0
+
+    // Polices
+    public static final Font TITRE = police(24, Font.BOLD, PRIMAIRE);
+    public static final Font TITRE_DOCUMENT = police(28, Font.BOLD, SOMBRE);
+    public static final Font ACCENT = police(14, Font.BOLD, PRIMAIRE);
+    public static final Font SECTION = police(12, Font.BOLD, SOMBRE);
+    public static final Font SOUS_TITRE = police(11, Font.BOLD, SOMBRE);
+    public static final Font TEXTE = police(11, Font.NORMAL, SOMBRE);
+    public static final Font EN_TETE_TABLEAU = police(10, Font.BOLD, Color.WHITE);
+    public static final Font LIBELLE = police(10, Font.NORMAL, GRIS);
+    public static final Font VALEUR = police(10, Font.BOLD, SOMBRE);
+    public static final Font DONNEE = police(10, Font.NORMAL, SOMBRE);
+    public static final Font TEXTE_SECONDAIRE = police(9, Font.NORMAL, GRIS);
+    public static final Font PIED = police(8, Font.NORMAL, GRIS);
+
+    // Formats (thread-safe)
+    public static final DateTimeFormatter DATE = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+
+    private PdfTheme() {}
+
+    private static Font police(float taille, int style, Color couleur) {
+        return new Font(Font.HELVETICA, taille, style, couleur);
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.DeviSmart.services;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Exécution avec reprise des opérations commutatives (ajout d'une ligne)
+ *
+ * Chaque tentative a sa propre transaction. Si une modification concurrente du
+ * même document est détectée (version @Version dépassée), la transaction est
+ * annulée, le contexte de persistance vidé, et l'opération rejouée sur l'état
+ * relu, au plus devismart.concurrence.tentatives fois, après une courte attente
+ * aléatoire. Les éditions parallèles d'un document n'ont donc pas à être
+ * sérialisées par un verrou.
+ *
+ * Une opération conditionnée par If-Match n'est jamais rejouée : le client a
+ * demandé qu'elle échoue si le document a changé.
+ */
+@Service
+public class RepriseOptimisteService {
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${devismart.concurrence.tentatives:3}")
+    private int tentatives;
+
+    /**
+     * @param operation Nom de l'opération (tag de devismart.concurrence.reprises)
+     * @param rejouable false : une seule tentative (précondition If-Match)
+     * @throws OptimisticLockingFailureException si le conflit persiste après la dernière tentative
+     */
+    public <T> T executer(String operation, boolean rejouable, Supplier<T> action) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        int maximum = rejouable ? Math.max(1, tentatives) : 1;
+        for (int tentative = 1; ; tentative++) {
+            try {
+                return transaction.execute(status -> action.get());
+            } catch (OptimisticLockingFailureException e) {
+                if (tentative >= maximum || !attendre(tentative)) {
+                    throw e;
+                }
+                meterRegistry.counter("devismart.concurrence.reprises", "operation", operation).increment();
+            }
+        }
+    }
+
+    /**
+     * Attente de 5 à 10 ms, doublée à chaque tentative : les écritures
+     * concurrentes se désynchronisent au lieu d'entrer à nouveau en conflit
+     *
+     * @return false si le thread a été interrompu
+     */
+    private static boolean attendre(int tentative) {
+        long base = 5L << (tentative - 1);
+        try {
+            Thread.sleep(base + ThreadLocalRandom.current().nextLong(base + 1));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
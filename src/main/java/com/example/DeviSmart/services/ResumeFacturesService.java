@@ -0,0 +1,297 @@
+package com.example.DeviSmart.services;
+
+import com.example.DeviSmart.dto.StatistiqueClient;
+import com.example.DeviSmart.dto.StatistiqueMensuelle;
+import com.example.DeviSmart.dto.StatistiqueStatut;
+import com.example.DeviSmart.entities.ResumeFacture;
+import com.example.DeviSmart.events.FactureModifieeEvent;
+import com.example.DeviSmart.events.FacturesModifieesEvent;
+import com.example.DeviSmart.repositories.FactureRepository;
+import com.example.DeviSmart.repositories.ResumeFactureRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Service ResumeFactures - Statistiques maintenues de façon incrémentale
+ *
+ * Chaque FactureModifieeEvent retire la contribution de l'ancien état et ajoute
+ * celle du nouvel état, dans la transaction de la modification. Les lectures
+ * ne parcourent donc que quelques lignes, quel que soit l'historique.
+ * reconstruire() recalcule tout depuis la table des factures.
+ *
+ * Une facture sans date d'émission compte par statut et par client, mais
+ * n'entre dans aucun mois ; une facture sans statut est comptée sous "-".
+ *
+ * Une reconstruction exclut les mises à jour incrémentales (verrou lecture /
+ * écriture, tenu par chaque transaction d'écriture jusqu'à sa fin) : aucun
+ * incrément validé pendant la reconstruction n'est perdu. Le verrou est local
+ * à l'instance.
+ */
+@Service
+public class ResumeFacturesService {
+
+    public static final String DIMENSION_STATUT = "STATUT";
+    public static final String DIMENSION_MOIS = "MOIS";
+    public static final String DIMENSION_CLIENT = "CLIENT";
+
+    // Clé des factures manuelles, sans client enregistré
+    private static final String SANS_CLIENT = "-";
+    // Statut des factures qui n'en ont pas (import, données anciennes)
+    private static final String SANS_STATUT = "-";
+
+    @Autowired
+    private ResumeFactureRepository resumeRepository;
+
+    @Autowired
+    private FactureRepository factureRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // Lecture : transactions d'écriture en cours ; écriture : reconstruction
+    private final ReentrantReadWriteLock reconstruction = new ReentrantReadWriteLock();
+
+    // ==================== MISE À JOUR ====================
+
+    @EventListener
+    @Transactional
+    public void surFactureModifiee(FactureModifieeEvent event) {
+        exclureReconstruction();
+        FactureModifieeEvent.Etat avant = event.avant();
+        FactureModifieeEvent.Etat apres = event.apres();
+        if (avant != null && apres != null && avant.memeContribution(apres)) {
+            return;
+        }
+        if (avant != null) {
+            appliquer(avant, -1, avant.montant().negate());
+        }
+        if (apres != null) {
+            appliquer(apres, 1, apres.montant());
+        }
+    }
+
+    /**
+     * Écriture groupée (création par lot, import, passage en retard) :
+     * contributions cumulées par ligne d'agrégat, une mise à jour par ligne
+     * touchée au lieu de trois (ou six) par facture
+     */
+    @EventListener
+    @Transactional
+    public void surFacturesModifiees(FacturesModifieesEvent event) {
+        exclureReconstruction();
+        Map<List<String>, Increment> increments = new LinkedHashMap<>();
+        for (FactureModifieeEvent modification : event.modifications()) {
+            FactureModifieeEvent.Etat avant = modification.avant();
+            FactureModifieeEvent.Etat apres = modification.apres();
+            if (avant != null && apres != null && avant.memeContribution(apres)) {
+                continue;
+            }
+            if (avant != null) {
+                cumuler(increments, avant, -1);
+            }
+            if (apres != null) {
+                cumuler(increments, apres, 1);
+            }
+        }
+        increments.forEach((cle, increment) -> {
+            if (increment.nombre != 0 || increment.montant.signum() != 0) {
+                incrementer(cle.get(0), cle.get(1), cle.get(2), increment.libelle, increment.nombre, increment.montant);
+            }
+        });
+    }
+
+    private static void cumuler(Map<List<String>, Increment> increments, FactureModifieeEvent.Etat etat, int sens) {
+        String libelle = etat.clientId() != null ? etat.nomClient() : null;
+        cumuler(increments, DIMENSION_STATUT, "", etat, null, sens);
+        if (etat.dateEmission() != null) {
+            cumuler(increments, DIMENSION_MOIS, cleMois(etat.dateEmission()), etat, null, sens);
+        }
+        cumuler(increments, DIMENSION_CLIENT, cleClient(etat.clientId()), etat, libelle, sens);
+    }
+
+    private static void cumuler(Map<List<String>, Increment> increments, String dimension, String cle,
+                                FactureModifieeEvent.Etat etat, String libelle, int sens) {
+        Increment increment = increments.computeIfAbsent(List.of(dimension, cle, statut(etat.statut())), k -> new Increment(libelle));
+        increment.nombre += sens;
+        increment.montant = sens > 0 ? increment.montant.add(etat.montant()) : increment.montant.subtract(etat.montant());
+    }
+
+    private void appliquer(FactureModifieeEvent.Etat etat, long nombre, BigDecimal montant) {
+        String statut = statut(etat.statut());
+        incrementer(DIMENSION_STATUT, "", statut, null, nombre, montant);
+        if (etat.dateEmission() != null) {
+            incrementer(DIMENSION_MOIS, cleMois(etat.dateEmission()), statut, null, nombre, montant);
+        }
+        String libelle = etat.clientId() != null ? etat.nomClient() : null;
+        incrementer(DIMENSION_CLIENT, cleClient(etat.clientId()), statut, libelle, nombre, montant);
+    }
+
+    /**
+     * Prend le verrou de lecture jusqu'à la fin de la transaction courante :
+     * une reconstruction attend que les incréments en cours soient validés
+     */
+    private void exclureReconstruction() {
+        if (TransactionSynchronizationManager.hasResource(reconstruction)) {
+            return;
+        }
+        Lock lecture = reconstruction.readLock();
+        lecture.lock();
+        TransactionSynchronizationManager.bindResource(reconstruction, lecture);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResource(reconstruction);
+                lecture.unlock();
+            }
+        });
+    }
+
+    private void incrementer(String dimension, String cle, String statut, String libelle,
+                             long nombre, BigDecimal montant) {
+        if (resumeRepository.incrementer(dimension, cle, statut, nombre, montant) == 0) {
+            creerLigne(dimension, cle, statut, libelle);
+            resumeRepository.incrementer(dimension, cle, statut, nombre, montant);
+        }
+    }
+
+    /**
+     * Crée une ligne à zéro dans une transaction séparée : si une autre
+     * transaction l'a créée en même temps, la contrainte d'unicité échoue
+     * sans annuler la modification de facture en cours
+     */
+    private void creerLigne(String dimension, String cle, String statut, String libelle) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        try {
+            transaction.executeWithoutResult(status ->
+                    resumeRepository.saveAndFlush(new ResumeFacture(dimension, cle, statut, libelle, 0, BigDecimal.ZERO)));
+        } catch (DataIntegrityViolationException e) {
+            // Ligne déjà créée par une transaction concurrente
+        }
+    }
+
+    // ==================== RECONSTRUCTION ====================
+
+    /**
+     * Recalcule entièrement les agrégats à partir des factures, dans sa propre
+     * transaction validée avant la libération du verrou de reconstruction
+     */
+    public void reconstruire() {
+        reconstruction.writeLock().lock();
+        try {
+            TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+            transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+            transaction.executeWithoutResult(status -> recalculer());
+        } finally {
+            reconstruction.writeLock().unlock();
+        }
+    }
+
+    private void recalculer() {
+        resumeRepository.deleteAllInBatch();
+        List<ResumeFacture> lignes = new ArrayList<>();
+        for (StatistiqueStatut s : factureRepository.statistiquesParStatut()) {
+            lignes.add(new ResumeFacture(DIMENSION_STATUT, "", statut(s.statut()), null, s.nombre(), montant(s.montant())));
+        }
+        for (StatistiqueMensuelle s : factureRepository.statistiquesMensuellesCompletes()) {
+            if (s.annee() == null) {
+                continue;
+            }
+            String cle = String.format("%04d-%02d", s.annee(), s.mois());
+            lignes.add(new ResumeFacture(DIMENSION_MOIS, cle, statut(s.statut()), null, s.nombre(), montant(s.montant())));
+        }
+        for (StatistiqueClient s : factureRepository.statistiquesParClient()) {
+            String libelle = s.clientId() != null ? s.nomClient() : null;
+            lignes.add(new ResumeFacture(DIMENSION_CLIENT, cleClient(s.clientId()), statut(s.statut()), libelle,
+                    s.nombre(), montant(s.montant())));
+        }
+        resumeRepository.saveAll(lignes);
+    }
+
+    /**
+     * Construit les agrégats au démarrage s'ils n'existent pas encore
+     */
+    public void initialiser() {
+        if (resumeRepository.count() == 0 && factureRepository.count() > 0) {
+            reconstruire();
+        }
+    }
+
+    // ==================== LECTURE ====================
+
+    @Transactional(readOnly = true)
+    public Map<String, StatistiqueStatut> parStatut() {
+        Map<String, StatistiqueStatut> parStatut = new LinkedHashMap<>();
+        for (ResumeFacture r : resumeRepository.findByDimensionAndNombreGreaterThan(DIMENSION_STATUT, 0)) {
+            parStatut.put(r.getStatut(), new StatistiqueStatut(r.getStatut(), r.getNombre(), r.getMontant()));
+        }
+        return parStatut;
+    }
+
+    @Transactional(readOnly = true)
+    public List<StatistiqueMensuelle> mensuelles(int annee) {
+        List<StatistiqueMensuelle> mensuelles = new ArrayList<>();
+        for (ResumeFacture r : resumeRepository.findByDimensionAndCleStartingWithAndNombreGreaterThan(
+                DIMENSION_MOIS, String.format("%04d-", annee), 0)) {
+            int mois = Integer.parseInt(r.getCle().substring(5));
+            mensuelles.add(new StatistiqueMensuelle(annee, mois, r.getStatut(), r.getNombre(), r.getMontant()));
+        }
+        mensuelles.sort((a, b) -> Integer.compare(a.mois(), b.mois()));
+        return mensuelles;
+    }
+
+    @Transactional(readOnly = true)
+    public List<StatistiqueClient> parClient() {
+        List<StatistiqueClient> clients = new ArrayList<>();
+        for (ResumeFacture r : resumeRepository.findByDimensionAndNombreGreaterThan(DIMENSION_CLIENT, 0)) {
+            Long clientId = SANS_CLIENT.equals(r.getCle()) ? null : Long.valueOf(r.getCle());
+            clients.add(new StatistiqueClient(clientId, r.getLibelle(), r.getStatut(), r.getNombre(), r.getMontant()));
+        }
+        return clients;
+    }
+
+    // ==================== UTILITAIRES ====================
+
+    private static final class Increment {
+        final String libelle;
+        long nombre;
+        BigDecimal montant = BigDecimal.ZERO;
+
+        Increment(String libelle) {
+            this.libelle = libelle;
+        }
+    }
+
+    private static String cleMois(LocalDate date) {
+        return String.format("%04d-%02d", date.getYear(), date.getMonthValue());
+    }
+
+    private static String statut(String statut) {
+        return statut != null ? statut : SANS_STATUT;
+    }
+
+    private static String cleClient(Long clientId) {
+        return clientId != null ? clientId.toString() : SANS_CLIENT;
+    }
+
+    private static BigDecimal montant(BigDecimal montant) {
+        return montant != null ? montant : BigDecimal.ZERO;
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.DeviSmart.services;
+
+import com.example.DeviSmart.dto.BilanRetard;
+import com.example.DeviSmart.dto.FactureResume;
+import com.example.DeviSmart.dto.StatistiqueStatut;
+import com.example.DeviSmart.events.FactureModifieeEvent;
+import com.example.DeviSmart.events.FacturesModifieesEvent;
+import com.example.DeviSmart.repositories.FactureRepository;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Service RetardFactures - Passage en EN_RETARD des factures non payées échues
+ *
+ * Tâche planifiée (devismart.retard.cron) : les factures candidates sont lues
+ * en projection par paquets de devismart.retard.taille-paquet (index statut,
+ * dateEcheance), puis modifiées par un seul UPDATE par paquet, sans charger
+ * d'entité. Chaque paquet a sa transaction, qui met aussi à jour les agrégats
+ * (FacturesModifieesEvent) : une interruption laisse les données cohérentes,
+ * le passage suivant reprend le reste.
+ *
+ * En simulation (devismart.retard.simulation ou ?simulation=true), les
+ * factures concernées sont seulement comptées.
+ */
+@Service
+@Timed("devismart.service")
+public class RetardFacturesService {
+
+    private static final Logger log = LoggerFactory.getLogger(RetardFacturesService.class);
+
+    @Autowired
+    private FactureRepository factureRepository;
+
+    @Autowired
+    private ApplicationEventPublisher evenements;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${devismart.retard.taille-paquet:500}")
+    private int taillePaquet;
+
+    @Value("${devismart.retard.simulation:false}")
+    private boolean simulationParDefaut;
+
+    @Scheduled(cron = "${devismart.retard.cron:0 15 0 * * *}")
+    public void passageQuotidien() {
+        BilanRetard bilan = passerEnRetard(simulationParDefaut);
+        log.info("Factures échues avant le {} : {} {} en retard ({} TTC, {} paquets)", bilan.dateReference(),
+                bilan.factures(), bilan.simulation() ? "à passer" : "passées", bilan.montant(), bilan.paquets());
+    }
+
+    /**
+     * Passe en EN_RETARD les factures NON_PAYEE dont l'échéance est antérieure à aujourd'hui
+     *
+     * @param simulation true : compte les factures sans rien modifier
+     */
+    public BilanRetard passerEnRetard(boolean simulation) {
+        LocalDate aujourdhui = LocalDate.now();
+        BilanRetard bilan = simulation ? simuler(aujourdhui) : executer(aujourdhui);
+        // Factures touchées par passage (avec nombre de passages et total) ; tag simulation pour ne pas mélanger
+        meterRegistry.summary("devismart.retard.factures", "simulation", String.valueOf(simulation))
+                .record(bilan.factures());
+        return bilan;
+    }
+
+    private BilanRetard simuler(LocalDate aujourdhui) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setReadOnly(true);
+        List<StatistiqueStatut> statistiques = transaction.execute(status ->
+                factureRepository.statistiquesEcheancesDepassees(aujourdhui));
+        long nombre = 0;
+        BigDecimal montant = BigDecimal.ZERO;
+        for (StatistiqueStatut statistique : statistiques) {
+            nombre += statistique.nombre();
+            montant = montant.add(statistique.montant() != null ? statistique.montant() : BigDecimal.ZERO);
+        }
+        return new BilanRetard(true, aujourdhui, nombre, montant, 0);
+    }
+
+    private BilanRetard executer(LocalDate aujourdhui) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        int taille = Math.max(1, taillePaquet);
+        long nombre = 0;
+        BigDecimal montant = BigDecimal.ZERO;
+        int paquets = 0;
+        while (true) {
+            // Les factures modifiées ne sont plus candidates : chaque paquet lit les suivantes
+            Paquet paquet = transaction.execute(status -> marquerPaquet(aujourdhui, taille));
+            if (paquet.verrouillees() == 0) {
+                break;
+            }
+            paquets++;
+            nombre += paquet.factures().size();
+            for (FactureResume facture : paquet.factures()) {
+                montant = montant.add(facture.totalTTC() != null ? facture.totalTTC() : BigDecimal.ZERO);
+            }
+            if (paquet.verrouillees() < taille) {
+                break;
+            }
+        }
+        return new BilanRetard(false, aujourdhui, nombre, montant, paquets);
+    }
+
+    /**
+     * Un paquet : candidates verrouillées (SELECT ... FOR UPDATE), relues,
+     * un UPDATE, agrégats mis à jour. Un passage concurrent attend les verrous
+     * puis ne garde que les factures encore NON_PAYEE.
+     */
+    private Paquet marquerPaquet(LocalDate aujourdhui, int taille) {
+        List<Long> verrouillees = factureRepository.verrouillerEcheancesDepassees(aujourdhui, taille);
+        if (verrouillees.isEmpty()) {
+            return new Paquet(0, List.of());
+        }
+        List<FactureResume> candidates = factureRepository.findResumesNonPayeesByIdIn(verrouillees);
+        if (candidates.isEmpty()) {
+            return new Paquet(verrouillees.size(), candidates);
+        }
+        List<Long> ids = new ArrayList<>(candidates.size());
+        List<FactureModifieeEvent> modifications = new ArrayList<>(candidates.size());
+        for (FactureResume facture : candidates) {
+            ids.add(facture.id());
+            FactureModifieeEvent.Etat avant = new FactureModifieeEvent.Etat(facture.id(), facture.statut(),
+                    facture.dateEmission(), facture.clientId(), facture.nomClient(), facture.totalTTC());
+            FactureModifieeEvent.Etat apres = new FactureModifieeEvent.Etat(facture.id(), "EN_RETARD",
+                    facture.dateEmission(), facture.clientId(), facture.nomClient(), facture.totalTTC());
+            modifications.add(new FactureModifieeEvent(avant, apres));
+        }
+        int modifiees = factureRepository.marquerEnRetard(ids);
+        if (modifiees != ids.size()) {
+            // Lignes verrouillées par la lecture : ne devrait pas arriver, les agrégats seraient faussés
+            throw new IllegalStateException(
+                    "Passage en retard : " + modifiees + " factures modifiées sur " + ids.size() + " lues");
+        }
+        evenements.publishEvent(new FacturesModifieesEvent(modifications));
+        return new Paquet(verrouillees.size(), candidates);
+    }
+
+    private record Paquet(int verrouillees, List<FactureResume> factures) {
+    }
+}
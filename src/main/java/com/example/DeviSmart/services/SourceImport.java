@@ -0,0 +1,322 @@
+package com.example.DeviSmart.services;
+
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lecture incrémentale d'un fichier d'import, document par document
+ *
+ * CSV : la première ligne donne les noms de colonnes. Les lignes consécutives
+ * ayant la même valeur dans la colonne de regroupement (numéro du document)
+ * forment un seul document, chacune apportant une ligne de détail.
+ * JSONL : un objet JSON par ligne, lignes de détail dans le tableau "lignes".
+ *
+ * Les enregistrements (lignes CSV hors en-tête, lignes JSON non vides) sont
+ * numérotés à partir de 1 : ce numéro sert de point de reprise. Seul le
+ * document en cours est gardé en mémoire.
+ *
+ * Un enregistrement est borné à longueurMax caractères : au-delà (guillemet
+ * CSV jamais refermé, ligne JSON démesurée), la lecture reprend à la ligne
+ * suivante et l'enregistrement est rendu comme document en erreur.
+ */
+final class SourceImport implements Closeable {
+
+    static final String CSV = "CSV";
+    static final String JSONL = "JSONL";
+
+    /**
+     * Document lu : enregistrements [premier, dernier], champs du document
+     * et lignes de détail ; erreur renseignée si le texte est illisible
+     */
+    record Document(long premier, long dernier, Map<String, String> champs,
+                    List<Map<String, String>> lignes, String brut, String erreur) {
+    }
+
+    private record Enregistrement(long numero, List<String> valeurs, String brut, String erreur) {
+    }
+
+    private record LigneJson(String texte, boolean tropLongue) {
+    }
+
+    // Contenu gardé dans le rapport d'erreurs pour un enregistrement trop long
+    private static final int APERCU = 200;
+
+    private final BufferedReader lecteur;
+    private final String format;
+    private final char separateur;
+    private final String cleRegroupement;
+    private final JsonMapper json;
+    private final int longueurMax;
+
+    private List<String> entetes;
+    private long numero;
+    // CSV : enregistrement déjà lu qui commence le document suivant
+    private Enregistrement enAttente;
+
+    private SourceImport(InputStream entree, String format, char separateur, String cleRegroupement,
+                         JsonMapper json, int longueurMax) {
+        this.lecteur = new BufferedReader(new InputStreamReader(entree, StandardCharsets.UTF_8), 64 * 1024);
+        this.format = format;
+        this.separateur = separateur;
+        this.cleRegroupement = cleRegroupement;
+        this.json = json;
+        this.longueurMax = Math.max(1, longueurMax);
+    }
+
+    /**
+     * @param cleRegroupement Colonne CSV identifiant le document (null : un document par ligne)
+     * @param longueurMax Taille maximale d'un enregistrement, en caractères
+     */
+    static SourceImport ouvrir(InputStream entree, String format, char separateur,
+                               String cleRegroupement, JsonMapper json, int longueurMax) throws IOException {
+        SourceImport source = new SourceImport(entree, format, separateur, cleRegroupement, json, longueurMax);
+        if (CSV.equals(format)) {
+            Enregistrement entete = source.lireCsv();
+            if (entete == null) {
+                throw new IllegalArgumentException("Fichier CSV vide : ligne d'en-tête attendue");
+            }
+            if (entete.erreur() != null) {
+                throw new IllegalArgumentException("Ligne d'en-tête illisible : " + entete.erreur());
+            }
+            List<String> noms = new ArrayList<>();
+            for (String nom : entete.valeurs()) {
+                noms.add(nom.replace("\uFEFF", "").strip());
+            }
+            source.entetes = noms;
+            source.numero = 0;
+        }
+        return source;
+    }
+
+    /**
+     * Document suivant, ou null en fin de fichier
+     */
+    Document suivant() throws IOException {
+        return CSV.equals(format) ? suivantCsv() : suivantJson();
+    }
+
+    @Override
+    public void close() throws IOException {
+        lecteur.close();
+    }
+
+    // ==================== CSV ====================
+
+    private Document suivantCsv() throws IOException {
+        Enregistrement premier = enAttente != null ? enAttente : lireCsv();
+        enAttente = null;
+        if (premier == null) {
+            return null;
+        }
+        if (premier.erreur() != null) {
+            return invalide(premier, premier.erreur());
+        }
+        if (premier.valeurs().size() != entetes.size()) {
+            return invalide(premier, entetes.size() + " colonnes attendues, " + premier.valeurs().size() + " lues");
+        }
+        Map<String, String> champs = champs(premier);
+        List<Map<String, String>> lignes = new ArrayList<>();
+        lignes.add(champs);
+        StringBuilder brut = new StringBuilder(premier.brut());
+        long dernier = premier.numero();
+
+        String cle = cleRegroupement != null ? champs.get(cleRegroupement) : null;
+        while (cle != null) {
+            Enregistrement suivant = lireCsv();
+            if (suivant == null) {
+                break;
+            }
+            if (suivant.erreur() != null || suivant.valeurs().size() != entetes.size() || !cle.equals(champs(suivant).get(cleRegroupement))) {
+                enAttente = suivant;
+                break;
+            }
+            lignes.add(champs(suivant));
+            brut.append('\n').append(suivant.brut());
+            dernier = suivant.numero();
+        }
+        return new Document(premier.numero(), dernier, champs, lignes, brut.toString(), null);
+    }
+
+    private Map<String, String> champs(Enregistrement enregistrement) {
+        Map<String, String> champs = new LinkedHashMap<>();
+        for (int i = 0; i < entetes.size(); i++) {
+            String valeur = enregistrement.valeurs().get(i).strip();
+            if (!valeur.isEmpty()) {
+                champs.put(entetes.get(i), valeur);
+            }
+        }
+        return champs;
+    }
+
+    /**
+     * Enregistrement CSV suivant (RFC 4180 : guillemets doublés, séparateurs
+     * et retours à la ligne possibles entre guillemets), lignes vides ignorées
+     */
+    private Enregistrement lireCsv() throws IOException {
+        List<String> valeurs = new ArrayList<>();
+        StringBuilder valeur = new StringBuilder();
+        StringBuilder brut = new StringBuilder();
+        boolean entreGuillemets = false;
+        int c;
+        while ((c = lecteur.read()) != -1) {
+            char caractere = (char) c;
+            if (brut.length() >= longueurMax) {
+                // Guillemet jamais refermé ou ligne démesurée : reprise à la ligne suivante
+                if (caractere != '\n' && caractere != '\r') {
+                    ignorerFinDeLigne();
+                }
+                return new Enregistrement(++numero, List.of(), apercu(brut) + "...", tropLong());
+            }
+            if (entreGuillemets) {
+                brut.append(caractere);
+                if (caractere == '"') {
+                    lecteur.mark(1);
+                    int suivant = lecteur.read();
+                    if (suivant == '"') {
+                        valeur.append('"');
+                        brut.append('"');
+                    } else {
+                        entreGuillemets = false;
+                        if (suivant != -1) {
+                            lecteur.reset();
+                        }
+                    }
+                } else {
+                    valeur.append(caractere);
+                }
+            } else if (caractere == '"' && valeur.isEmpty()) {
+                entreGuillemets = true;
+                brut.append(caractere);
+            } else if (caractere == separateur) {
+                valeurs.add(valeur.toString());
+                valeur.setLength(0);
+                brut.append(caractere);
+            } else if (caractere == '\n' || caractere == '\r') {
+                if (caractere == '\r') {
+                    lecteur.mark(1);
+                    if (lecteur.read() != '\n') {
+                        lecteur.reset();
+                    }
+                }
+                if (valeurs.isEmpty() && valeur.isEmpty()) {
+                    continue;
+                }
+                valeurs.add(valeur.toString());
+                return new Enregistrement(++numero, valeurs, brut.toString(), null);
+            } else {
+                valeur.append(caractere);
+                brut.append(caractere);
+            }
+        }
+        if (valeurs.isEmpty() && valeur.isEmpty()) {
+            return null;
+        }
+        valeurs.add(valeur.toString());
+        return new Enregistrement(++numero, valeurs, brut.toString(), null);
+    }
+
+    private void ignorerFinDeLigne() throws IOException {
+        int c;
+        while ((c = lecteur.read()) != -1 && c != '\n' && c != '\r') {
+            // caractères abandonnés
+        }
+    }
+
+    private static String apercu(StringBuilder texte) {
+        return texte.substring(0, Math.min(APERCU, texte.length()));
+    }
+
+    private String tropLong() {
+        return "Enregistrement de plus de " + longueurMax + " caractères, ignoré";
+    }
+
+    private Document invalide(Enregistrement enregistrement, String erreur) {
+        return new Document(enregistrement.numero(), enregistrement.numero(), Map.of(), List.of(),
+                enregistrement.brut(), erreur);
+    }
+
+    // ==================== JSON LINES ====================
+
+    private Document suivantJson() throws IOException {
+        LigneJson lue;
+        do {
+            lue = lireLigne();
+            if (lue == null) {
+                return null;
+            }
+        } while (!lue.tropLongue() && lue.texte().isBlank());
+        long courant = ++numero;
+        String ligne = lue.texte();
+        if (lue.tropLongue()) {
+            return new Document(courant, courant, Map.of(), List.of(), ligne + "...", tropLong());
+        }
+
+        JsonNode noeud;
+        try {
+            noeud = json.readTree(ligne);
+        } catch (JacksonException e) {
+            return new Document(courant, courant, Map.of(), List.of(), ligne, "JSON invalide : " + e.getOriginalMessage());
+        }
+        if (noeud == null || !noeud.isObject()) {
+            return new Document(courant, courant, Map.of(), List.of(), ligne, "Objet JSON attendu");
+        }
+        List<Map<String, String>> lignes = new ArrayList<>();
+        JsonNode details = noeud.get("lignes");
+        if (details != null && details.isArray()) {
+            for (JsonNode detail : details) {
+                lignes.add(scalaires(detail));
+            }
+        }
+        return new Document(courant, courant, scalaires(noeud), lignes, ligne, null);
+    }
+
+    /**
+     * Ligne suivante (sans son terminateur), lue au plus jusqu'à longueurMax
+     * caractères ; null en fin de fichier
+     */
+    private LigneJson lireLigne() throws IOException {
+        StringBuilder ligne = new StringBuilder();
+        int c;
+        while ((c = lecteur.read()) != -1 && c != '\n') {
+            if (ligne.length() >= longueurMax) {
+                ignorerFinDeLigne();
+                return new LigneJson(apercu(ligne), true);
+            }
+            ligne.append((char) c);
+        }
+        if (c == -1 && ligne.isEmpty()) {
+            return null;
+        }
+        int fin = ligne.length();
+        if (fin > 0 && ligne.charAt(fin - 1) == '\r') {
+            ligne.setLength(fin - 1);
+        }
+        return new LigneJson(ligne.toString(), false);
+    }
+
+    private static Map<String, String> scalaires(JsonNode noeud) {
+        Map<String, String> champs = new LinkedHashMap<>();
+        for (Map.Entry<String, JsonNode> propriete : noeud.properties()) {
+            JsonNode valeur = propriete.getValue();
+            if (valeur.isValueNode() && !valeur.isNull()) {
+                String texte = valeur.asString().strip();
+                if (!texte.isEmpty()) {
+                    champs.put(propriete.getKey(), texte);
+                }
+            }
+        }
+        return champs;
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.DeviSmart.config;
+
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultMatcher;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Assertions MockMvc sur le nombre de requêtes SQL d'une requête HTTP
+ *
+ * Exemple : mockMvc.perform(get("/api/factures/page")).andExpect(RequetesSql.lecturesAuPlus(3));
+ * Nécessite MetriquesRequetesFilter dans la chaîne MockMvc (@AutoConfigureMockMvc).
+ */
+public final class RequetesSql {
+
+	private RequetesSql() {}
+
+	public static long lectures(MvcResult resultat) {
+		Object lectures = resultat.getRequest().getAttribute(CompteurRequetesSql.ATTRIBUT_LECTURES);
+		assertNotNull(lectures, "Requêtes SQL non comptées : MetriquesRequetesFilter absent de la chaîne MockMvc ?");
+		return (Long) lectures;
+	}
+
+	public static ResultMatcher lecturesAuPlus(long maximum) {
+		return resultat -> {
+			long lectures = lectures(resultat);
+			assertTrue(lectures <= maximum, resultat.getRequest().getRequestURI()
+					+ " : " + lectures + " lectures SQL pour un budget de " + maximum);
+		};
+	}
+}
@@ -0,0 +1,146 @@
+package com.example.DeviSmart.controllers;
+
+import com.example.DeviSmart.config.RequetesSql;
+import com.example.DeviSmart.dto.DevisResume;
+import com.example.DeviSmart.dto.FactureResume;
+import com.example.DeviSmart.entities.Client;
+import com.example.DeviSmart.entities.Devis;
+import com.example.DeviSmart.entities.Ligne;
+import com.example.DeviSmart.entities.LigneFacture;
+import com.example.DeviSmart.services.ClientService;
+import com.example.DeviSmart.services.DevisService;
+import com.example.DeviSmart.services.FactureService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Budgets de requêtes SQL des endpoints de FactureController et DevisController
+ *
+ * Une régression N+1 se voit de deux façons : un dépassement du budget, et
+ * surtout un nombre de requêtes qui augmente avec le nombre d'éléments listés.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class RequetesSqlControllersTest {
+
+	// Page + clients (par lot) + lignes (par lot)
+	private static final long BUDGET_LISTE = 4;
+	private static final long BUDGET_DETAIL = 3;
+	private static final long BUDGET_STATS = 3;
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private ClientService clientService;
+
+	@Autowired
+	private FactureService factureService;
+
+	@Autowired
+	private DevisService devisService;
+
+	@Test
+	void listesIndependantesDuNombreDElements() throws Exception {
+		Client client = ajouterDonnees(2, 2).get(0);
+		Map<String, Long> avant = mesurerListes(client.getId());
+
+		ajouterDonnees(6, 3);
+		ajouterDocuments(client, 5);
+		Map<String, Long> apres = mesurerListes(client.getId());
+
+		avant.forEach((url, lectures) -> assertEquals(lectures, apres.get(url),
+				url + " : le nombre de lectures SQL dépend du nombre d'éléments (N+1)"));
+	}
+
+	@Test
+	void detailsDansLeBudget() throws Exception {
+		Client client = ajouterDonnees(1, 1).get(0);
+		FactureResume facture = factureService.findByClientId(client.getId()).get(0);
+		DevisResume devis = devisService.findByClientId(client.getId()).get(0);
+
+		mockMvc.perform(get("/api/factures/" + facture.id()))
+				.andExpect(status().isOk())
+				.andExpect(RequetesSql.lecturesAuPlus(BUDGET_DETAIL));
+		mockMvc.perform(get("/api/factures/" + facture.id() + "/totaux"))
+				.andExpect(status().isOk())
+				.andExpect(RequetesSql.lecturesAuPlus(BUDGET_DETAIL));
+		mockMvc.perform(get("/api/devis/" + devis.id()))
+				.andExpect(status().isOk())
+				.andExpect(RequetesSql.lecturesAuPlus(BUDGET_DETAIL));
+	}
+
+	@Test
+	void statistiquesDansLeBudget() throws Exception {
+		ajouterDonnees(2, 2);
+		for (String url : new String[]{"/api/factures/stats", "/api/factures/stats/mensuelles", "/api/factures/stats/clients"}) {
+			mockMvc.perform(get(url))
+					.andExpect(status().isOk())
+					.andExpect(RequetesSql.lecturesAuPlus(BUDGET_STATS));
+		}
+	}
+
+	/**
+	 * Lectures SQL de chaque endpoint de liste, vérifiées contre le budget
+	 */
+	private Map<String, Long> mesurerListes(Long clientId) throws Exception {
+		List<String> urls = List.of(
+				"/api/factures/page",
+				"/api/factures/page?clientId=" + clientId,
+				"/api/factures/page?statut=NON_PAYEE",
+				"/api/factures/client/" + clientId,
+				"/api/factures/statut/NON_PAYEE",
+				"/api/devis/page",
+				"/api/devis/page?clientId=" + clientId,
+				"/api/devis/client/" + clientId,
+				"/api/devis/statut/BROUILLON");
+		Map<String, Long> lectures = new LinkedHashMap<>();
+		for (String url : urls) {
+			MvcResult resultat = mockMvc.perform(get(url))
+					.andExpect(status().isOk())
+					.andExpect(RequetesSql.lecturesAuPlus(BUDGET_LISTE))
+					.andReturn();
+			lectures.put(url, RequetesSql.lectures(resultat));
+		}
+		return lectures;
+	}
+
+	private List<Client> ajouterDonnees(int nombreClients, int documentsParClient) {
+		List<Client> clients = new ArrayList<>();
+		for (int i = 0; i < nombreClients; i++) {
+			Client client = clientService.save(new Client("Client budget SQL " + i, "budget" + i + "@exemple.tn",
+					"+216 71 000 000", "Tunis", "0000000A/M/000"));
+			ajouterDocuments(client, documentsParClient);
+			clients.add(client);
+		}
+		return clients;
+	}
+
+	private void ajouterDocuments(Client client, int nombre) {
+		for (int i = 0; i < nombre; i++) {
+			List<LigneFacture> lignesFacture = new ArrayList<>();
+			Devis devis = new Devis(null, LocalDate.now(), LocalDate.now().plusDays(30), "BROUILLON", client);
+			for (int j = 1; j <= 3; j++) {
+				lignesFacture.add(new LigneFacture("Prestation " + j, BigDecimal.valueOf(j), new BigDecimal("100.000")));
+				devis.getLignes().add(new Ligne("Article " + j, j, 100.0));
+			}
+			factureService.creerFacture(client.getId(), lignesFacture);
+			devisService.save(devis);
+		}
+	}
+}
@@ -0,0 +1,59 @@
+package com.example.DeviSmart.entities;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Les calculs en millièmes doivent donner exactement les résultats de
+ * l'ancien calcul BigDecimal (multiply puis setScale(3, HALF_UP))
+ */
+class MillimesTest {
+
+	@Test
+	void multiplieCommeBigDecimal() {
+		SplittableRandom aleatoire = new SplittableRandom(42);
+		for (int i = 0; i < 100_000; i++) {
+			long quantite = aleatoire.nextLong(-1_000_000, 1_000_000);
+			long prix = aleatoire.nextLong(-100_000_000, 100_000_000);
+			BigDecimal attendu = Millimes.enDecimal(quantite).multiply(Millimes.enDecimal(prix))
+					.setScale(3, RoundingMode.HALF_UP);
+			assertEquals(attendu, Millimes.enDecimal(Millimes.multiplier(quantite, prix)),
+					quantite + " × " + prix);
+		}
+	}
+
+	@Test
+	void appliqueLeTauxCommeFacture() {
+		BigDecimal taux = new BigDecimal("0.19");
+		for (String montant : new String[]{"0", "0.001", "0.005", "2.632", "125.750", "999999.999", "-3.950"}) {
+			BigDecimal attendu = new BigDecimal(montant).multiply(taux).setScale(3, RoundingMode.HALF_UP);
+			assertEquals(attendu, Millimes.enDecimal(Millimes.appliquerTaux(Millimes.de(new BigDecimal(montant)), taux)),
+					montant);
+		}
+		assertEquals(0, Millimes.appliquerTaux(12_345, null));
+	}
+
+	@Test
+	void arronditAuMillimeALaConversion() {
+		assertEquals(1_235, Millimes.de(new BigDecimal("1.2345")));
+		assertEquals(-1_235, Millimes.de(new BigDecimal("-1.2345")));
+		assertEquals(2_000, Millimes.de(new BigDecimal("2")));
+		assertEquals(new BigDecimal("2.000"), Millimes.enDecimal(2_000));
+	}
+
+	@Test
+	void produitHorsLongCalculeExactement() {
+		long grand = 4_000_000_000_000L;
+		BigDecimal attendu = Millimes.enDecimal(grand).multiply(Millimes.enDecimal(3_000_000))
+				.setScale(3, RoundingMode.HALF_UP);
+		assertEquals(attendu, Millimes.enDecimal(Millimes.multiplier(grand, 3_000_000)));
+		assertThrows(ArithmeticException.class, () -> Millimes.multiplier(Long.MAX_VALUE, Long.MAX_VALUE));
+		assertThrows(ArithmeticException.class, () -> Millimes.additionner(Long.MAX_VALUE, 1));
+	}
+}
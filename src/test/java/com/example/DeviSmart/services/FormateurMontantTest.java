@@ -0,0 +1,129 @@
+package com.example.DeviSmart.services;
+
+import com.example.DeviSmart.entities.Facture;
+import com.example.DeviSmart.entities.LigneFacture;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * FormateurMontant doit donner le même texte que DecimalFormat, y compris
+ * lorsqu'une seule instance est partagée par de nombreux threads
+ */
+class FormateurMontantTest {
+
+	private static final int THREADS = 16;
+	private static final int ITERATIONS = 50_000;
+
+	@Test
+	void formateCommeDecimalFormat() {
+		FormateurMontant montant = new FormateurMontant(3, true, Locale.FRANCE);
+		FormateurMontant pourcentage = new FormateurMontant(2, false, Locale.FRANCE);
+		DecimalFormat referenceMontant = new DecimalFormat("#,##0.000", DecimalFormatSymbols.getInstance(Locale.FRANCE));
+		DecimalFormat referencePourcentage = new DecimalFormat("0.00", DecimalFormatSymbols.getInstance(Locale.FRANCE));
+
+		for (String valeur : new String[]{"0", "1", "999.9995", "1000", "1234567.891", "0.0005", "0.0015",
+				"-42.5", "-1000000", "12345678901234.567"}) {
+			BigDecimal nombre = new BigDecimal(valeur);
+			assertEquals(referenceMontant.format(nombre), montant.formater(nombre), valeur);
+		}
+		assertEquals(referencePourcentage.format(19.0), pourcentage.formater(19.0));
+		assertEquals(referencePourcentage.format(7.125), pourcentage.formater(7.125));
+		assertEquals(referenceMontant.format(Long.MIN_VALUE / 1000.0), montant.formater(Long.MIN_VALUE / 1000.0));
+		assertEquals(referenceMontant.format(new BigDecimal("99999999999999999999.9999")),
+				montant.formater(new BigDecimal("99999999999999999999.9999")));
+	}
+
+	@Test
+	void instancePartageeSousConcurrence() throws Exception {
+		FormateurMontant partage = new FormateurMontant(3, true, Locale.FRANCE);
+		CountDownLatch depart = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		try {
+			List<Future<Integer>> resultats = new ArrayList<>();
+			for (int t = 0; t < THREADS; t++) {
+				long graine = t;
+				resultats.add(executor.submit(() -> {
+					// Référence confinée au thread : DecimalFormat n'est pas partageable
+					DecimalFormat reference = new DecimalFormat("#,##0.000", DecimalFormatSymbols.getInstance(Locale.FRANCE));
+					SplittableRandom aleatoire = new SplittableRandom(graine);
+					depart.await();
+					int ecarts = 0;
+					for (int i = 0; i < ITERATIONS; i++) {
+						// Positifs uniquement : un négatif arrondi à zéro diffère volontairement ("-0,000")
+						BigDecimal valeur = BigDecimal.valueOf(aleatoire.nextLong(1_000_000_000_000L), aleatoire.nextInt(6));
+						if (!reference.format(valeur).equals(partage.formater(valeur))) {
+							ecarts++;
+						}
+					}
+					return ecarts;
+				}));
+			}
+			depart.countDown();
+			for (Future<Integer> resultat : resultats) {
+				assertEquals(0, resultat.get());
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	void rendusPdfParalleles() throws Exception {
+		FacturePdfService service = new FacturePdfService();
+		ReflectionTestUtils.setField(service, "meterRegistry", new SimpleMeterRegistry());
+		Facture facture = factureExemple(120);
+		CountDownLatch depart = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		try {
+			List<Future<byte[]>> rendus = new ArrayList<>();
+			Callable<byte[]> rendu = () -> {
+				depart.await();
+				return service.generer(facture);
+			};
+			for (int i = 0; i < THREADS * 4; i++) {
+				rendus.add(executor.submit(rendu));
+			}
+			depart.countDown();
+			for (Future<byte[]> resultat : rendus) {
+				byte[] pdf = resultat.get();
+				assertTrue(pdf.length > 0);
+				assertEquals("%PDF", new String(pdf, 0, 4));
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static Facture factureExemple(int nombreLignes) {
+		Facture facture = new Facture();
+		facture.setNumeroFacture("FAC-2026-0001");
+		facture.setDateEmission(LocalDate.of(2026, 1, 15));
+		facture.setDateEcheance(LocalDate.of(2026, 2, 14));
+		facture.setStatut("NON_PAYEE");
+		facture.setNomEntreprise("DeviSmart");
+		facture.setNomClient("Client Test");
+		for (int i = 1; i <= nombreLignes; i++) {
+			facture.ajouterLigne(new LigneFacture("Prestation " + i, BigDecimal.valueOf(i), new BigDecimal("12.345")));
+		}
+		facture.recalculerTotaux();
+		return facture;
+	}
+}
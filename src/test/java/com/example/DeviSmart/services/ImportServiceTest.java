@@ -0,0 +1,56 @@
+package com.example.DeviSmart.services;
+
+import com.example.DeviSmart.entities.ImportDonnees;
+import com.example.DeviSmart.repositories.ClientRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Import d'un fichier dont un document est refusé par la base : le paquet est
+ * repris document par document, seul le document fautif est rejeté
+ */
+@SpringBootTest
+class ImportServiceTest {
+
+	@Autowired
+	private ImportService importService;
+
+	@Autowired
+	private ClientRepository clientRepository;
+
+	@Test
+	void documentRefuseParLaBaseRejeteSansBloquerLImport() throws Exception {
+		String suffixe = UUID.randomUUID().toString();
+		String csv = "nom,email\n"
+				+ "Client A," + "a-" + suffixe + "@exemple.tn\n"
+				+ "x".repeat(300) + "," + "long-" + suffixe + "@exemple.tn\n"
+				+ "Client B," + "b-" + suffixe + "@exemple.tn\n"
+				+ "Client C," + "c-" + suffixe + "@exemple.tn\n";
+
+		ImportDonnees suivi = importService.importer("clients", "CSV", ',', "clients.csv",
+				new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), null);
+
+		assertEquals("TERMINE", suivi.getStatut());
+		assertEquals(3, suivi.getImportes());
+		assertEquals(1, suivi.getRejetes());
+		assertEquals(4, suivi.getDernierEnregistrement());
+		for (String prefixe : List.of("a-", "b-", "c-")) {
+			assertTrue(clientRepository.findByEmail(prefixe + suffixe + "@exemple.tn").isPresent(), prefixe);
+		}
+		assertFalse(clientRepository.findByEmail("long-" + suffixe + "@exemple.tn").isPresent());
+
+		List<String> erreurs = Files.readAllLines(importService.fichierErreurs(suivi.getId()), StandardCharsets.UTF_8);
+		assertEquals(1, erreurs.stream().filter(ligne -> ligne.startsWith("\"2\",")).count());
+	}
+}
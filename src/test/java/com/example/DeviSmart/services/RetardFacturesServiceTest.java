@@ -0,0 +1,95 @@
+package com.example.DeviSmart.services;
+
+import com.example.DeviSmart.dto.BilanRetard;
+import com.example.DeviSmart.dto.StatistiqueStatut;
+import com.example.DeviSmart.entities.Client;
+import com.example.DeviSmart.entities.LigneFacture;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Deux passages en retard simultanés : chaque facture échue n'est passée
+ * en retard (et comptée dans les agrégats) qu'une seule fois
+ */
+@SpringBootTest
+class RetardFacturesServiceTest {
+
+	private static final int FACTURES = 300;
+
+	@Autowired
+	private RetardFacturesService retardFacturesService;
+
+	@Autowired
+	private FactureService factureService;
+
+	@Autowired
+	private ClientService clientService;
+
+	@Autowired
+	private ResumeFacturesService resumeFacturesService;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	@Test
+	void passagesConcurrentsSansDoublon() throws Exception {
+		Client client = clientService.save(new Client("Client retard", "retard-" + UUID.randomUUID() + "@exemple.tn",
+				null, null, null));
+		List<Long> ids = new ArrayList<>();
+		for (int i = 0; i < FACTURES; i++) {
+			ids.add(factureService.creerFacture(client.getId(),
+					List.of(new LigneFacture("Prestation", BigDecimal.ONE, new BigDecimal("100.000")))).getId());
+		}
+		new TransactionTemplate(transactionManager).executeWithoutResult(status -> entityManager
+				.createQuery("update Facture f set f.dateEcheance = :date where f.id in :ids")
+				.setParameter("date", LocalDate.now().minusDays(1))
+				.setParameter("ids", ids)
+				.executeUpdate());
+		long enRetardAvant = nombre(resumeFacturesService.parStatut().get("EN_RETARD"));
+
+		CountDownLatch depart = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			Callable<BilanRetard> passage = () -> {
+				depart.await();
+				return retardFacturesService.passerEnRetard(false);
+			};
+			Future<BilanRetard> premier = executor.submit(passage);
+			Future<BilanRetard> second = executor.submit(passage);
+			depart.countDown();
+
+			assertEquals(FACTURES, premier.get().factures() + second.get().factures());
+		} finally {
+			executor.shutdownNow();
+		}
+		assertEquals(enRetardAvant + FACTURES, nombre(resumeFacturesService.parStatut().get("EN_RETARD")));
+		assertEquals(FACTURES, factureService.findByStatut("EN_RETARD").stream()
+				.filter(facture -> ids.contains(facture.id()))
+				.count());
+	}
+
+	private static long nombre(StatistiqueStatut statistique) {
+		return statistique != null ? statistique.nombre() : 0;
+	}
+}